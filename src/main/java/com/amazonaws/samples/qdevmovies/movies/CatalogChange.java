@@ -0,0 +1,97 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.json.JSONObject;
+
+/**
+ * One versioned entry of the catalog change stream: a movie added or replaced,
+ * a movie removed, or a review added.
+ */
+public final class CatalogChange {
+
+    public enum Type {
+        MOVIE_UPSERT,
+        MOVIE_REMOVE,
+        REVIEW_ADD
+    }
+
+    private final long version;
+    private final Type type;
+    private final long movieId;
+    private final Movie movie;
+    private final Review review;
+
+    private CatalogChange(long version, Type type, long movieId, Movie movie, Review review) {
+        this.version = version;
+        this.type = type;
+        this.movieId = movieId;
+        this.movie = movie;
+        this.review = review;
+    }
+
+    static CatalogChange movieUpsert(long version, Movie movie) {
+        return new CatalogChange(version, Type.MOVIE_UPSERT, movie.getId(), movie, null);
+    }
+
+    static CatalogChange movieRemove(long version, long movieId) {
+        return new CatalogChange(version, Type.MOVIE_REMOVE, movieId, null, null);
+    }
+
+    static CatalogChange reviewAdd(long version, long movieId, Review review) {
+        return new CatalogChange(version, Type.REVIEW_ADD, movieId, null, review);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getMovieId() {
+        return movieId;
+    }
+
+    /**
+     * @return The new movie for {@link Type#MOVIE_UPSERT}, otherwise null
+     */
+    public Movie getMovie() {
+        return movie;
+    }
+
+    /**
+     * @return The added review for {@link Type#REVIEW_ADD}, otherwise null
+     */
+    public Review getReview() {
+        return review;
+    }
+
+    JSONObject toJson() {
+        JSONObject json = new JSONObject()
+            .put("version", version)
+            .put("type", type.name())
+            .put("movieId", movieId);
+        if (movie != null) {
+            json.put("movie", MovieJson.movieToJson(movie));
+        }
+        if (review != null) {
+            json.put("review", MovieJson.reviewToJson(review));
+        }
+        return json;
+    }
+
+    static CatalogChange fromJson(JSONObject json) {
+        long version = json.getLong("version");
+        long movieId = json.getLong("movieId");
+        switch (Type.valueOf(json.getString("type"))) {
+            case MOVIE_UPSERT:
+                return movieUpsert(version, MovieJson.movieFromJson(json.getJSONObject("movie")));
+            case MOVIE_REMOVE:
+                return movieRemove(version, movieId);
+            case REVIEW_ADD:
+                return reviewAdd(version, movieId, MovieJson.reviewFromJson(json.getJSONObject("review")));
+            default:
+                throw new IllegalArgumentException("Unknown change type: " + json.getString("type"));
+        }
+    }
+}
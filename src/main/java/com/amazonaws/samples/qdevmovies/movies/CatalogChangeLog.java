@@ -0,0 +1,399 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Versioned stream of catalog and review changes. On the leader every write goes
+ * through here so it is applied locally and recorded; followers pull the stream from
+ * {@code /catalog/changes} and replay it with {@link #applyRemote(List)}. Only the most
+ * recent {@code movies.sync.log-capacity} changes are kept; a follower that falls
+ * further behind resynchronises from a full snapshot. {@link Listener}s are told about
+ * every change once it has been applied, on leader and followers alike.
+ */
+@Service
+public class CatalogChangeLog {
+    private static final Logger logger = LogManager.getLogger(CatalogChangeLog.class);
+
+    private final MovieService movieService;
+    private final ReviewService reviewService;
+    private final int capacity;
+    private final Deque<CatalogChange> changes = new ArrayDeque<>();
+    // Long polls waiting for the next change
+    private final Set<Runnable> waiters = new LinkedHashSet<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    // Listener calls queued under the lock, in version order, and run after it is released
+    private final Deque<Runnable> notifications = new ArrayDeque<>();
+    private boolean notifying;
+    // Written under the lock; read without it by getVersion()
+    private volatile long version;
+
+    public CatalogChangeLog(MovieService movieService, ReviewService reviewService,
+                            @Value("${movies.sync.log-capacity:10000}") int capacity) {
+        this.movieService = movieService;
+        this.reviewService = reviewService;
+        this.capacity = Math.max(1, capacity);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Registers a listener for changes applied from now on. Listeners are called in
+     * version order, one call at a time, but not under the log's lock: a listener may
+     * read the log, and writers do not wait for it.
+     *
+     * @param listener Listener to add
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Adds or replaces a movie and records the change.
+     *
+     * @param movie Movie to add or replace
+     * @return The recorded change
+     */
+    public CatalogChange upsertMovie(Movie movie) {
+        CatalogChange change;
+        synchronized (this) {
+            movieService.applyChanges(Collections.singletonList(movie), Collections.emptyList());
+            change = publish(append(CatalogChange.movieUpsert(version + 1, movie)), movie.getGenre());
+        }
+        afterWrite();
+        return change;
+    }
+
+    /**
+     * Removes a movie and records the change.
+     *
+     * @param movieId Id of the movie to remove
+     * @return The recorded change
+     */
+    public CatalogChange removeMovie(long movieId) {
+        CatalogChange change;
+        synchronized (this) {
+            String genre = currentGenre(movieId);
+            movieService.applyChanges(Collections.emptyList(), Collections.singletonList(movieId));
+            change = publish(append(CatalogChange.movieRemove(version + 1, movieId)), genre);
+        }
+        afterWrite();
+        return change;
+    }
+
+    /**
+     * Adds a review and records the change.
+     *
+     * @param movieId Movie being reviewed
+     * @param review Review to add
+     * @return The recorded change
+     */
+    public CatalogChange addReview(long movieId, Review review) {
+        CatalogChange change;
+        synchronized (this) {
+            reviewService.addReview(movieId, review);
+            change = publish(append(CatalogChange.reviewAdd(version + 1, movieId, review)), currentGenre(movieId));
+        }
+        afterWrite();
+        return change;
+    }
+
+    /**
+     * Returns the changes after {@code since}, without waiting.
+     *
+     * @param since Last version the caller has applied
+     * @param maxChanges Maximum number of changes to return
+     * @return Changes in version order, empty when the caller is up to date, or null when
+     *         changes after {@code since} are no longer retained and the caller must resynchronise
+     */
+    public synchronized List<CatalogChange> changesSince(long since, int maxChanges) {
+        if (since > version) {
+            // The caller is ahead of us, e.g. because this leader restarted
+            return null;
+        }
+        long oldestRetained = changes.isEmpty() ? version + 1 : changes.peekFirst().getVersion();
+        if (since + 1 < oldestRetained) {
+            return null;
+        }
+        List<CatalogChange> result = new ArrayList<>();
+        for (CatalogChange change : changes) {
+            if (change.getVersion() > since) {
+                result.add(change);
+                if (result.size() >= maxChanges) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Registers a callback for the next change when the caller is up to date, so a long
+     * poll can wait without holding a thread. The callback runs once, on the thread of
+     * the write that moves the log on, after the log's lock is released.
+     *
+     * @param since Last version the caller has applied
+     * @param callback Called once the log has moved on from {@code since}
+     * @return false, without registering, if the log is already past or behind {@code since}
+     */
+    public synchronized boolean awaitChangesAfter(long since, Runnable callback) {
+        if (version != since) {
+            return false;
+        }
+        waiters.add(callback);
+        return true;
+    }
+
+    /**
+     * Drops a callback registered with {@link #awaitChangesAfter(long, Runnable)}, e.g.
+     * when the long poll timed out.
+     *
+     * @param callback Callback to drop
+     */
+    public synchronized void cancelAwait(Runnable callback) {
+        waiters.remove(callback);
+    }
+
+    /**
+     * Captures the complete catalog and reviews together with the version they reflect.
+     * Only copying the records holds the log's lock; they are serialised after it is
+     * released, so writers and long polls are not held up by a large snapshot.
+     *
+     * @return JSON object with {@code version}, {@code movies} and {@code reviews}
+     */
+    JSONObject snapshotToJson() {
+        long snapshotVersion;
+        List<Movie> movies;
+        Map<Long, List<Review>> reviews;
+        synchronized (this) {
+            snapshotVersion = version;
+            movies = new ArrayList<>(movieService.getAllMovies());
+            reviews = reviewService.getAllReviews();
+        }
+        JSONArray moviesJson = new JSONArray();
+        for (Movie movie : movies) {
+            moviesJson.put(MovieJson.movieToJson(movie));
+        }
+        JSONObject reviewsJson = new JSONObject();
+        for (Map.Entry<Long, List<Review>> entry : reviews.entrySet()) {
+            JSONArray movieReviews = new JSONArray();
+            for (Review review : entry.getValue()) {
+                movieReviews.put(MovieJson.reviewToJson(review));
+            }
+            reviewsJson.put(String.valueOf(entry.getKey()), movieReviews);
+        }
+        return new JSONObject()
+            .put("version", snapshotVersion)
+            .put("movies", moviesJson)
+            .put("reviews", reviewsJson);
+    }
+
+    /**
+     * Applies changes received from the leader. Movie changes in the batch are collapsed
+     * per movie and applied to the catalog in one step, so the search index is rebuilt
+     * once per batch rather than once per change. Changes at or below the current
+     * version are skipped.
+     *
+     * @param remoteChanges Changes in version order
+     */
+    public void applyRemote(List<CatalogChange> remoteChanges) {
+        synchronized (this) {
+            applyRemoteLocked(remoteChanges);
+        }
+        afterWrite();
+    }
+
+    private void applyRemoteLocked(List<CatalogChange> remoteChanges) {
+        // Latest state per movie id in this batch; null means removed
+        Map<Long, Movie> movieChanges = new LinkedHashMap<>();
+        List<CatalogChange> applied = new ArrayList<>();
+        // Each change's movie genre as of that change, worked out before the batch is applied
+        List<String> genres = new ArrayList<>();
+        Map<Long, String> batchGenres = new HashMap<>();
+        for (CatalogChange change : remoteChanges) {
+            if (change.getVersion() <= version) {
+                continue;
+            }
+            long movieId = change.getMovieId();
+            String genre = batchGenres.containsKey(movieId) ? batchGenres.get(movieId) : currentGenre(movieId);
+            switch (change.getType()) {
+                case MOVIE_UPSERT:
+                    movieChanges.put(movieId, change.getMovie());
+                    genre = change.getMovie().getGenre();
+                    batchGenres.put(movieId, genre);
+                    break;
+                case MOVIE_REMOVE:
+                    movieChanges.put(movieId, null);
+                    batchGenres.put(movieId, null);
+                    break;
+                case REVIEW_ADD:
+                    reviewService.addReview(change.getMovieId(), change.getReview());
+                    break;
+                default:
+                    break;
+            }
+            applied.add(change);
+            genres.add(genre);
+        }
+
+        List<Movie> upserts = new ArrayList<>();
+        List<Long> removals = new ArrayList<>();
+        for (Map.Entry<Long, Movie> entry : movieChanges.entrySet()) {
+            if (entry.getValue() != null) {
+                upserts.add(entry.getValue());
+            } else {
+                removals.add(entry.getKey());
+            }
+        }
+        movieService.applyChanges(upserts, removals);
+
+        for (int i = 0; i < applied.size(); i++) {
+            publish(append(applied.get(i)), genres.get(i));
+        }
+    }
+
+    /**
+     * Replaces the catalog and reviews with a leader snapshot and continues from its version.
+     *
+     * @param snapshotVersion Leader version the snapshot was taken at
+     * @param movies Complete catalog
+     * @param reviews Complete reviews keyed by movie id
+     */
+    public void resetTo(long snapshotVersion, List<Movie> movies, Map<Long, List<Review>> reviews) {
+        synchronized (this) {
+            movieService.replaceCatalog(movies);
+            reviewService.replaceAllReviews(reviews);
+            changes.clear();
+            version = snapshotVersion;
+            for (Listener listener : listeners) {
+                notifications.addLast(() -> listener.onReset(snapshotVersion));
+            }
+        }
+        logger.info("Resynchronised catalog from snapshot at version {}", snapshotVersion);
+        afterWrite();
+    }
+
+    private String currentGenre(long movieId) {
+        return movieService.getMovieById(movieId).map(Movie::getGenre).orElse(null);
+    }
+
+    /**
+     * Queues the listener calls for a change. Called under the lock, so the calls are
+     * queued in version order; {@link #afterWrite()} runs them.
+     */
+    private CatalogChange publish(CatalogChange change, String genre) {
+        for (Listener listener : listeners) {
+            notifications.addLast(() -> listener.onChange(change, genre));
+        }
+        return change;
+    }
+
+    private CatalogChange append(CatalogChange change) {
+        changes.addLast(change);
+        if (changes.size() > capacity) {
+            changes.removeFirst();
+        }
+        version = change.getVersion();
+        return change;
+    }
+
+    /**
+     * Runs what a write left to do once the lock is released: listener calls, then long polls.
+     */
+    private void afterWrite() {
+        notifyListeners();
+        wakeWaiters();
+    }
+
+    /**
+     * Runs the queued listener calls. Only one thread runs them at a time, so they stay in
+     * version order; a writer that finds another one running leaves its calls to it.
+     */
+    private void notifyListeners() {
+        synchronized (this) {
+            if (notifying || notifications.isEmpty()) {
+                return;
+            }
+            notifying = true;
+        }
+        while (true) {
+            Runnable notification;
+            synchronized (this) {
+                notification = notifications.pollFirst();
+                if (notification == null) {
+                    notifying = false;
+                    return;
+                }
+            }
+            try {
+                notification.run();
+            } catch (RuntimeException e) {
+                logger.warn("Change log listener failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Runs the callbacks waiting for a change. Called after the lock is released, so a
+     * callback that reads the log or writes a response does not hold up writers.
+     */
+    private void wakeWaiters() {
+        List<Runnable> ready;
+        synchronized (this) {
+            if (waiters.isEmpty()) {
+                return;
+            }
+            ready = new ArrayList<>(waiters);
+            waiters.clear();
+        }
+        for (Runnable waiter : ready) {
+            try {
+                waiter.run();
+            } catch (RuntimeException e) {
+                logger.warn("Change log waiter failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Told about changes as they are applied.
+     */
+    public interface Listener {
+
+        /**
+         * @param change The applied change
+         * @param genre Genre of the changed or reviewed movie at the time of the change
+         *              (before removal, for a removed movie), or null if it is not in the catalog
+         */
+        void onChange(CatalogChange change, String genre);
+
+        /**
+         * The catalog was replaced wholesale, so changes before {@code version} cannot be replayed.
+         *
+         * @param version Version the log continues from
+         */
+        void onReset(long version);
+    }
+}
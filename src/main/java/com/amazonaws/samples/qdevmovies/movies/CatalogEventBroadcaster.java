@@ -0,0 +1,548 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans catalog and review changes out to push subscribers, so clients need not poll
+ * the search API to notice them.
+ * <p>
+ * Each subscriber may filter by genre facets and movie ids; an event is delivered when it
+ * matches any of them, or always when the subscriber gave none. Subscribers are indexed by
+ * filter, so a change only touches the subscribers interested in it, however many are idle.
+ * Matching events go into a bounded per-subscriber buffer that a small pool of sender threads
+ * drains. A subscriber whose buffer overflows cannot keep up and is disconnected; it can
+ * reconnect with the id of the last event it saw and have the missed events replayed from
+ * a bounded history, or be told to resync when they are no longer there.
+ * <p>
+ * Subscribers are closed as soon as the application context starts closing, while the
+ * web server can still finish their connections.
+ */
+@Service
+public class CatalogEventBroadcaster implements CatalogChangeLog.Listener, ApplicationListener<ContextClosedEvent> {
+    private static final Logger logger = LogManager.getLogger(CatalogEventBroadcaster.class);
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    private final CatalogChangeLog changeLog;
+    private final int bufferSize;
+    private final int historySize;
+    private final int maxSubscribers;
+    private final long heartbeatMillis;
+    private final ExecutorService senders;
+    private final ScheduledExecutorService heartbeats;
+
+    // Guarded by this
+    private final Set<Subscriber> unfiltered = new HashSet<>();
+    private final Map<String, Set<Subscriber>> byGenre = new HashMap<>();
+    private final Map<Long, Set<Subscriber>> byMovie = new HashMap<>();
+    private final ArrayDeque<Event> history = new ArrayDeque<>();
+    private long version;
+    // Every event after this version is still in the history
+    private long replayableAfter;
+    private int subscriberCount;
+    private long evictions;
+    private boolean shutDown;
+
+    @Autowired
+    public CatalogEventBroadcaster(CatalogChangeLog changeLog,
+                                   @Value("${movies.events.buffer-size:64}") int bufferSize,
+                                   @Value("${movies.events.history-size:1000}") int historySize,
+                                   @Value("${movies.events.max-subscribers:50000}") int maxSubscribers,
+                                   @Value("${movies.events.heartbeat-ms:15000}") long heartbeatMillis,
+                                   @Value("${movies.events.sender-threads:2}") int senderThreads) {
+        this.changeLog = changeLog;
+        this.bufferSize = Math.max(1, bufferSize);
+        this.historySize = Math.max(0, historySize);
+        this.maxSubscribers = Math.max(1, maxSubscribers);
+        this.heartbeatMillis = heartbeatMillis;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(Math.max(1, senderThreads), runnable -> {
+            Thread thread = new Thread(runnable, "catalog-events-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-events-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        synchronized (this) {
+            version = changeLog.getVersion();
+            replayableAfter = version;
+        }
+        changeLog.addListener(this);
+        if (heartbeatMillis > 0) {
+            heartbeats.scheduleAtFixedRate(this::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void onApplicationEvent(ContextClosedEvent event) {
+        // Published before the web server stops; by @PreDestroy time it has dropped the connections
+        shutdown();
+    }
+
+    /**
+     * Closes every subscriber and refuses new ones, then waits for the senders to finish
+     * what they were writing and for each closed connection to be ended, up to 5 s in
+     * all. Closing an event stream only asks the web server to end it; returning before
+     * it has would let the server stop first and cut the stream off. Calling it again is
+     * harmless.
+     */
+    @PreDestroy
+    public void shutdown() {
+        List<Subscriber> closing = new ArrayList<>();
+        synchronized (this) {
+            if (shutDown) {
+                return;
+            }
+            shutDown = true;
+            closing.addAll(allSubscribers());
+            for (Subscriber subscriber : closing) {
+                remove(subscriber);
+            }
+        }
+        changeLog.removeListener(this);
+        heartbeats.shutdownNow();
+        for (Subscriber subscriber : closing) {
+            subscriber.sink.close();
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SHUTDOWN_TIMEOUT_SECONDS);
+        // Lets queued closes of evicted subscribers run too
+        senders.shutdown();
+        try {
+            if (!senders.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                logger.warn("Event senders still writing after {} s, interrupting them", SHUTDOWN_TIMEOUT_SECONDS);
+                senders.shutdownNow();
+            }
+            int unfinished = 0;
+            for (Subscriber subscriber : closing) {
+                if (!subscriber.sink.awaitClosed(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    unfinished++;
+                }
+            }
+            if (unfinished > 0) {
+                logger.warn("{} event streams still open after {} s of shutdown", unfinished, SHUTDOWN_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            senders.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Adds a subscriber. Events it missed since {@code lastEventId} are queued first; if
+     * they are no longer all available, or would not fit its buffer, a resync event is
+     * queued instead.
+     *
+     * @param genres Genre facets to receive changes for, e.g. "drama"; matched case-insensitively
+     * @param movieIds Movie ids to receive changes for
+     * @param lastEventId Id of the last event the client received, or null for a new subscription
+     * @param sink Where the subscriber's events are written
+     * @return The subscription, or null if the node already has the maximum number of subscribers or is
+     *         shutting down
+     */
+    public synchronized Subscriber subscribe(Collection<String> genres, Collection<Long> movieIds, Long lastEventId,
+                                             EventSink sink) {
+        if (shutDown || subscriberCount >= maxSubscribers) {
+            return null;
+        }
+        Set<String> facets = new LinkedHashSet<>();
+        for (String genre : genres) {
+            Collections.addAll(facets, facets(genre));
+        }
+        facets.remove("");
+        Subscriber subscriber = new Subscriber(facets, new LinkedHashSet<>(movieIds), sink);
+
+        if (lastEventId != null && lastEventId != version) {
+            List<Event> missed = new ArrayList<>();
+            if (lastEventId >= replayableAfter && lastEventId < version) {
+                for (Event event : history) {
+                    if (event.version > lastEventId && subscriber.matches(event)) {
+                        missed.add(event);
+                    }
+                }
+            }
+            if (lastEventId < replayableAfter || lastEventId > version || missed.size() > bufferSize) {
+                missed = Collections.singletonList(Event.resync(version));
+            }
+            for (Event event : missed) {
+                offer(subscriber, event);
+            }
+        }
+
+        if (facets.isEmpty() && subscriber.movieIds.isEmpty()) {
+            unfiltered.add(subscriber);
+        }
+        for (String facet : facets) {
+            byGenre.computeIfAbsent(facet, key -> new HashSet<>()).add(subscriber);
+        }
+        for (Long movieId : subscriber.movieIds) {
+            byMovie.computeIfAbsent(movieId, key -> new HashSet<>()).add(subscriber);
+        }
+        subscriberCount++;
+        return subscriber;
+    }
+
+    /**
+     * Removes a subscriber, e.g. once its connection has closed. Removing it twice is harmless.
+     *
+     * @param subscriber Subscriber to remove
+     */
+    public synchronized void unsubscribe(Subscriber subscriber) {
+        remove(subscriber);
+    }
+
+    @Override
+    public synchronized void onChange(CatalogChange change, String genre) {
+        Event event = Event.of(change, genre);
+        version = change.getVersion();
+        if (historySize > 0) {
+            history.addLast(event);
+            if (history.size() > historySize) {
+                replayableAfter = history.removeFirst().version;
+            }
+        } else {
+            replayableAfter = version;
+        }
+
+        List<Subscriber> overflowed = new ArrayList<>();
+        deliver(unfiltered, event, overflowed);
+        for (String facet : event.facets) {
+            deliver(byGenre.get(facet), event, overflowed);
+        }
+        deliver(byMovie.get(event.movieId), event, overflowed);
+        for (Subscriber subscriber : overflowed) {
+            evict(subscriber);
+        }
+    }
+
+    @Override
+    public synchronized void onReset(long resetVersion) {
+        version = resetVersion;
+        replayableAfter = resetVersion;
+        history.clear();
+        Event resync = Event.resync(resetVersion);
+        for (Subscriber subscriber : allSubscribers()) {
+            if (!offer(subscriber, resync)) {
+                evict(subscriber);
+            }
+        }
+    }
+
+    public synchronized int getSubscriberCount() {
+        return subscriberCount;
+    }
+
+    /**
+     * @return Subscribers disconnected so far because their buffer overflowed
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * @param genre A genre such as "Crime/Drama"
+     * @return Its lower-case facets, e.g. "crime" and "drama"
+     */
+    static String[] facets(String genre) {
+        if (genre == null) {
+            return new String[0];
+        }
+        String[] facets = genre.toLowerCase(Locale.ROOT).split("/");
+        for (int i = 0; i < facets.length; i++) {
+            facets[i] = facets[i].trim();
+        }
+        return facets;
+    }
+
+    private void deliver(Set<Subscriber> subscribers, Event event, List<Subscriber> overflowed) {
+        if (subscribers == null) {
+            return;
+        }
+        for (Subscriber subscriber : subscribers) {
+            // A subscriber indexed under several of the event's facets gets it once
+            if (subscriber.lastOffered != event.version) {
+                subscriber.lastOffered = event.version;
+                if (!offer(subscriber, event)) {
+                    // Evicted after the loop, as eviction removes it from this very set
+                    overflowed.add(subscriber);
+                }
+            }
+        }
+    }
+
+    private Set<Subscriber> allSubscribers() {
+        Set<Subscriber> all = new HashSet<>(unfiltered);
+        for (Set<Subscriber> subscribers : byGenre.values()) {
+            all.addAll(subscribers);
+        }
+        for (Set<Subscriber> subscribers : byMovie.values()) {
+            all.addAll(subscribers);
+        }
+        return all;
+    }
+
+    /**
+     * Queues an event for a subscriber and makes sure a sender is draining its queue.
+     *
+     * @return False if the subscriber's buffer is full and it should be evicted
+     */
+    private boolean offer(Subscriber subscriber, Event event) {
+        boolean startDrain;
+        synchronized (subscriber) {
+            if (subscriber.closed) {
+                return true;
+            }
+            if (subscriber.queue.size() >= bufferSize) {
+                return false;
+            }
+            subscriber.queue.addLast(event);
+            startDrain = !subscriber.draining;
+            subscriber.draining = true;
+        }
+        if (startDrain) {
+            submit(() -> drain(subscriber));
+        }
+        return true;
+    }
+
+    private void evict(Subscriber subscriber) {
+        if (subscriber.closed) {
+            return;
+        }
+        evictions++;
+        remove(subscriber);
+        logger.debug("Disconnected a slow event subscriber with {} events waiting", bufferSize);
+        submit(subscriber.sink::close);
+    }
+
+    private void remove(Subscriber subscriber) {
+        synchronized (subscriber) {
+            if (subscriber.closed) {
+                return;
+            }
+            subscriber.closed = true;
+            subscriber.queue.clear();
+        }
+        unfiltered.remove(subscriber);
+        for (String facet : subscriber.genres) {
+            removeFrom(byGenre, facet, subscriber);
+        }
+        for (Long movieId : subscriber.movieIds) {
+            removeFrom(byMovie, movieId, subscriber);
+        }
+        subscriberCount--;
+    }
+
+    private static <K> void removeFrom(Map<K, Set<Subscriber>> index, K key, Subscriber subscriber) {
+        Set<Subscriber> subscribers = index.get(key);
+        if (subscribers != null && subscribers.remove(subscriber) && subscribers.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        while (true) {
+            Event event;
+            synchronized (subscriber) {
+                event = subscriber.queue.pollFirst();
+                if (event == null) {
+                    subscriber.draining = false;
+                    return;
+                }
+            }
+            try {
+                subscriber.sink.send(event);
+            } catch (Exception e) {
+                logger.debug("Dropping event subscriber whose connection failed: {}", e.getMessage());
+                unsubscribe(subscriber);
+                subscriber.sink.close();
+                return;
+            }
+        }
+    }
+
+    private void heartbeat() {
+        synchronized (this) {
+            for (Subscriber subscriber : allSubscribers()) {
+                // Only idle connections need one; it also finds connections that have gone away
+                synchronized (subscriber) {
+                    if (!subscriber.queue.isEmpty()) {
+                        continue;
+                    }
+                }
+                offer(subscriber, Event.HEARTBEAT);
+            }
+        }
+    }
+
+    private void submit(Runnable task) {
+        try {
+            senders.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    /**
+     * Where a subscriber's events are written, e.g. its server-sent events connection.
+     */
+    public interface EventSink {
+
+        /**
+         * Writes one event. Called from a single sender thread at a time per subscriber.
+         *
+         * @param event Event to write; {@link Event#isHeartbeat()} ones carry no data
+         * @throws Exception if the connection is gone
+         */
+        void send(Event event) throws Exception;
+
+        /**
+         * Closes the connection. Called once the subscriber has been removed.
+         */
+        void close();
+
+        /**
+         * Waits for a {@link #close()} to have ended the connection. Sinks that end it
+         * before {@code close()} returns need not override this.
+         *
+         * @param timeout How long to wait
+         * @param unit Unit of the timeout
+         * @return false if the connection was still open when the timeout elapsed
+         * @throws InterruptedException if interrupted while waiting
+         */
+        default boolean awaitClosed(long timeout, TimeUnit unit) throws InterruptedException {
+            return true;
+        }
+    }
+
+    /**
+     * One subscriber's filter and pending events.
+     */
+    public static final class Subscriber {
+        private final Set<String> genres;
+        private final Set<Long> movieIds;
+        private final EventSink sink;
+        // Guarded by this
+        private final ArrayDeque<Event> queue = new ArrayDeque<>();
+        private boolean draining;
+        private boolean closed;
+        // Guarded by the broadcaster
+        private long lastOffered = -1;
+
+        private Subscriber(Set<String> genres, Set<Long> movieIds, EventSink sink) {
+            this.genres = genres;
+            this.movieIds = movieIds;
+            this.sink = sink;
+        }
+
+        public Set<String> getGenres() {
+            return Collections.unmodifiableSet(genres);
+        }
+
+        public Set<Long> getMovieIds() {
+            return Collections.unmodifiableSet(movieIds);
+        }
+
+        boolean matches(Event event) {
+            if (genres.isEmpty() && movieIds.isEmpty()) {
+                return true;
+            }
+            if (movieIds.contains(event.movieId)) {
+                return true;
+            }
+            for (String facet : event.facets) {
+                if (genres.contains(facet)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * An event as sent to subscribers: its id is the catalog version, its name the kind
+     * of change ({@code movie-upsert}, {@code movie-remove}, {@code review-add} or
+     * {@code resync}), and its data the change as JSON plus the movie's genre.
+     */
+    public static final class Event {
+        static final Event HEARTBEAT = new Event(-1, "heartbeat", -1, new String[0], null);
+
+        private final long version;
+        private final String name;
+        private final long movieId;
+        private final String[] facets;
+        private final String data;
+
+        private Event(long version, String name, long movieId, String[] facets, String data) {
+            this.version = version;
+            this.name = name;
+            this.movieId = movieId;
+            this.facets = facets;
+            this.data = data;
+        }
+
+        static Event of(CatalogChange change, String genre) {
+            JSONObject data = change.toJson();
+            data.put("genre", genre == null ? JSONObject.NULL : genre);
+            String name = change.getType().name().toLowerCase(Locale.ROOT).replace('_', '-');
+            return new Event(change.getVersion(), name, change.getMovieId(), facets(genre), data.toString());
+        }
+
+        static Event resync(long version) {
+            String data = new JSONObject().put("version", version).toString();
+            return new Event(version, "resync", -1, new String[0], data);
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getData() {
+            return data;
+        }
+
+        public boolean isHeartbeat() {
+            return this == HEARTBEAT;
+        }
+    }
+}
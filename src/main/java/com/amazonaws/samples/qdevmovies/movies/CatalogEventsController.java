@@ -0,0 +1,151 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes catalog and review changes to clients as server-sent events, so they can stop
+ * polling the search API. Connections are served asynchronously: an idle subscriber holds
+ * a socket but no request thread.
+ */
+@Controller
+public class CatalogEventsController {
+    private static final Logger logger = LogManager.getLogger(CatalogEventsController.class);
+
+    @Autowired
+    private CatalogEventBroadcaster broadcaster;
+
+    // Clients reconnect after this, resuming from the last event they received
+    @Value("${movies.events.timeout-ms:1800000}")
+    private long timeoutMillis;
+
+    /**
+     * Event stream endpoint. Events are named {@code movie-upsert}, {@code movie-remove},
+     * {@code review-add} or {@code resync}; their id is the catalog version and their data
+     * the change as JSON. A {@code resync} event means changes were missed and the client
+     * should reload what it shows. Browsers' {@code EventSource} resumes with the
+     * {@code Last-Event-ID} header on its own when the connection drops.
+     *
+     * @param genres Genre facets to receive changes for (repeatable), e.g. {@code genre=Drama}
+     * @param movieIds Movie ids to receive changes for (repeatable)
+     * @param lastEventId Id of the last event received before reconnecting
+     * @return The event stream, or 503 when this node has reached its subscriber limit or is shutting down
+     */
+    @GetMapping(value = "/catalog/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamEvents(
+            @RequestParam(value = "genre", required = false) List<String> genres,
+            @RequestParam(value = "movieId", required = false) List<Long> movieIds,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        Long resumeFrom = null;
+        if (lastEventId != null && !lastEventId.trim().isEmpty()) {
+            try {
+                resumeFrom = Long.parseLong(lastEventId.trim());
+            } catch (NumberFormatException e) {
+                logger.debug("Ignoring unreadable Last-Event-ID: {}", lastEventId);
+            }
+        }
+
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        EmitterSink sink = new EmitterSink(emitter);
+        try {
+            // Sent ahead of any event so the response is committed and the client sees the stream open
+            emitter.send(SseEmitter.event().comment("connected"));
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+        CatalogEventBroadcaster.Subscriber subscriber = broadcaster.subscribe(
+            genres == null ? Collections.emptyList() : genres,
+            movieIds == null ? Collections.emptyList() : movieIds,
+            resumeFrom, sink);
+        if (subscriber == null) {
+            logger.warn("Refused event subscriber: {} already connected, or shutting down",
+                broadcaster.getSubscriberCount());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .build();
+        }
+        Runnable unsubscribe = () -> broadcaster.unsubscribe(subscriber);
+        // Runs once the web server has finished the response, closing chunk included
+        emitter.onCompletion(() -> {
+            unsubscribe.run();
+            sink.ended.countDown();
+        });
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> {
+            unsubscribe.run();
+            sink.ended.countDown();
+        });
+        logger.debug("Event subscriber connected for genres {} and movies {}",
+            subscriber.getGenres(), subscriber.getMovieIds());
+        // Stops proxies such as nginx from buffering the stream
+        return ResponseEntity.ok()
+            .header("X-Accel-Buffering", "no")
+            .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+            .body(emitter);
+    }
+
+    /**
+     * @return Connected subscribers, how many were disconnected for falling behind, and the latest version
+     */
+    @GetMapping(value = "/catalog/events/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("subscribers", broadcaster.getSubscriberCount());
+        response.put("evictions", broadcaster.getEvictions());
+        response.put("version", broadcaster.getVersion());
+        return ResponseEntity.ok(response);
+    }
+
+    private static final class EmitterSink implements CatalogEventBroadcaster.EventSink {
+        private final SseEmitter emitter;
+        // Counted down by the emitter's completion or error callback
+        private final CountDownLatch ended = new CountDownLatch(1);
+
+        EmitterSink(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void send(CatalogEventBroadcaster.Event event) throws Exception {
+            if (event.isHeartbeat()) {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+            } else {
+                emitter.send(SseEmitter.event()
+                    .id(Long.toString(event.getVersion()))
+                    .name(event.getName())
+                    .data(event.getData()));
+            }
+        }
+
+        @Override
+        public void close() {
+            emitter.complete();
+        }
+
+        @Override
+        public boolean awaitClosed(long timeout, TimeUnit unit) throws InterruptedException {
+            return ended.await(timeout, unit);
+        }
+    }
+}
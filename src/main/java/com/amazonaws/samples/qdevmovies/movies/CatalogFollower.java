@@ -0,0 +1,145 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps this node's catalog and reviews in step with a leader by long-polling the
+ * leader's {@code /catalog/changes} stream and replaying each batch into the local
+ * {@link CatalogChangeLog}. Only active when {@code movies.sync.leader-url} is set; the
+ * leader's {@code movies.sync.write-token} must be set too, since the stream requires it.
+ */
+@Component
+@ConditionalOnProperty(name = "movies.sync.leader-url")
+public class CatalogFollower {
+    private static final Logger logger = LogManager.getLogger(CatalogFollower.class);
+    private static final long RETRY_DELAY_MILLIS = 1_000;
+
+    private final CatalogChangeLog changeLog;
+    private final String leaderUrl;
+    private final long pollWaitMillis;
+    private final HttpHeaders requestHeaders = new HttpHeaders();
+    private final RestTemplate restTemplate;
+    private final Thread pollThread;
+    private volatile boolean running;
+
+    public CatalogFollower(CatalogChangeLog changeLog,
+                           @Value("${movies.sync.leader-url}") String leaderUrl,
+                           @Value("${movies.sync.poll-wait-ms:20000}") long pollWaitMillis,
+                           @Value("${movies.sync.write-token:}") String writeToken) {
+        if (writeToken.trim().isEmpty()) {
+            throw new IllegalStateException("movies.sync.write-token must be set to read the leader's change stream");
+        }
+        this.changeLog = changeLog;
+        this.leaderUrl = leaderUrl.trim();
+        this.pollWaitMillis = pollWaitMillis;
+        this.requestHeaders.setBearerAuth(writeToken.trim());
+
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(5_000);
+        // Leave room for the leader to hold the long poll open
+        requestFactory.setReadTimeout((int) (pollWaitMillis + 10_000));
+        this.restTemplate = new RestTemplate(requestFactory);
+
+        this.pollThread = new Thread(this::pollLoop, "catalog-follower");
+        this.pollThread.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        pollThread.start();
+        logger.info("Following catalog changes from leader {}", leaderUrl);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        pollThread.interrupt();
+    }
+
+    public String getLeaderUrl() {
+        return leaderUrl;
+    }
+
+    private void pollLoop() {
+        while (running) {
+            try {
+                pollOnce();
+            } catch (RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                logger.warn("Failed to pull catalog changes from {}: {}", leaderUrl, e.getMessage());
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void pollOnce() {
+        URI uri = UriComponentsBuilder.fromHttpUrl(leaderUrl)
+            .path("/catalog/changes")
+            .queryParam("since", changeLog.getVersion())
+            .queryParam("waitMs", pollWaitMillis)
+            .build().toUri();
+        JSONObject response = new JSONObject(restTemplate.exchange(uri, HttpMethod.GET,
+            new HttpEntity<>(requestHeaders), String.class).getBody());
+
+        if (response.getBoolean("resync")) {
+            applySnapshot(response);
+            return;
+        }
+        JSONArray changesJson = response.getJSONArray("changes");
+        if (changesJson.length() == 0) {
+            return;
+        }
+        List<CatalogChange> changes = new ArrayList<>(changesJson.length());
+        for (int i = 0; i < changesJson.length(); i++) {
+            changes.add(CatalogChange.fromJson(changesJson.getJSONObject(i)));
+        }
+        changeLog.applyRemote(changes);
+        logger.debug("Applied {} catalog changes, now at version {}", changes.size(), changeLog.getVersion());
+    }
+
+    private void applySnapshot(JSONObject snapshot) {
+        JSONArray moviesJson = snapshot.getJSONArray("movies");
+        List<Movie> movies = new ArrayList<>(moviesJson.length());
+        for (int i = 0; i < moviesJson.length(); i++) {
+            movies.add(MovieJson.movieFromJson(moviesJson.getJSONObject(i)));
+        }
+        JSONObject reviewsJson = snapshot.getJSONObject("reviews");
+        Map<Long, List<Review>> reviews = new HashMap<>();
+        for (String movieId : reviewsJson.keySet()) {
+            JSONArray movieReviews = reviewsJson.getJSONArray(movieId);
+            List<Review> parsed = new ArrayList<>(movieReviews.length());
+            for (int i = 0; i < movieReviews.length(); i++) {
+                parsed.add(MovieJson.reviewFromJson(movieReviews.getJSONObject(i)));
+            }
+            reviews.put(Long.parseLong(movieId), parsed);
+        }
+        changeLog.resetTo(snapshot.getLong("version"), movies, reviews);
+    }
+}
@@ -0,0 +1,375 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Immutable view of the catalog together with the search index built over it.
+ * <p>
+ * Changes are applied as a delta. The indexed base rows are shared with the previous
+ * snapshot, and only the movies added, replaced or removed since the base was built are
+ * kept next to them, each normalised once. A change therefore costs time proportional
+ * to the delta rather than to the catalog. When the delta outgrows an eighth of the
+ * base, the change compacts both into a new base.
+ * <p>
+ * Rows are addressed by position: first the base rows in catalog order, where a replaced
+ * movie keeps its row, then the movies added since. A removed base movie leaves a dead
+ * row, which scans skip with {@link #isLive(int)}.
+ * <p>
+ * Directors and genres go through symbol tables that belong to the base: every movie
+ * holds the table's shared instance of each string, and rows keep the codes. Movies
+ * changed since the base was built add to the same tables, and a compaction or a
+ * replaced catalog starts new ones, so the tables only hold values of the current
+ * catalog and of its delta.
+ * <p>
+ * The base rows live in a {@link MovieStore}, on or off the heap as the catalog's
+ * {@link CatalogStorage} says; movies changed since stay on the heap until the next
+ * compaction. A base is reference counted, since an off-heap store has to be freed
+ * explicitly: its owner holds one reference and every reader one while it reads,
+ * through {@link #retain()} and {@link #close()}, and the store is freed when the
+ * last is released.
+ */
+final class CatalogSnapshot implements AutoCloseable {
+    private static final int MIN_COMPACTION_THRESHOLD = 1_024;
+
+    private final Base base;
+    // Base rows removed since the base was built
+    private final BitSet removed;
+    private final int removedCount;
+    // Base rows whose movie was replaced; replacements[i] is the movie now at replacedRows[i]
+    private final BitSet replaced;
+    private final int[] replacedRows;
+    private final OverlayRow[] replacements;
+    // Movies added after the base, in the order they were first added
+    private final OverlayRow[] added;
+    // Row of every replaced or added movie, by id
+    private final Map<Long, Integer> overlayRowsById;
+    private final long version;
+    private final List<Movie> movies = new MovieList();
+    // Row of each movie in catalog order, built on first use once rows have been removed
+    private volatile int[] liveRows;
+
+    private CatalogSnapshot(Base base, BitSet removed, int removedCount, TreeMap<Integer, OverlayRow> replacedByRow,
+                            Collection<OverlayRow> added, long version) {
+        this.base = base;
+        this.removed = removed;
+        this.removedCount = removedCount;
+        this.replaced = new BitSet();
+        this.replacedRows = new int[replacedByRow.size()];
+        this.replacements = new OverlayRow[replacedByRow.size()];
+        this.added = added.toArray(new OverlayRow[0]);
+        this.overlayRowsById = new HashMap<>();
+        int i = 0;
+        for (Map.Entry<Integer, OverlayRow> entry : replacedByRow.entrySet()) {
+            replaced.set(entry.getKey());
+            replacedRows[i] = entry.getKey();
+            replacements[i] = entry.getValue();
+            overlayRowsById.put(entry.getValue().movie.getId(), entry.getKey());
+            i++;
+        }
+        for (int row = 0; row < this.added.length; row++) {
+            overlayRowsById.put(this.added[row].movie.getId(), base.size() + row);
+        }
+        this.version = version;
+    }
+
+    /**
+     * Builds a snapshot, and its search index, over the given movies.
+     *
+     * @param movies Catalog in order
+     * @param version Version of the catalog
+     * @param storage Where to keep the base rows
+     * @return A snapshot with no delta, holding the one reference to a new base
+     */
+    static CatalogSnapshot of(List<Movie> movies, long version, CatalogStorage storage) {
+        return new CatalogSnapshot(new Base(movies, storage), new BitSet(), 0, new TreeMap<>(),
+            Collections.emptyList(), version);
+    }
+
+    /**
+     * Applies removals, then upserts, on top of this snapshot. A replaced movie keeps its
+     * place in the catalog; a new movie, or one removed before, goes to the end.
+     *
+     * @param upserts Movies to add or replace, matched by id
+     * @param removals Ids of movies to remove
+     * @return The next snapshot, one version later. It shares this snapshot's base and
+     *         reference unless the change compacted the delta into a new base.
+     */
+    CatalogSnapshot apply(Collection<Movie> upserts, Collection<Long> removals) {
+        BitSet nextRemoved = (BitSet) removed.clone();
+        int nextRemovedCount = removedCount;
+        TreeMap<Integer, OverlayRow> nextReplaced = new TreeMap<>();
+        for (int i = 0; i < replacedRows.length; i++) {
+            nextReplaced.put(replacedRows[i], replacements[i]);
+        }
+        Map<Long, OverlayRow> nextAdded = new LinkedHashMap<>();
+        for (OverlayRow row : added) {
+            nextAdded.put(row.movie.getId(), row);
+        }
+
+        for (Long id : removals) {
+            if (nextAdded.remove(id) != null) {
+                continue;
+            }
+            int row = base.rowOf(id);
+            if (row >= 0 && !nextRemoved.get(row)) {
+                nextRemoved.set(row);
+                nextRemovedCount++;
+                nextReplaced.remove(row);
+            }
+        }
+        for (Movie movie : upserts) {
+            OverlayRow overlayRow = new OverlayRow(movie, base);
+            int row = base.rowOf(movie.getId());
+            if (row >= 0 && !nextRemoved.get(row)) {
+                nextReplaced.put(row, overlayRow);
+            } else {
+                nextAdded.put(movie.getId(), overlayRow);
+            }
+        }
+
+        CatalogSnapshot next = new CatalogSnapshot(base, nextRemoved, nextRemovedCount, nextReplaced,
+            nextAdded.values(), version + 1);
+        int delta = nextRemovedCount + nextReplaced.size() + nextAdded.size();
+        if (delta > Math.max(MIN_COMPACTION_THRESHOLD, base.size() / 8)) {
+            return of(new ArrayList<>(next.movies), next.version, base.storage);
+        }
+        return next;
+    }
+
+    long version() {
+        return version;
+    }
+
+    /**
+     * @return true if both snapshots read the same base rows, and so the same reference
+     */
+    boolean sharesBaseWith(CatalogSnapshot other) {
+        return base == other.base;
+    }
+
+    /**
+     * Takes a reference to the base for a reader.
+     *
+     * @return false if the base has already been freed
+     */
+    boolean retain() {
+        return base.retain();
+    }
+
+    /**
+     * Releases a reference to the base, freeing its store if it was the last one.
+     */
+    @Override
+    public void close() {
+        base.release();
+    }
+
+    /**
+     * @return Direct memory held by the base rows, 0 when they live on the heap
+     */
+    long offHeapBytes() {
+        return base.store.offHeapBytes();
+    }
+
+    /**
+     * @return Number of movies in the catalog
+     */
+    int size() {
+        return base.size() - removedCount + added.length;
+    }
+
+    /**
+     * @return Number of rows, live or dead; rows run from 0 to this, exclusive
+     */
+    int rowCount() {
+        return base.size() + added.length;
+    }
+
+    boolean isLive(int row) {
+        return row >= base.size() || !removed.get(row);
+    }
+
+    Movie movieAt(int row) {
+        return isBaseRow(row) ? base.store.get(row) : overlayRow(row).movie;
+    }
+
+    long idAt(int row) {
+        // A replacement keeps the id of the base row it replaces
+        return row < base.size() ? base.store.idAt(row) : added[row - base.size()].movie.getId();
+    }
+
+    /**
+     * @return Code of the row's genre in {@link #genres()}, or {@link SymbolTable#NULL_CODE}
+     */
+    int genreCodeAt(int row) {
+        return isBaseRow(row) ? base.store.genreCodeAt(row) : overlayRow(row).genreCode;
+    }
+
+    /**
+     * @return Code of the row's director in {@link #directors()}, or {@link SymbolTable#NULL_CODE}
+     */
+    int directorCodeAt(int row) {
+        return isBaseRow(row) ? base.store.directorCodeAt(row) : overlayRow(row).directorCode;
+    }
+
+    SymbolTable genres() {
+        return base.genres;
+    }
+
+    SymbolTable directors() {
+        return base.directors;
+    }
+
+    /**
+     * @return Row of the movie with the id, or -1 if there is none
+     */
+    int rowOf(long id) {
+        Integer row = overlayRowsById.get(id);
+        if (row != null) {
+            return row;
+        }
+        int baseRow = base.rowOf(id);
+        return baseRow >= 0 && !removed.get(baseRow) ? baseRow : -1;
+    }
+
+    /**
+     * @param row Live row
+     * @param field One of {@link NormalizedTextIndex#TITLE}, {@link NormalizedTextIndex#GENRE}
+     *              or {@link NormalizedTextIndex#DIRECTOR}
+     * @param needle Output of {@link NormalizedTextIndex#normalize(String)}
+     * @return true if the field of the row contains the needle
+     */
+    boolean contains(int row, int field, byte[] needle) {
+        if (isBaseRow(row)) {
+            return base.textIndex.contains(row, field, needle);
+        }
+        return NormalizedTextIndex.contains(overlayRow(row).fields[field], needle);
+    }
+
+    /**
+     * @return Read-only list of the movies in catalog order
+     */
+    List<Movie> movies() {
+        return movies;
+    }
+
+    private boolean isBaseRow(int row) {
+        return row < base.size() && !replaced.get(row);
+    }
+
+    private OverlayRow overlayRow(int row) {
+        if (row >= base.size()) {
+            return added[row - base.size()];
+        }
+        return replacements[Arrays.binarySearch(replacedRows, row)];
+    }
+
+    private int rowAt(int index) {
+        if (removedCount == 0) {
+            return index;
+        }
+        int[] rows = liveRows;
+        if (rows == null) {
+            rows = new int[size()];
+            int next = 0;
+            for (int row = 0; row < rowCount(); row++) {
+                if (isLive(row)) {
+                    rows[next++] = row;
+                }
+            }
+            liveRows = rows;
+        }
+        return rows[index];
+    }
+
+    private final class MovieList extends AbstractList<Movie> implements RandomAccess {
+        @Override
+        public Movie get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            return movieAt(rowAt(index));
+        }
+
+        @Override
+        public int size() {
+            return CatalogSnapshot.this.size();
+        }
+    }
+
+    /**
+     * Indexed rows shared by every snapshot until the next compaction.
+     */
+    private static final class Base {
+        private final SymbolTable directors = new SymbolTable("directors");
+        private final SymbolTable genres = new SymbolTable("genres");
+        private final CatalogStorage storage;
+        private final MovieStore store;
+        private final NormalizedTextIndex textIndex;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        Base(List<Movie> catalog, CatalogStorage storage) {
+            this.storage = storage;
+            this.store = MovieStore.of(catalog, storage, directors, genres);
+            this.textIndex = NormalizedTextIndex.build(catalog);
+        }
+
+        int size() {
+            return store.size();
+        }
+
+        int rowOf(long id) {
+            return store.rowOf(id);
+        }
+
+        boolean retain() {
+            int count;
+            do {
+                count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                store.free();
+            }
+        }
+    }
+
+    /**
+     * A movie changed since the base was built, with its searchable fields normalised.
+     */
+    private static final class OverlayRow {
+        private final Movie movie;
+        private final int directorCode;
+        private final int genreCode;
+        private final byte[][] fields;
+
+        OverlayRow(Movie changed, Base base) {
+            this.movie = changed.withSharedText(base.directors, base.genres);
+            this.directorCode = base.directors.encode(movie.getDirector());
+            this.genreCode = base.genres.encode(movie.getGenre());
+            this.fields = new byte[][] {
+                NormalizedTextIndex.normalize(movie.getMovieName()),
+                NormalizedTextIndex.normalize(movie.getGenre()),
+                NormalizedTextIndex.normalize(movie.getDirector())
+            };
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.Locale;
+
+/**
+ * Where catalog and review records live, chosen with {@code movies.storage}.
+ */
+public enum CatalogStorage {
+    /** One Java object per movie and review */
+    HEAP,
+    /**
+     * Fixed-width columns in direct buffers plus an off-heap string heap; objects are
+     * only created, short-lived, when a record is read
+     */
+    OFF_HEAP;
+
+    /**
+     * @param value {@code heap} or {@code off-heap}
+     * @return The matching storage
+     */
+    public static CatalogStorage parse(String value) {
+        String normalized = value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+        switch (normalized) {
+            case "":
+            case "heap":
+                return HEAP;
+            case "off-heap":
+                return OFF_HEAP;
+            default:
+                throw new IllegalArgumentException("Unknown movies.storage '" + value + "' (expected heap or off-heap)");
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * Catalog write API and change stream used for leader/follower replication.
+ * Nodes are read-only unless {@code movies.sync.leader} is set. A leader only accepts
+ * writes carrying its {@code movies.sync.write-token} as a bearer token; other nodes
+ * answer them with 403 Forbidden, or 409 Conflict on a follower. The change stream
+ * needs the same token.
+ */
+@Controller
+public class CatalogSyncController {
+    private static final Logger logger = LogManager.getLogger(CatalogSyncController.class);
+    private static final long MAX_WAIT_MILLIS = 30_000;
+    private static final int MAX_CHANGES_PER_RESPONSE = 1_000;
+
+    @Autowired
+    private CatalogChangeLog changeLog;
+
+    // Only present on followers (movies.sync.leader-url is set)
+    @Autowired(required = false)
+    private CatalogFollower follower;
+
+    @Value("${movies.sync.leader:false}")
+    private boolean leader;
+
+    @Value("${movies.sync.write-token:}")
+    private String writeToken;
+
+    @PostConstruct
+    public void checkRole() {
+        if (leader && follower != null) {
+            throw new IllegalStateException("movies.sync.leader and movies.sync.leader-url cannot both be set");
+        }
+        if (leader && writeToken.trim().isEmpty()) {
+            throw new IllegalStateException("movies.sync.write-token must be set when movies.sync.leader is true");
+        }
+    }
+
+    /**
+     * Change stream endpoint. Returns the changes after {@code since}, long-polling for up
+     * to {@code waitMs} when there are none yet. The wait does not hold a request thread:
+     * the response is completed by the write that ends it, or by the timeout. When the
+     * requested changes have been trimmed from the log, a full snapshot is returned with
+     * {@code resync: true}. Like writes, reads need the write token, since a caller can
+     * ask for the whole catalog; nodes without a token do not serve the stream.
+     *
+     * @param authorization Must be {@code Bearer <movies.sync.write-token>}
+     * @param since Last version the caller has applied
+     * @param waitMs How long to wait for new changes
+     * @param max Maximum number of changes to return
+     * @return JSON with {@code version} and {@code changes}, or a snapshot
+     */
+    @GetMapping(value = "/catalog/changes", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public DeferredResult<ResponseEntity<String>> getChanges(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+            @RequestParam(value = "since", defaultValue = "0") long since,
+            @RequestParam(value = "waitMs", defaultValue = "0") long waitMs,
+            @RequestParam(value = "max", defaultValue = "1000") int max) {
+        int maxChanges = Math.max(1, Math.min(max, MAX_CHANGES_PER_RESPONSE));
+        long waitMillis = Math.max(0, Math.min(waitMs, MAX_WAIT_MILLIS));
+        if (waitMillis > 0) {
+            // Waiting is the point of a long poll; it is not a slow request
+            RequestTrace.markLongRunning();
+        }
+        DeferredResult<ResponseEntity<String>> result = new DeferredResult<>(waitMillis,
+            () -> changesResponse(since, maxChanges));
+
+        ResponseEntity<String> refusal = refuseRead(authorization);
+        if (refusal != null) {
+            result.setResult(refusal);
+            return result;
+        }
+        Runnable respond = () -> result.setResult(changesResponse(since, maxChanges));
+        if (waitMillis == 0 || !changeLog.awaitChangesAfter(since, respond)) {
+            respond.run();
+            return result;
+        }
+        result.onCompletion(() -> changeLog.cancelAwait(respond));
+        return result;
+    }
+
+    private ResponseEntity<String> changesResponse(long since, int maxChanges) {
+        List<CatalogChange> changes = changeLog.changesSince(since, maxChanges);
+        if (changes == null) {
+            JSONObject snapshot = changeLog.snapshotToJson().put("resync", true);
+            return ResponseEntity.ok(snapshot.toString());
+        }
+        JSONArray changesJson = new JSONArray();
+        long version = since;
+        for (CatalogChange change : changes) {
+            changesJson.put(change.toJson());
+            version = change.getVersion();
+        }
+        JSONObject response = new JSONObject()
+            .put("resync", false)
+            .put("version", version)
+            .put("changes", changesJson);
+        return ResponseEntity.ok(response.toString());
+    }
+
+    @PostMapping(value = "/catalog/movies", consumes = MediaType.APPLICATION_JSON_VALUE,
+                 produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<String> upsertMovie(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+            @RequestBody String body) {
+        ResponseEntity<String> refusal = refuseWrite(authorization);
+        if (refusal != null) {
+            return refusal;
+        }
+        try {
+            Movie movie = MovieJson.movieFromJson(new JSONObject(body));
+            if (movie.getId() <= 0) {
+                return badRequest("Movie ID must be a positive number.");
+            }
+            return accepted(changeLog.upsertMovie(movie));
+        } catch (JSONException e) {
+            logger.warn("Rejected invalid movie payload: {}", e.getMessage());
+            return badRequest(e.getMessage());
+        }
+    }
+
+    @DeleteMapping(value = "/catalog/movies/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<String> removeMovie(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+            @PathVariable("id") long movieId) {
+        ResponseEntity<String> refusal = refuseWrite(authorization);
+        if (refusal != null) {
+            return refusal;
+        }
+        return accepted(changeLog.removeMovie(movieId));
+    }
+
+    @PostMapping(value = "/catalog/movies/{id}/reviews", consumes = MediaType.APPLICATION_JSON_VALUE,
+                 produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<String> addReview(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+            @PathVariable("id") long movieId, @RequestBody String body) {
+        ResponseEntity<String> refusal = refuseWrite(authorization);
+        if (refusal != null) {
+            return refusal;
+        }
+        try {
+            Review review = MovieJson.reviewFromJson(new JSONObject(body));
+            return accepted(changeLog.addReview(movieId, review));
+        } catch (JSONException e) {
+            logger.warn("Rejected invalid review payload: {}", e.getMessage());
+            return badRequest(e.getMessage());
+        }
+    }
+
+    /**
+     * @param authorization The request's Authorization header
+     * @return The response refusing the write, or null if this node accepts it
+     */
+    private ResponseEntity<String> refuseWrite(String authorization) {
+        if (follower != null) {
+            return readOnlyReplica();
+        }
+        if (!leader) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new JSONObject()
+                .put("success", false)
+                .put("message", "Avast! This node be read-only; catalog writes go to a node started with "
+                    + "movies.sync.leader=true")
+                .toString());
+        }
+        if (!hasWriteToken(authorization)) {
+            logger.warn("Rejected catalog write without a valid write token");
+            return unauthorized("Arrr! Only the captain's crew may change the catalog; send the write token.");
+        }
+        return null;
+    }
+
+    /**
+     * @param authorization The request's Authorization header
+     * @return The response refusing to serve the change stream, or null if the caller may read it
+     */
+    private ResponseEntity<String> refuseRead(String authorization) {
+        if (writeToken.trim().isEmpty()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new JSONObject()
+                .put("success", false)
+                .put("message", "Avast! This node has no movies.sync.write-token, so it shares no change stream")
+                .toString());
+        }
+        if (!hasWriteToken(authorization)) {
+            logger.warn("Rejected change stream read without a valid write token");
+            return unauthorized("Arrr! Only the captain's crew may read the ship's log; send the write token.");
+        }
+        return null;
+    }
+
+    private boolean hasWriteToken(String authorization) {
+        String prefix = "Bearer ";
+        return authorization != null
+            && authorization.regionMatches(true, 0, prefix, 0, prefix.length())
+            && MessageDigest.isEqual(authorization.substring(prefix.length()).trim().getBytes(StandardCharsets.UTF_8),
+                writeToken.trim().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ResponseEntity<String> unauthorized(String message) {
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+            .header(HttpHeaders.WWW_AUTHENTICATE, "Bearer")
+            .body(new JSONObject()
+                .put("success", false)
+                .put("message", message)
+                .toString());
+    }
+
+    private static ResponseEntity<String> accepted(CatalogChange change) {
+        return ResponseEntity.ok(new JSONObject()
+            .put("success", true)
+            .put("version", change.getVersion())
+            .toString());
+    }
+
+    private static ResponseEntity<String> badRequest(String message) {
+        return ResponseEntity.badRequest().body(new JSONObject()
+            .put("success", false)
+            .put("message", "Arrr! That payload be unreadable, matey! " + message)
+            .toString());
+    }
+
+    private ResponseEntity<String> readOnlyReplica() {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(new JSONObject()
+            .put("success", false)
+            .put("message", "Avast! This node be a follower; send changes to the leader at "
+                + follower.getLeaderUrl())
+            .toString());
+    }
+}
@@ -0,0 +1,70 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free per-client token bucket, implemented as a generic cell rate algorithm:
+ * each bucket is a single "theoretical arrival time" updated with compare-and-set.
+ * Clients are hashed onto a fixed number of striped buckets, so memory stays bounded
+ * no matter how many distinct clients call; clients that collide share a bucket.
+ */
+final class ClientRateLimiter {
+    private final AtomicLongArray theoreticalArrival;
+    private final int mask;
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final long originNanos = System.nanoTime();
+
+    /**
+     * @param permitsPerSecond Sustained request rate allowed per client
+     * @param burst Requests a client may issue back to back after being idle
+     * @param stripes Number of buckets; rounded up to a power of two
+     */
+    ClientRateLimiter(double permitsPerSecond, int burst, int stripes) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.theoreticalArrival = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.emissionIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.burstToleranceNanos = emissionIntervalNanos * burst;
+    }
+
+    /**
+     * Takes one permit for the client if its bucket allows it.
+     *
+     * @param clientKey Client identity, e.g. remote address or API key
+     * @return 0 if the request is admitted, otherwise nanoseconds until a permit frees up
+     */
+    long tryAcquire(String clientKey) {
+        return tryAcquire(clientKey, System.nanoTime() - originNanos);
+    }
+
+    long tryAcquire(String clientKey, long nowNanos) {
+        int stripe = stripeFor(clientKey);
+        while (true) {
+            long tat = theoreticalArrival.get(stripe);
+            long newTat = Math.max(tat, nowNanos) + emissionIntervalNanos;
+            long excess = newTat - nowNanos - burstToleranceNanos;
+            if (excess > 0) {
+                return excess;
+            }
+            if (theoreticalArrival.compareAndSet(stripe, tat, newTat)) {
+                return 0;
+            }
+        }
+    }
+
+    private int stripeFor(String clientKey) {
+        // Murmur3 finaliser so similar keys (e.g. adjacent addresses) land on different stripes
+        int hash = clientKey.hashCode();
+        hash ^= (hash >>> 16);
+        hash *= 0x85ebca6b;
+        hash ^= (hash >>> 13);
+        hash *= 0xc2b2ae35;
+        hash ^= (hash >>> 16);
+        return hash & mask;
+    }
+}
@@ -0,0 +1,72 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Allocates direct buffers and frees them explicitly. Left alone, a direct buffer's
+ * memory is only returned when a GC collects the buffer object, and off-heap storage
+ * keeps heap allocation so low that this can take longer than it takes to run out of
+ * direct memory. A freed buffer must never be read again.
+ */
+final class DirectBuffers {
+    private static final Logger logger = LogManager.getLogger(DirectBuffers.class);
+    private static final Freer FREER = findFreer();
+
+    private DirectBuffers() {
+    }
+
+    static ByteBuffer allocate(long bytes) {
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Catalog too large for off-heap storage: " + bytes + " bytes in one buffer");
+        }
+        return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Returns the buffer's memory now, or leaves it to the GC when this JVM offers no way to.
+     *
+     * @param buffer A buffer from {@link #allocate}, not a view or slice of one
+     */
+    static void free(ByteBuffer buffer) {
+        if (FREER == null || !buffer.isDirect()) {
+            return;
+        }
+        try {
+            FREER.free(buffer);
+        } catch (Exception e) {
+            logger.warn("Could not free a direct buffer, leaving it to the GC: {}", e.toString());
+        }
+    }
+
+    private interface Freer {
+        void free(ByteBuffer buffer) throws Exception;
+    }
+
+    private static Freer findFreer() {
+        try {
+            // Java 9 and later
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            return buffer -> invokeCleaner.invoke(unsafe, buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Not Java 9+, fall through to the Java 8 cleaner
+        }
+        try {
+            Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return buffer -> clean.invoke(cleaner.invoke(buffer));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.warn("Direct buffers cannot be freed explicitly on this JVM; off-heap memory is returned by the GC");
+            return null;
+        }
+    }
+}
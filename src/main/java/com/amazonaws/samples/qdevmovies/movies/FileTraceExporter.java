@@ -0,0 +1,107 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Appends traces to a file as OTLP JSON, one export request per line, the format read
+ * by the OpenTelemetry Collector's {@code otlpjsonfile} receiver. Requests only enqueue;
+ * a background thread formats and writes. When the queue is full traces are dropped
+ * and counted rather than slowing requests down.
+ */
+final class FileTraceExporter implements TraceExporter {
+    private static final Logger logger = LogManager.getLogger(FileTraceExporter.class);
+
+    private final Path file;
+    private final String serviceName;
+    private final BlockingQueue<RequestTrace> queue;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    FileTraceExporter(Path file, String serviceName, int queueCapacity) {
+        this.file = file;
+        this.serviceName = serviceName;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+        } catch (IOException e) {
+            logger.error("Failed to create directory for trace file {}: {}", file, e.getMessage());
+        }
+        this.writer = new Thread(this::writeLoop, "trace-file-exporter");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void export(RequestTrace trace) {
+        if (!queue.offer(trace)) {
+            dropped.increment();
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    private void writeLoop() {
+        List<RequestTrace> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                RequestTrace first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                // close() interrupts to stop waiting; drain what is queued, then exit
+                running = false;
+            }
+            queue.drainTo(batch);
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<RequestTrace> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (RequestTrace trace : batch) {
+                out.write(trace.toOtlpJson(serviceName).toString());
+                out.newLine();
+            }
+        } catch (IOException e) {
+            logger.error("Failed to write {} traces to {}: {}", batch.size(), file, e.getMessage());
+        }
+    }
+}
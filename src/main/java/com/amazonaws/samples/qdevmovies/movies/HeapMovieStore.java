@@ -0,0 +1,71 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Movies kept as Java objects, each holding the tables' shared director and genre
+ * strings, with a hash map from id to row.
+ */
+final class HeapMovieStore implements MovieStore {
+    private final Movie[] movies;
+    private final int[] directorCodes;
+    private final int[] genreCodes;
+    private final Map<Long, Integer> rowsById;
+
+    HeapMovieStore(List<Movie> movies, SymbolTable directors, SymbolTable genres) {
+        this.movies = new Movie[movies.size()];
+        this.directorCodes = new int[movies.size()];
+        this.genreCodes = new int[movies.size()];
+        this.rowsById = new HashMap<>(movies.size() * 2);
+        for (int row = 0; row < this.movies.length; row++) {
+            Movie movie = movies.get(row).withSharedText(directors, genres);
+            this.movies[row] = movie;
+            directorCodes[row] = directors.encode(movie.getDirector());
+            genreCodes[row] = genres.encode(movie.getGenre());
+            rowsById.put(movie.getId(), row);
+        }
+    }
+
+    @Override
+    public int size() {
+        return movies.length;
+    }
+
+    @Override
+    public Movie get(int row) {
+        return movies[row];
+    }
+
+    @Override
+    public long idAt(int row) {
+        return movies[row].getId();
+    }
+
+    @Override
+    public int directorCodeAt(int row) {
+        return directorCodes[row];
+    }
+
+    @Override
+    public int genreCodeAt(int row) {
+        return genreCodes[row];
+    }
+
+    @Override
+    public int rowOf(long id) {
+        Integer row = rowsById.get(id);
+        return row != null ? row : -1;
+    }
+
+    @Override
+    public long offHeapBytes() {
+        return 0;
+    }
+
+    @Override
+    public void free() {
+        // Nothing to free; the GC reclaims the rows
+    }
+}
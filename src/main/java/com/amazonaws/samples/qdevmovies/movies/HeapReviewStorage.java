@@ -0,0 +1,67 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.Arrays;
+
+/**
+ * Reviews kept as Java objects in fixed-size chunks, each holding the tables' shared
+ * reviewer name and avatar strings. Chunks never move once allocated, so a reader
+ * holding a handle never races an append that grows the storage.
+ */
+final class HeapReviewStorage implements ReviewStorage {
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    private final SymbolTable userNames;
+    private final SymbolTable avatars;
+    private volatile Review[][] chunks = new Review[0][];
+    private int count;
+
+    HeapReviewStorage(SymbolTable userNames, SymbolTable avatars) {
+        this.userNames = userNames;
+        this.avatars = avatars;
+    }
+
+    @Override
+    public synchronized int append(Review review) {
+        Review[][] current = chunks;
+        int handle = count;
+        if ((handle >>> CHUNK_SHIFT) == current.length) {
+            current = Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = new Review[CHUNK_SIZE];
+        }
+        current[handle >>> CHUNK_SHIFT][handle & (CHUNK_SIZE - 1)] = review.withSharedText(userNames, avatars);
+        count = handle + 1;
+        chunks = current;
+        return handle;
+    }
+
+    @Override
+    public Review get(int handle) {
+        return chunks[handle >>> CHUNK_SHIFT][handle & (CHUNK_SIZE - 1)];
+    }
+
+    @Override
+    public double rating(int handle) {
+        return get(handle).getRating();
+    }
+
+    @Override
+    public int userNameCode(int handle) {
+        return userNames.encode(get(handle).getUserName());
+    }
+
+    @Override
+    public int avatarCode(int handle) {
+        return avatars.encode(get(handle).getAvatarEmoji());
+    }
+
+    @Override
+    public long offHeapBytes() {
+        return 0;
+    }
+
+    @Override
+    public void free() {
+        // Nothing to free; the GC reclaims the reviews
+    }
+}
@@ -0,0 +1,40 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Keeps the most recent traces in memory, served by {@code GET /tracing/traces}.
+ */
+final class InMemoryTraceExporter implements TraceExporter {
+    private final int capacity;
+    private final Deque<RequestTrace> traces = new ArrayDeque<>();
+
+    InMemoryTraceExporter(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    @Override
+    public synchronized void export(RequestTrace trace) {
+        traces.addLast(trace);
+        if (traces.size() > capacity) {
+            traces.removeFirst();
+        }
+    }
+
+    /**
+     * @param limit Maximum number of traces to return
+     * @return Most recent traces, newest first
+     */
+    synchronized List<RequestTrace> recent(int limit) {
+        List<RequestTrace> recent = new ArrayList<>(Math.min(limit, traces.size()));
+        Iterator<RequestTrace> newestFirst = traces.descendingIterator();
+        while (newestFirst.hasNext() && recent.size() < limit) {
+            recent.add(newestFirst.next());
+        }
+        return recent;
+    }
+}
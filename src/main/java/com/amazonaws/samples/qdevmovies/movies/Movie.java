@@ -12,6 +12,8 @@ public class Movie {
     private final String description;
     private final int duration;
     private final double imdbRating;
+    // Resolved once here so rendering an icon is a table lookup
+    private final int iconId;
 
     public Movie(long id, String movieName, String director, int year, String genre, String description, int duration, double imdbRating) {
         this.id = id;
@@ -22,6 +24,24 @@ public class Movie {
         this.description = description;
         this.duration = duration;
         this.imdbRating = imdbRating;
+        this.iconId = MovieIconUtils.resolveIconId(movieName, genre);
+    }
+
+    /**
+     * Rebuilds a movie from stored fields, e.g. when reading it back from off-heap
+     * storage, without running the icon rules again.
+     */
+    Movie(long id, String movieName, String director, int year, String genre, String description, int duration,
+          double imdbRating, int iconId) {
+        this.id = id;
+        this.movieName = movieName;
+        this.director = director;
+        this.year = year;
+        this.genre = genre;
+        this.description = description;
+        this.duration = duration;
+        this.imdbRating = imdbRating;
+        this.iconId = iconId;
     }
 
     public long getId() {
@@ -56,7 +76,28 @@ public class Movie {
         return this.imdbRating;
     }
 
+    /**
+     * Shares the catalog's instances of the director and genre strings, so a value that
+     * repeats across the catalog is stored once.
+     *
+     * @param directors Catalog's director table
+     * @param genres Catalog's genre table
+     * @return This movie if it already holds the shared instances, otherwise a copy that does
+     */
+    Movie withSharedText(SymbolTable directors, SymbolTable genres) {
+        String sharedDirector = directors.canonical(this.director);
+        String sharedGenre = genres.canonical(this.genre);
+        if (sharedDirector == this.director && sharedGenre == this.genre) {
+            return this;
+        }
+        return new Movie(id, movieName, sharedDirector, year, sharedGenre, description, duration, imdbRating, iconId);
+    }
+
+    int iconId() {
+        return this.iconId;
+    }
+
     public String getIcon() {
-        return MovieIconUtils.getMovieIcon(this.movieName);
+        return MovieIconUtils.iconForId(this.iconId);
     }
 }
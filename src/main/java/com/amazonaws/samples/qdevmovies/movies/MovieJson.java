@@ -0,0 +1,55 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.json.JSONObject;
+
+/**
+ * Converts movies and reviews to and from the JSON shapes used by movies.json,
+ * mock-reviews.json and the node-to-node APIs.
+ */
+final class MovieJson {
+
+    private MovieJson() {
+    }
+
+    static Movie movieFromJson(JSONObject movieObj) {
+        return new Movie(
+            movieObj.getLong("id"),
+            movieObj.getString("movieName"),
+            movieObj.getString("director"),
+            movieObj.getInt("year"),
+            movieObj.getString("genre"),
+            movieObj.getString("description"),
+            movieObj.getInt("duration"),
+            movieObj.getDouble("imdbRating")
+        );
+    }
+
+    static JSONObject movieToJson(Movie movie) {
+        return new JSONObject()
+            .put("id", movie.getId())
+            .put("movieName", movie.getMovieName())
+            .put("director", movie.getDirector())
+            .put("year", movie.getYear())
+            .put("genre", movie.getGenre())
+            .put("description", movie.getDescription())
+            .put("duration", movie.getDuration())
+            .put("imdbRating", movie.getImdbRating());
+    }
+
+    static Review reviewFromJson(JSONObject reviewObj) {
+        return new Review(
+            reviewObj.getString("userName"),
+            reviewObj.getString("avatarEmoji"),
+            reviewObj.getDouble("rating"),
+            reviewObj.getString("comment")
+        );
+    }
+
+    static JSONObject reviewToJson(Review review) {
+        return new JSONObject()
+            .put("userName", review.getUserName())
+            .put("avatarEmoji", review.getAvatarEmoji())
+            .put("rating", review.getRating())
+            .put("comment", review.getComment());
+    }
+}
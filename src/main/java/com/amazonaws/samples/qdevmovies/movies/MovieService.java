@@ -1,33 +1,159 @@
 package com.amazonaws.samples.qdevmovies.movies;
 
 import org.json.JSONArray;
-import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import javax.annotation.PreDestroy;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Scanner;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 @Service
 public class MovieService {
     private static final Logger logger = LogManager.getLogger(MovieService.class);
-    private final List<Movie> movies;
-    private final Map<Long, Movie> movieMap;
+    static final int DEFAULT_PARALLEL_THRESHOLD = 10_000;
+    static final int DEFAULT_SCAN_CHUNK_SIZE = 2_048;
+
+    // Replaced wholesale on every change so readers always see a consistent catalog.
+    // The service holds one reference to its base; readers take their own with acquireCatalog().
+    private volatile CatalogSnapshot catalog;
+    private final int shardIndex;
+    private final int shardCount;
+    private final CatalogStorage storage;
+
+    // Dedicated pool so large scans never compete with request threads for the common pool
+    private final ForkJoinPool searchPool;
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+    private int scanChunkSize = DEFAULT_SCAN_CHUNK_SIZE;
 
     public MovieService() {
-        this.movies = loadMoviesFromJson();
-        this.movieMap = new HashMap<>();
-        for (Movie movie : movies) {
-            movieMap.put(movie.getId(), movie);
+        this(null, 0, 1, CatalogStorage.HEAP);
+    }
+
+    public MovieService(int shardIndex, int shardCount) {
+        this(null, shardIndex, shardCount, CatalogStorage.HEAP);
+    }
+
+    /**
+     * Creates a service holding one shard of the catalog. Movies are partitioned by id,
+     * so shard {@code shardIndex} keeps the movies whose id modulo {@code shardCount}
+     * equals {@code shardIndex}. A shard count of 1 keeps the whole catalog.
+     *
+     * @param shardIndex Index of the shard this instance serves
+     * @param shardCount Total number of shards
+     * @param storage {@code heap} or {@code off-heap}, where the movie records are kept
+     */
+    @Autowired
+    public MovieService(@Value("${movies.shard.index:0}") int shardIndex,
+                        @Value("${movies.shard.count:1}") int shardCount,
+                        @Value("${movies.storage:heap}") String storage) {
+        this(null, shardIndex, shardCount, CatalogStorage.parse(storage));
+    }
+
+    /**
+     * Creates a service over the given catalog instead of loading movies.json.
+     * Used by tests and tooling that need a synthetic catalog.
+     *
+     * @param catalog Movies to serve, or null to load the bundled movies.json
+     */
+    public MovieService(List<Movie> catalog) {
+        this(catalog, CatalogStorage.HEAP);
+    }
+
+    /**
+     * @param catalog Movies to serve, or null to load the bundled movies.json
+     * @param storage Where to keep the movie records
+     */
+    public MovieService(List<Movie> catalog, CatalogStorage storage) {
+        this(catalog, 0, 1, storage);
+    }
+
+    private MovieService(List<Movie> catalog, int shardIndex, int shardCount, CatalogStorage storage) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be at least 1 but was " + shardCount);
         }
+        if (shardIndex < 0 || shardIndex >= shardCount) {
+            throw new IllegalArgumentException(
+                "Shard index must be between 0 and " + (shardCount - 1) + " but was " + shardIndex);
+        }
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+        this.storage = storage;
+        List<Movie> source = catalog != null ? catalog : loadMoviesFromJson();
+        List<Movie> shardMovies = new ArrayList<>(source.size());
+        for (Movie movie : source) {
+            if (isInShard(movie.getId())) {
+                shardMovies.add(movie);
+            }
+        }
+        if (shardCount > 1) {
+            logger.info("Holding shard {} of {} with {} movies", shardIndex, shardCount, shardMovies.size());
+        }
+        this.catalog = CatalogSnapshot.of(shardMovies, 0, storage);
+        this.searchPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+            pool -> {
+                ForkJoinWorkerThread thread =
+                    ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("movie-search-" + thread.getPoolIndex());
+                return thread;
+            }, null, false);
+    }
+
+    /**
+     * Catalog size above which searches are scanned in parallel on the search pool.
+     *
+     * @param parallelThreshold Minimum number of movies for a parallel scan
+     */
+    @Value("${movies.search.parallel-threshold:" + DEFAULT_PARALLEL_THRESHOLD + "}")
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = Math.max(1, parallelThreshold);
+    }
+
+    /**
+     * Number of movies each fork/join task scans before it stops splitting.
+     *
+     * @param scanChunkSize Movies per leaf task
+     */
+    @Value("${movies.search.chunk-size:" + DEFAULT_SCAN_CHUNK_SIZE + "}")
+    public void setScanChunkSize(int scanChunkSize) {
+        this.scanChunkSize = Math.max(1, scanChunkSize);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        searchPool.shutdownNow();
+    }
+
+    private boolean isInShard(long movieId) {
+        return Math.floorMod(movieId, (long) shardCount) == shardIndex;
+    }
+
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    public int getShardCount() {
+        return shardCount;
     }
 
     private List<Movie> loadMoviesFromJson() {
@@ -41,17 +167,7 @@ public class MovieService {
                 
                 JSONArray moviesArray = new JSONArray(jsonContent);
                 for (int i = 0; i < moviesArray.length(); i++) {
-                    JSONObject movieObj = moviesArray.getJSONObject(i);
-                    movieList.add(new Movie(
-                        movieObj.getLong("id"),
-                        movieObj.getString("movieName"),
-                        movieObj.getString("director"),
-                        movieObj.getInt("year"),
-                        movieObj.getString("genre"),
-                        movieObj.getString("description"),
-                        movieObj.getInt("duration"),
-                        movieObj.getDouble("imdbRating")
-                    ));
+                    movieList.add(MovieJson.movieFromJson(moviesArray.getJSONObject(i)));
                 }
             }
         } catch (Exception e) {
@@ -60,15 +176,141 @@ public class MovieService {
         return movieList;
     }
 
+    /**
+     * @return Every movie in catalog order; a copy when the records live off the heap, so
+     *         that no view outlives the store it reads
+     */
     public List<Movie> getAllMovies() {
-        return movies;
+        if (storage == CatalogStorage.HEAP) {
+            return catalog.movies();
+        }
+        try (CatalogSnapshot snapshot = acquireCatalog()) {
+            return Collections.unmodifiableList(new ArrayList<>(snapshot.movies()));
+        }
+    }
+
+    /**
+     * Calls the action for every movie in catalog order, reading each one straight from
+     * the store, so that going over the catalog never copies it.
+     *
+     * @param action Called once per movie
+     */
+    public void forEachMovie(Consumer<Movie> action) {
+        try (CatalogSnapshot snapshot = acquireCatalog()) {
+            for (int row = 0; row < snapshot.rowCount(); row++) {
+                if (snapshot.isLive(row)) {
+                    action.accept(snapshot.movieAt(row));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Number of movies in the catalog
+     */
+    public int countMovies() {
+        return catalog.size();
+    }
+
+    /**
+     * @return Where the movie records are kept
+     */
+    public CatalogStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * @return Direct memory held by the movie records, 0 when they live on the heap
+     */
+    public long getOffHeapBytes() {
+        try (CatalogSnapshot snapshot = acquireCatalog()) {
+            return snapshot.offHeapBytes();
+        }
     }
 
     public Optional<Movie> getMovieById(Long id) {
         if (id == null || id <= 0) {
             return Optional.empty();
         }
-        return Optional.ofNullable(movieMap.get(id));
+        try (RequestTrace.Span span = RequestTrace.span("movie-lookup");
+             CatalogSnapshot snapshot = acquireCatalog()) {
+            int row = snapshot.rowOf(id);
+            return row >= 0 ? Optional.of(snapshot.movieAt(row)) : Optional.empty();
+        }
+    }
+
+    /**
+     * @return Number of change batches applied since the catalog was loaded
+     */
+    public long getCatalogVersion() {
+        return catalog.version();
+    }
+
+    /**
+     * Adds or replaces movies and removes others in one step. Readers keep using the
+     * previous catalog until the new one is published. Only the changed movies are
+     * indexed; the rest of the catalog and its index are shared with the previous one.
+     * When the change compacts them into new base rows, the old ones are freed once the
+     * last reader still using them is done.
+     * Movies outside this instance's shard are ignored.
+     *
+     * @param upserts Movies to add or replace, matched by id
+     * @param removals Ids of movies to remove
+     */
+    public synchronized void applyChanges(Collection<Movie> upserts, Collection<Long> removals) {
+        if (upserts.isEmpty() && removals.isEmpty()) {
+            return;
+        }
+        List<Movie> shardUpserts = new ArrayList<>(upserts.size());
+        for (Movie movie : upserts) {
+            if (isInShard(movie.getId())) {
+                shardUpserts.add(movie);
+            }
+        }
+        CatalogSnapshot next = catalog.apply(shardUpserts, removals);
+        swapCatalog(next);
+        logger.debug("Applied {} upserts and {} removals, catalog now holds {} movies",
+            upserts.size(), removals.size(), next.size());
+    }
+
+    /**
+     * Replaces the whole catalog, e.g. when a follower resynchronises from a snapshot.
+     *
+     * @param movies New catalog contents
+     */
+    public synchronized void replaceCatalog(List<Movie> movies) {
+        List<Movie> shardMovies = new ArrayList<>(movies.size());
+        for (Movie movie : movies) {
+            if (isInShard(movie.getId())) {
+                shardMovies.add(movie);
+            }
+        }
+        swapCatalog(CatalogSnapshot.of(shardMovies, catalog.version() + 1, storage));
+    }
+
+    /**
+     * Publishes the next snapshot and, if it no longer reads the previous base rows,
+     * releases the service's reference to them.
+     */
+    private void swapCatalog(CatalogSnapshot next) {
+        CatalogSnapshot previous = catalog;
+        catalog = next;
+        if (!next.sharesBaseWith(previous)) {
+            previous.close();
+        }
+    }
+
+    /**
+     * @return The current snapshot, retained; close it when done
+     */
+    private CatalogSnapshot acquireCatalog() {
+        while (true) {
+            CatalogSnapshot snapshot = catalog;
+            if (snapshot.retain()) {
+                return snapshot;
+            }
+            // Freed between the read and the retain: a newer snapshot has been published
+        }
     }
 
     /**
@@ -81,43 +323,318 @@ public class MovieService {
      * @return List of movies matching the search criteria
      */
     public List<Movie> searchMovies(String name, Long id, String genre) {
+        return searchMovies(name, id, genre, 0);
+    }
+
+    /**
+     * Searches for movies and stops scanning once {@code limit} matches are found.
+     * Catalogs larger than the parallel threshold are split into chunks and scanned
+     * on the dedicated search pool; smaller ones are scanned on the calling thread.
+     * Either way the result is the first {@code limit} matches in catalog order.
+     *
+     * @param name Movie name to search for (partial match, case-insensitive)
+     * @param id Specific movie ID to find
+     * @param genre Genre to filter by (partial match, case-insensitive)
+     * @param limit Maximum number of results, or 0 for no limit
+     * @return List of movies matching the search criteria
+     */
+    public List<Movie> searchMovies(String name, Long id, String genre, int limit) {
         logger.info("Ahoy! Searchin' for movies with name: '{}', id: '{}', genre: '{}'", name, id, genre);
-        
-        List<Movie> results = movies.stream()
-            .filter(movie -> matchesSearchCriteria(movie, name, id, genre))
-            .collect(Collectors.toList());
-            
+
+        List<Movie> results;
+        try (RequestTrace.Span span = RequestTrace.span("movie-search");
+             CatalogSnapshot snapshot = acquireCatalog()) {
+            // Normalise the search terms once; the catalog side was normalised at load time
+            Rows rows = scan(snapshot, null, snapshot.rowCount(), normalizeTerm(name), id, normalizeTerm(genre),
+                limit > 0 ? limit : Integer.MAX_VALUE);
+            results = rows.toMovies(snapshot);
+        }
+
         logger.info("Arrr! Found {} movies in our treasure chest!", results.size());
         return results;
     }
 
     /**
-     * Checks if a movie matches the search criteria
+     * Searches as the user types. When the query only narrows the previous one of the
+     * same session (each term contains the previous term, and the id, if any, is kept)
+     * and the catalog has not changed since, only the previous result rows are
+     * rescanned, so each keystroke costs time proportional to the previous result.
+     * Otherwise the whole catalog is scanned as by {@link #searchMovies(String, Long, String)}.
+     *
+     * @param name Movie name to search for (partial match, case-insensitive)
+     * @param id Specific movie ID to find
+     * @param genre Genre to filter by (partial match, case-insensitive)
+     * @param previous Previous search of the same session, or null
+     * @return The matches, to pass as {@code previous} for the next keystroke
+     */
+    public RefinableSearch searchRefining(String name, Long id, String genre, RefinableSearch previous) {
+        try (RequestTrace.Span span = RequestTrace.span("movie-search");
+             CatalogSnapshot snapshot = acquireCatalog()) {
+            byte[] nameTerm = normalizeTerm(name);
+            byte[] genreTerm = normalizeTerm(genre);
+            boolean refined = previous != null && previous.narrowsTo(snapshot.version(), nameTerm, id, genreTerm);
+            Rows rows = refined
+                ? scan(snapshot, previous.rows, previous.rows.length, nameTerm, id, genreTerm, Integer.MAX_VALUE)
+                : scan(snapshot, null, snapshot.rowCount(), nameTerm, id, genreTerm, Integer.MAX_VALUE);
+            logger.debug("Search refined {} of {} rows into {} matches", refined ? "previous" : "all",
+                refined ? previous.rows.length : snapshot.rowCount(), rows.size);
+            return new RefinableSearch(snapshot.version(), nameTerm, id, genreTerm, rows.toArray(),
+                rows.toMovies(snapshot), refined);
+        }
+    }
+
+    /**
+     * Searches for the {@code limit} matches with the lowest ids, returned in id order.
+     * Unlike {@link #searchMovies(String, Long, String, int)} the result does not depend
+     * on catalog order, so the id-ordered results of several shards merge into exactly
+     * the result of one unsharded node.
+     *
+     * @param name Movie name to search for (partial match, case-insensitive)
+     * @param id Specific movie ID to find
+     * @param genre Genre to filter by (partial match, case-insensitive)
+     * @param limit Maximum number of results, or 0 for no limit
+     * @return Matching movies in ascending id order
+     */
+    public List<Movie> searchMoviesByLowestId(String name, Long id, String genre, int limit) {
+        List<Movie> results = searchMovies(name, id, genre, 0);
+        results.sort(Comparator.comparingLong(Movie::getId));
+        if (limit > 0 && results.size() > limit) {
+            results = new ArrayList<>(results.subList(0, limit));
+        }
+        return results;
+    }
+
+    private static byte[] normalizeTerm(String term) {
+        if (term == null || term.trim().isEmpty()) {
+            return null;
+        }
+        return NormalizedTextIndex.normalize(term.trim());
+    }
+
+    /**
+     * Collects up to {@code maxResults} matching rows among the first {@code count}
+     * candidates, in candidate order. Candidates are catalog rows, or every row when
+     * {@code candidates} is null. Large candidate sets are scanned in parallel on the
+     * search pool; either way the result is the first {@code maxResults} matches.
+     */
+    private Rows scan(CatalogSnapshot snapshot, int[] candidates, int count, byte[] nameTerm, Long id,
+                      byte[] genreTerm, int maxResults) {
+        Rows rows;
+        if (count >= parallelThreshold) {
+            rows = searchPool.invoke(new ScanTask(snapshot, candidates, 0, count, nameTerm, id, genreTerm,
+                maxResults, new AtomicInteger(Integer.MAX_VALUE)));
+            rows.truncate(maxResults);
+        } else {
+            rows = scanRange(snapshot, candidates, 0, count, nameTerm, id, genreTerm, maxResults, null);
+        }
+        return rows;
+    }
+
+    /**
+     * Scans candidates[from, to) and collects up to {@code maxResults} matching rows. When
+     * {@code cutoff} is shared between tasks, a task that fills the limit records the
+     * index it stopped at: the first matches all lie at or before it, so every task
+     * stops scanning past it.
+     */
+    private static Rows scanRange(CatalogSnapshot snapshot, int[] candidates, int from, int to, byte[] nameTerm,
+                                  Long id, byte[] genreTerm, int maxResults, AtomicInteger cutoff) {
+        Rows matches = new Rows();
+        for (int i = from; i < to; i++) {
+            if (cutoff != null && i > cutoff.get()) {
+                break;
+            }
+            int row = candidates != null ? candidates[i] : i;
+            if (snapshot.isLive(row) && matchesSearchCriteria(snapshot, row, nameTerm, id, genreTerm)) {
+                matches.add(row);
+                if (matches.size >= maxResults) {
+                    if (cutoff != null) {
+                        int last = i;
+                        cutoff.getAndUpdate(current -> Math.min(current, last));
+                    }
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Fork/join task that halves its range until it is small enough to scan directly.
+     * Results are joined left to right, so they stay in candidate order; all tasks of one
+     * search share a cutoff index so the scan ends early once a limit is reached.
+     */
+    private final class ScanTask extends RecursiveTask<Rows> {
+        private final CatalogSnapshot snapshot;
+        private final int[] candidates;
+        private final int from;
+        private final int to;
+        private final byte[] nameTerm;
+        private final Long id;
+        private final byte[] genreTerm;
+        private final int maxResults;
+        private final AtomicInteger cutoff;
+
+        ScanTask(CatalogSnapshot snapshot, int[] candidates, int from, int to, byte[] nameTerm, Long id,
+                 byte[] genreTerm, int maxResults, AtomicInteger cutoff) {
+            this.snapshot = snapshot;
+            this.candidates = candidates;
+            this.from = from;
+            this.to = to;
+            this.nameTerm = nameTerm;
+            this.id = id;
+            this.genreTerm = genreTerm;
+            this.maxResults = maxResults;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected Rows compute() {
+            if (from > cutoff.get()) {
+                return new Rows();
+            }
+            if (to - from <= scanChunkSize) {
+                return scanRange(snapshot, candidates, from, to, nameTerm, id, genreTerm, maxResults, cutoff);
+            }
+            int mid = (from + to) >>> 1;
+            ScanTask left = new ScanTask(snapshot, candidates, from, mid, nameTerm, id, genreTerm, maxResults, cutoff);
+            ScanTask right = new ScanTask(snapshot, candidates, mid, to, nameTerm, id, genreTerm, maxResults, cutoff);
+            right.fork();
+            Rows results = left.compute();
+            if (results.size < maxResults) {
+                results.addAll(right.join());
+            } else {
+                right.join();
+            }
+            return results;
+        }
+    }
+
+    /**
+     * Growable list of catalog rows.
+     */
+    private static final class Rows {
+        private int[] rows = new int[16];
+        private int size;
+
+        void add(int row) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+
+        void addAll(Rows other) {
+            if (size + other.size > rows.length) {
+                rows = Arrays.copyOf(rows, Math.max(rows.length * 2, size + other.size));
+            }
+            System.arraycopy(other.rows, 0, rows, size, other.size);
+            size += other.size;
+        }
+
+        void truncate(int maxSize) {
+            size = Math.min(size, maxSize);
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(rows, size);
+        }
+
+        List<Movie> toMovies(CatalogSnapshot snapshot) {
+            List<Movie> movies = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                movies.add(snapshot.movieAt(rows[i]));
+            }
+            return movies;
+        }
+    }
+
+    /**
+     * Result of {@link #searchRefining}: the matching movies, plus the criteria and
+     * catalog rows a narrower follow-up search can start from.
+     */
+    public static final class RefinableSearch {
+        private final long catalogVersion;
+        private final byte[] nameTerm;
+        private final Long id;
+        private final byte[] genreTerm;
+        private final int[] rows;
+        private final List<Movie> movies;
+        private final boolean refined;
+
+        private RefinableSearch(long catalogVersion, byte[] nameTerm, Long id, byte[] genreTerm, int[] rows,
+                                List<Movie> movies, boolean refined) {
+            this.catalogVersion = catalogVersion;
+            this.nameTerm = nameTerm;
+            this.id = id;
+            this.genreTerm = genreTerm;
+            this.rows = rows;
+            this.movies = Collections.unmodifiableList(movies);
+            this.refined = refined;
+        }
+
+        public List<Movie> getMovies() {
+            return movies;
+        }
+
+        /**
+         * @return true if only the previous search's results were rescanned
+         */
+        public boolean isRefined() {
+            return refined;
+        }
+
+        /**
+         * @return Number of catalog rows held for refining
+         */
+        public int size() {
+            return rows.length;
+        }
+
+        /**
+         * @return The same search without its movies, which is all a follow-up search needs
+         */
+        RefinableSearch withoutMovies() {
+            return new RefinableSearch(catalogVersion, nameTerm, id, genreTerm, rows, Collections.emptyList(), refined);
+        }
+
+        // Every row matching the new criteria also matched these, so these rows cover them all
+        private boolean narrowsTo(long version, byte[] nameTerm, Long id, byte[] genreTerm) {
+            return catalogVersion == version
+                && (this.id == null || this.id.equals(id))
+                && narrows(this.nameTerm, nameTerm)
+                && narrows(this.genreTerm, genreTerm);
+        }
+
+        private static boolean narrows(byte[] previousTerm, byte[] term) {
+            return previousTerm == null || (term != null && NormalizedTextIndex.contains(term, previousTerm));
+        }
+    }
+
+    /**
+     * Checks if the movie at a catalog row matches the search criteria
      * 
-     * @param movie The movie to check
-     * @param name Name criteria (can be null)
+     * @param snapshot Catalog being scanned
+     * @param row Index of the movie in the catalog
+     * @param nameTerm Normalised name criteria (can be null)
      * @param id ID criteria (can be null)
-     * @param genre Genre criteria (can be null)
+     * @param genreTerm Normalised genre criteria (can be null)
      * @return true if movie matches all provided criteria
      */
-    private boolean matchesSearchCriteria(Movie movie, String name, Long id, String genre) {
+    private static boolean matchesSearchCriteria(CatalogSnapshot snapshot, int row, byte[] nameTerm, Long id,
+                                                 byte[] genreTerm) {
         // If ID is provided, it must match exactly
-        if (id != null && !movie.getId().equals(id)) {
+        if (id != null && snapshot.idAt(row) != id) {
             return false;
         }
         
-        // If name is provided, it must contain the search term (case-insensitive)
-        if (name != null && !name.trim().isEmpty()) {
-            if (!movie.getMovieName().toLowerCase().contains(name.toLowerCase().trim())) {
-                return false;
-            }
+        // If name is provided, it must contain the search term (case- and accent-insensitive)
+        if (nameTerm != null && !snapshot.contains(row, NormalizedTextIndex.TITLE, nameTerm)) {
+            return false;
         }
         
-        // If genre is provided, it must contain the search term (case-insensitive)
-        if (genre != null && !genre.trim().isEmpty()) {
-            if (!movie.getGenre().toLowerCase().contains(genre.toLowerCase().trim())) {
-                return false;
-            }
+        // If genre is provided, it must contain the search term (case- and accent-insensitive)
+        if (genreTerm != null && !snapshot.contains(row, NormalizedTextIndex.GENRE, genreTerm)) {
+            return false;
         }
         
         return true;
@@ -130,10 +647,42 @@ public class MovieService {
      * @return List of unique genres
      */
     public List<String> getAllGenres() {
-        return movies.stream()
-            .map(Movie::getGenre)
-            .distinct()
-            .sorted()
-            .collect(Collectors.toList());
+        try (CatalogSnapshot snapshot = acquireCatalog()) {
+            // Genres are symbol-encoded, so distinct values can be found by code
+            BitSet seen = new BitSet();
+            List<String> genres = new ArrayList<>();
+            for (int row = 0; row < snapshot.rowCount(); row++) {
+                int code = snapshot.genreCodeAt(row);
+                if (snapshot.isLive(row) && code != SymbolTable.NULL_CODE && !seen.get(code)) {
+                    seen.set(code);
+                    genres.add(snapshot.genres().decode(code));
+                }
+            }
+            Collections.sort(genres);
+            return genres;
+        }
+    }
+
+    /**
+     * Memory report of the catalog's director and genre symbol tables, counting the
+     * references held by the movies currently in the catalog.
+     *
+     * @return One {@link SymbolTable#memoryReport} per table, keyed by table name
+     */
+    public Map<String, Object> getSymbolReport() {
+        try (CatalogSnapshot snapshot = acquireCatalog()) {
+            SymbolTable.Usage directors = snapshot.directors().usage();
+            SymbolTable.Usage genres = snapshot.genres().usage();
+            for (int row = 0; row < snapshot.rowCount(); row++) {
+                if (snapshot.isLive(row)) {
+                    directors.add(snapshot.directorCodeAt(row));
+                    genres.add(snapshot.genreCodeAt(row));
+                }
+            }
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put(snapshot.genres().getName(), snapshot.genres().memoryReport(genres));
+            report.put(snapshot.directors().getName(), snapshot.directors().memoryReport(directors));
+            return report;
+        }
     }
 }
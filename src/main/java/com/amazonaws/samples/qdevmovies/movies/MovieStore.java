@@ -0,0 +1,55 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.List;
+
+/**
+ * Immutable catalog rows addressed by position, behind which a {@link CatalogSnapshot}
+ * keeps its base rows. The row-level accessors let scans read a single column without
+ * building a {@link Movie}.
+ */
+interface MovieStore {
+
+    /**
+     * @param movies Catalog rows in order
+     * @param storage Where to keep them
+     * @param directors Table the director codes refer to
+     * @param genres Table the genre codes refer to
+     * @return A store holding a copy of the rows
+     */
+    static MovieStore of(List<Movie> movies, CatalogStorage storage, SymbolTable directors, SymbolTable genres) {
+        return storage == CatalogStorage.OFF_HEAP
+            ? new OffHeapMovieStore(movies, directors, genres)
+            : new HeapMovieStore(movies, directors, genres);
+    }
+
+    int size();
+
+    Movie get(int row);
+
+    long idAt(int row);
+
+    /**
+     * @return Code of the row's director, or {@link SymbolTable#NULL_CODE}
+     */
+    int directorCodeAt(int row);
+
+    /**
+     * @return Code of the row's genre, or {@link SymbolTable#NULL_CODE}
+     */
+    int genreCodeAt(int row);
+
+    /**
+     * @return Row of the movie with the id, or -1 if there is none
+     */
+    int rowOf(long id);
+
+    /**
+     * @return Direct memory held by the store, 0 when it lives on the heap
+     */
+    long offHeapBytes();
+
+    /**
+     * Frees the direct memory held by the store. Nothing may read the store afterwards.
+     */
+    void free();
+}
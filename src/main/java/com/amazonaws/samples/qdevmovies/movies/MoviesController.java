@@ -1,24 +1,28 @@
 package com.amazonaws.samples.qdevmovies.movies;
 
-import com.amazonaws.samples.qdevmovies.utils.MovieIconUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @Controller
 public class MoviesController {
     private static final Logger logger = LogManager.getLogger(MoviesController.class);
+    private static final int MAX_REVIEW_PAGE_SIZE = 100;
 
     @Autowired
     private MovieService movieService;
@@ -26,6 +30,20 @@ public class MoviesController {
     @Autowired
     private ReviewService reviewService;
 
+    @Autowired
+    private RecommendationService recommendationService;
+
+    @Autowired
+    private SearchSessionCache searchSessionCache;
+
+    // Read through reviewPageSize(), which keeps it within MAX_REVIEW_PAGE_SIZE
+    @Value("${movies.reviews.page-size:10}")
+    private int reviewPageSize = 10;
+
+    // Only present when this node coordinates a sharded catalog (movies.shard.peers is set)
+    @Autowired(required = false)
+    private ShardedSearchCoordinator shardCoordinator;
+
     @GetMapping("/movies")
     public String getMovies(org.springframework.ui.Model model,
                            @RequestParam(value = "name", required = false) String name,
@@ -76,8 +94,15 @@ public class MoviesController {
         
         Movie movie = movieOpt.get();
         model.addAttribute("movie", movie);
-        model.addAttribute("movieIcon", MovieIconUtils.getMovieIcon(movie.getMovieName()));
-        model.addAttribute("allReviews", reviewService.getReviewsForMovie(movie.getId()));
+        model.addAttribute("movieIcon", movie.getIcon());
+        // Only the first page is rendered; the page loads the rest from /movies/{id}/reviews on demand
+        int pageSize = reviewPageSize();
+        ReviewService.ReviewPage reviewPage = reviewService.getReviewPage(movie.getId(), null, pageSize);
+        model.addAttribute("reviews", reviewPage.getReviews());
+        model.addAttribute("reviewCount", reviewPage.getTotalReviews());
+        model.addAttribute("nextReviewCursor", reviewPage.getNextCursor());
+        model.addAttribute("reviewPageSize", pageSize);
+        model.addAttribute("similarMovies", recommendationService.getSimilarMovies(movie.getId()));
         
         return "movie-details";
     }
@@ -89,6 +114,8 @@ public class MoviesController {
      * @param name Movie name to search for (optional)
      * @param id Specific movie ID to find (optional)
      * @param genre Genre to filter by (optional)
+     * @param session Search-as-you-type session key (optional); a query narrowing the session's
+     *                previous one only rescans the previous results
      * @return ResponseEntity with search results and pirate-themed messages
      */
     @GetMapping("/movies/search")
@@ -96,7 +123,8 @@ public class MoviesController {
     public ResponseEntity<Map<String, Object>> searchMovies(
             @RequestParam(value = "name", required = false) String name,
             @RequestParam(value = "id", required = false) Long id,
-            @RequestParam(value = "genre", required = false) String genre) {
+            @RequestParam(value = "genre", required = false) String genre,
+            @RequestParam(value = "session", required = false) String session) {
         
         logger.info("Ahoy! REST API search request - name: '{}', id: '{}', genre: '{}'", name, id, genre);
         
@@ -123,7 +151,25 @@ public class MoviesController {
                 return ResponseEntity.badRequest().body(response);
             }
             
-            List<Movie> searchResults = movieService.searchMovies(name, id, genre);
+            List<Movie> searchResults;
+            if (shardCoordinator != null) {
+                ShardedSearchCoordinator.ShardedSearchResult shardedResult = shardCoordinator.search(name, id, genre);
+                searchResults = shardedResult.getMovies();
+                response.put("partialResults", shardedResult.isPartial());
+                if (shardedResult.isPartial()) {
+                    response.put("failedShards", shardedResult.getFailedShards());
+                }
+            } else if (session != null) {
+                SearchSessionCache.checkSession(session);
+                MovieService.RefinableSearch search =
+                    movieService.searchRefining(name, id, genre, searchSessionCache.get(session));
+                searchSessionCache.put(session, search);
+                searchResults = search.getMovies();
+                response.put("session", session);
+                response.put("refined", search.isRefined());
+            } else {
+                searchResults = movieService.searchMovies(name, id, genre);
+            }
             
             response.put("success", true);
             response.put("movies", searchResults);
@@ -159,4 +205,135 @@ public class MoviesController {
             return ResponseEntity.internalServerError().body(response);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * REST API endpoint for a page of a movie's reviews - returns JSON response
+     * Arrr! The finest words from the crew come first, a page at a time!
+     *
+     * @param movieId Movie whose reviews to return
+     * @param limit Reviews per page (optional, defaults to the configured page size, at most 100)
+     * @param after Cursor from the previous page's {@code nextCursor} (optional)
+     * @return ResponseEntity with the page of reviews and the cursor for the next page
+     */
+    @GetMapping("/movies/{id}/reviews")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getReviews(@PathVariable("id") Long movieId,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "after", required = false) String after) {
+        Map<String, Object> response = new HashMap<>();
+        if (!movieService.getMovieById(movieId).isPresent()) {
+            response.put("success", false);
+            response.put("message", "Arrr! No movie with ID " + movieId + " be in our treasure chest, matey!");
+            response.put("reviews", List.of());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+
+        int pageSize = limit != null ? limit : reviewPageSize();
+        if (pageSize <= 0 || pageSize > MAX_REVIEW_PAGE_SIZE) {
+            response.put("success", false);
+            response.put("message", "Shiver me timbers! The limit must be between 1 and " + MAX_REVIEW_PAGE_SIZE + ", matey.");
+            response.put("reviews", List.of());
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        ReviewService.ReviewPage page;
+        try {
+            page = reviewService.getReviewPage(movieId, after, pageSize);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", "Arrr! That cursor be lost at sea, ye scurvy dog! " + e.getMessage());
+            response.put("reviews", List.of());
+            return ResponseEntity.badRequest().body(response);
+        }
+        response.put("success", true);
+        response.put("movieId", movieId);
+        response.put("reviews", page.getReviews());
+        response.put("totalReviews", page.getTotalReviews());
+        response.put("nextCursor", page.getNextCursor());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * @return The configured review page size, clamped to what the reviews endpoint accepts
+     */
+    private int reviewPageSize() {
+        return Math.max(1, Math.min(reviewPageSize, MAX_REVIEW_PAGE_SIZE));
+    }
+
+    /**
+     * REST API endpoint for similar movies - returns JSON response
+     * Arrr! Ships that sail the same waters as this one, best match first!
+     *
+     * @param movieId Movie to find similar movies for
+     * @return ResponseEntity with the similar movies, or 404 if the movie be unknown
+     */
+    @GetMapping("/movies/{id}/similar")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getSimilarMovies(@PathVariable("id") Long movieId) {
+        Map<String, Object> response = new HashMap<>();
+        if (!movieService.getMovieById(movieId).isPresent()) {
+            response.put("success", false);
+            response.put("message", "Arrr! No movie with ID " + movieId + " be in our treasure chest, matey!");
+            response.put("movies", List.of());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+
+        List<Movie> similar = recommendationService.getSimilarMovies(movieId);
+        response.put("success", true);
+        response.put("movieId", movieId);
+        response.put("movies", similar);
+        response.put("totalResults", similar.size());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Shard-local search used by {@link ShardedSearchCoordinator} during scatter-gather.
+     * Searches only the movies held by this instance and never fans out further. Returns
+     * this shard's lowest-id matches in id order, which the coordinator merges.
+     *
+     * @param name Movie name to search for (optional)
+     * @param id Specific movie ID to find (optional)
+     * @param genre Genre to filter by (optional)
+     * @param limit Maximum number of results (optional, 0 for no limit)
+     * @return ResponseEntity with this shard's matches
+     */
+    @GetMapping("/movies/shard/search")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> searchShard(
+            @RequestParam(value = "name", required = false) String name,
+            @RequestParam(value = "id", required = false) Long id,
+            @RequestParam(value = "genre", required = false) String genre,
+            @RequestParam(value = "limit", defaultValue = "0") int limit) {
+        Map<String, Object> response = new HashMap<>();
+        List<Movie> results = movieService.searchMoviesByLowestId(name, id, genre, limit);
+        response.put("shardIndex", movieService.getShardIndex());
+        response.put("shardCount", movieService.getShardCount());
+        response.put("movies", results);
+        response.put("totalResults", results.size());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Memory report for the symbol tables that deduplicate repeated movie and review fields.
+     *
+     * @return ResponseEntity with catalog sizes, heap and off-heap usage and one report per symbol table
+     */
+    @GetMapping("/movies/memory")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getMemoryReport() {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("movies", movieService.countMovies());
+        response.put("reviews", reviewService.countReviews());
+
+        Runtime runtime = Runtime.getRuntime();
+        response.put("heapUsedBytes", runtime.totalMemory() - runtime.freeMemory());
+        response.put("storage", movieService.getStorage().name().toLowerCase(Locale.ROOT).replace('_', '-'));
+        response.put("movieOffHeapBytes", movieService.getOffHeapBytes());
+        response.put("reviewOffHeapBytes", reviewService.getOffHeapBytes());
+
+        Map<String, Object> symbolTables = new LinkedHashMap<>(movieService.getSymbolReport());
+        symbolTables.putAll(reviewService.getSymbolReport());
+        response.put("symbolTables", symbolTables);
+        return ResponseEntity.ok(response);
+    }
+}
@@ -0,0 +1,129 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Pre-normalised (lowercased, accent-folded) copies of the searchable text fields of
+ * a catalog, stored as UTF-8 in one contiguous byte buffer with per-field offsets.
+ * Searching compares bytes in place, so a scan allocates nothing per movie.
+ */
+final class NormalizedTextIndex {
+    static final int TITLE = 0;
+    static final int GENRE = 1;
+    static final int DIRECTOR = 2;
+    private static final int FIELD_COUNT = 3;
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private final byte[] buffer;
+    // offsets[row * FIELD_COUNT + field] is where that field starts; the next entry is where it ends
+    private final int[] offsets;
+    private final int rows;
+
+    private NormalizedTextIndex(byte[] buffer, int[] offsets, int rows) {
+        this.buffer = buffer;
+        this.offsets = offsets;
+        this.rows = rows;
+    }
+
+    /**
+     * Builds the index for the given movies; row {@code i} corresponds to {@code movies.get(i)}.
+     *
+     * @param movies Catalog to index
+     * @return Index over the catalog's titles, genres and directors
+     */
+    static NormalizedTextIndex build(List<Movie> movies) {
+        int rows = movies.size();
+        byte[][] encoded = new byte[rows * FIELD_COUNT][];
+        int totalLength = 0;
+        for (int row = 0; row < rows; row++) {
+            Movie movie = movies.get(row);
+            int base = row * FIELD_COUNT;
+            encoded[base + TITLE] = normalize(movie.getMovieName());
+            encoded[base + GENRE] = normalize(movie.getGenre());
+            encoded[base + DIRECTOR] = normalize(movie.getDirector());
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                totalLength += encoded[base + field].length;
+            }
+        }
+
+        byte[] buffer = new byte[totalLength];
+        int[] offsets = new int[rows * FIELD_COUNT + 1];
+        int position = 0;
+        for (int i = 0; i < encoded.length; i++) {
+            offsets[i] = position;
+            System.arraycopy(encoded[i], 0, buffer, position, encoded[i].length);
+            position += encoded[i].length;
+        }
+        offsets[encoded.length] = position;
+        return new NormalizedTextIndex(buffer, offsets, rows);
+    }
+
+    /**
+     * Normalises text the same way indexed fields are normalised: accents are stripped,
+     * the result is lowercased and encoded as UTF-8.
+     *
+     * @param text Text to normalise (null is treated as empty)
+     * @return Normalised UTF-8 bytes
+     */
+    static byte[] normalize(String text) {
+        if (text == null || text.isEmpty()) {
+            return new byte[0];
+        }
+        String folded = COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return folded.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+    }
+
+    int size() {
+        return rows;
+    }
+
+    /**
+     * Checks whether a field of a row contains the needle. Because both sides are valid
+     * UTF-8, a byte match can only start on a character boundary.
+     *
+     * @param row Catalog row
+     * @param field One of {@link #TITLE}, {@link #GENRE} or {@link #DIRECTOR}
+     * @param needle Output of {@link #normalize(String)}
+     * @return true if the field contains the needle
+     */
+    boolean contains(int row, int field, byte[] needle) {
+        int slot = row * FIELD_COUNT + field;
+        return contains(buffer, offsets[slot], offsets[slot + 1], needle);
+    }
+
+    /**
+     * @param text Output of {@link #normalize(String)}
+     * @param needle Output of {@link #normalize(String)}
+     * @return true if the text contains the needle
+     */
+    static boolean contains(byte[] text, byte[] needle) {
+        return contains(text, 0, text.length, needle);
+    }
+
+    private static boolean contains(byte[] buffer, int start, int end, byte[] needle) {
+        int needleLength = needle.length;
+        if (needleLength == 0) {
+            return true;
+        }
+        byte first = needle[0];
+        int lastStart = end - needleLength;
+        for (int i = start; i <= lastStart; i++) {
+            if (buffer[i] != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < needleLength && buffer[i + j] == needle[j]) {
+                j++;
+            }
+            if (j == needleLength) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
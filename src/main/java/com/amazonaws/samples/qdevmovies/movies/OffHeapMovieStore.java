@@ -0,0 +1,150 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Movies kept outside the Java heap: one fixed-width direct-buffer column per field,
+ * names and descriptions in an {@link OffHeapStringHeap}, and an open-addressing table
+ * from id to row. Directors and genres are stored as codes into the snapshot's symbol
+ * tables and decoded to the tables' shared strings. The garbage collector sees a few buffer objects however large the
+ * catalog is; a {@link Movie} is only built, and soon dropped, when a row is read.
+ * The owner calls {@link #free()} once no reader can reach the store any more.
+ */
+final class OffHeapMovieStore implements MovieStore {
+    private final int size;
+    private final LongBuffer ids;
+    private final LongBuffer nameAddresses;
+    private final LongBuffer descriptionAddresses;
+    private final IntBuffer directorCodes;
+    private final IntBuffer years;
+    private final IntBuffer genreCodes;
+    private final IntBuffer durations;
+    private final IntBuffer iconIds;
+    private final DoubleBuffer imdbRatings;
+    private final OffHeapStringHeap strings = new OffHeapStringHeap();
+    // Row + 1 per slot, 0 for an empty slot
+    private final IntBuffer idTable;
+    private final int idTableMask;
+    private final long columnBytes;
+    private final SymbolTable directors;
+    private final SymbolTable genres;
+    private final List<ByteBuffer> buffers = new ArrayList<>();
+    private boolean freed;
+
+    OffHeapMovieStore(List<Movie> movies, SymbolTable directors, SymbolTable genres) {
+        this.size = movies.size();
+        this.directors = directors;
+        this.genres = genres;
+        this.ids = allocate(size * (long) Long.BYTES).asLongBuffer();
+        this.nameAddresses = allocate(size * (long) Long.BYTES).asLongBuffer();
+        this.descriptionAddresses = allocate(size * (long) Long.BYTES).asLongBuffer();
+        this.directorCodes = allocate(size * (long) Integer.BYTES).asIntBuffer();
+        this.years = allocate(size * (long) Integer.BYTES).asIntBuffer();
+        this.genreCodes = allocate(size * (long) Integer.BYTES).asIntBuffer();
+        this.durations = allocate(size * (long) Integer.BYTES).asIntBuffer();
+        this.iconIds = allocate(size * (long) Integer.BYTES).asIntBuffer();
+        this.imdbRatings = allocate(size * (long) Double.BYTES).asDoubleBuffer();
+        int tableSize = Integer.highestOneBit(Math.max(2, size * 2 - 1)) << 1;
+        this.idTable = allocate(tableSize * (long) Integer.BYTES).asIntBuffer();
+        this.idTableMask = tableSize - 1;
+        this.columnBytes = size * (3L * Long.BYTES + 5L * Integer.BYTES + Double.BYTES)
+            + tableSize * (long) Integer.BYTES;
+
+        for (int row = 0; row < size; row++) {
+            Movie movie = movies.get(row);
+            ids.put(row, movie.getId());
+            nameAddresses.put(row, strings.add(movie.getMovieName()));
+            descriptionAddresses.put(row, strings.add(movie.getDescription()));
+            directorCodes.put(row, directors.encode(movie.getDirector()));
+            years.put(row, movie.getYear());
+            genreCodes.put(row, genres.encode(movie.getGenre()));
+            durations.put(row, movie.getDuration());
+            iconIds.put(row, movie.iconId());
+            imdbRatings.put(row, movie.getImdbRating());
+
+            int slot = slotOf(movie.getId());
+            while (idTable.get(slot) != 0 && ids.get(idTable.get(slot) - 1) != movie.getId()) {
+                slot = (slot + 1) & idTableMask;
+            }
+            // A repeated id points at its last row, as a map put would
+            idTable.put(slot, row + 1);
+        }
+    }
+
+    private ByteBuffer allocate(long bytes) {
+        ByteBuffer buffer = DirectBuffers.allocate(bytes);
+        buffers.add(buffer);
+        return buffer;
+    }
+
+    private int slotOf(long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & idTableMask;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Movie get(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+        return new Movie(ids.get(row), strings.get(nameAddresses.get(row)), directors.decode(directorCodes.get(row)),
+            years.get(row), genres.decode(genreCodes.get(row)), strings.get(descriptionAddresses.get(row)),
+            durations.get(row), imdbRatings.get(row), iconIds.get(row));
+    }
+
+    @Override
+    public long idAt(int row) {
+        return ids.get(row);
+    }
+
+    @Override
+    public int directorCodeAt(int row) {
+        return directorCodes.get(row);
+    }
+
+    @Override
+    public int genreCodeAt(int row) {
+        return genreCodes.get(row);
+    }
+
+    @Override
+    public int rowOf(long id) {
+        int slot = slotOf(id);
+        int entry;
+        while ((entry = idTable.get(slot)) != 0) {
+            if (ids.get(entry - 1) == id) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & idTableMask;
+        }
+        return -1;
+    }
+
+    @Override
+    public synchronized long offHeapBytes() {
+        return freed ? 0 : columnBytes + strings.capacityBytes();
+    }
+
+    @Override
+    public synchronized void free() {
+        if (freed) {
+            return;
+        }
+        freed = true;
+        for (ByteBuffer buffer : buffers) {
+            DirectBuffers.free(buffer);
+        }
+        buffers.clear();
+        strings.free();
+    }
+}
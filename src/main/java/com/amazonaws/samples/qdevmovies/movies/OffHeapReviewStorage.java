@@ -0,0 +1,98 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Reviews kept outside the Java heap as fixed-width records in direct-buffer chunks,
+ * with comments in an {@link OffHeapStringHeap}. Each record holds the reviewer name
+ * and avatar codes, the rating and the comment's address. Chunks never move once
+ * allocated, so reading a handle needs no lock. The owner calls {@link #free()} once
+ * no reader can reach the storage any more.
+ */
+final class OffHeapReviewStorage implements ReviewStorage {
+    private static final int CHUNK_SHIFT = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int USER_NAME_CODE = 0;
+    private static final int AVATAR_CODE = 4;
+    private static final int RATING = 8;
+    private static final int COMMENT_ADDRESS = 16;
+    private static final int RECORD_BYTES = 24;
+
+    private final SymbolTable userNames;
+    private final SymbolTable avatars;
+    private final OffHeapStringHeap comments = new OffHeapStringHeap();
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private int count;
+    private boolean freed;
+
+    OffHeapReviewStorage(SymbolTable userNames, SymbolTable avatars) {
+        this.userNames = userNames;
+        this.avatars = avatars;
+    }
+
+    @Override
+    public synchronized int append(Review review) {
+        if (freed) {
+            throw new IllegalStateException("Review storage has been freed");
+        }
+        ByteBuffer[] current = chunks;
+        int handle = count;
+        if ((handle >>> CHUNK_SHIFT) == current.length) {
+            current = Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = DirectBuffers.allocate(CHUNK_SIZE * (long) RECORD_BYTES);
+        }
+        ByteBuffer chunk = current[handle >>> CHUNK_SHIFT];
+        int offset = (handle & (CHUNK_SIZE - 1)) * RECORD_BYTES;
+        chunk.putInt(offset + USER_NAME_CODE, userNames.encode(review.getUserName()));
+        chunk.putInt(offset + AVATAR_CODE, avatars.encode(review.getAvatarEmoji()));
+        chunk.putDouble(offset + RATING, review.getRating());
+        chunk.putLong(offset + COMMENT_ADDRESS, comments.add(review.getComment()));
+        count = handle + 1;
+        chunks = current;
+        return handle;
+    }
+
+    @Override
+    public Review get(int handle) {
+        ByteBuffer chunk = chunks[handle >>> CHUNK_SHIFT];
+        int offset = (handle & (CHUNK_SIZE - 1)) * RECORD_BYTES;
+        return new Review(userNames.decode(chunk.getInt(offset + USER_NAME_CODE)),
+            avatars.decode(chunk.getInt(offset + AVATAR_CODE)), chunk.getDouble(offset + RATING),
+            comments.get(chunk.getLong(offset + COMMENT_ADDRESS)));
+    }
+
+    @Override
+    public double rating(int handle) {
+        return chunks[handle >>> CHUNK_SHIFT].getDouble((handle & (CHUNK_SIZE - 1)) * RECORD_BYTES + RATING);
+    }
+
+    @Override
+    public int userNameCode(int handle) {
+        return chunks[handle >>> CHUNK_SHIFT].getInt((handle & (CHUNK_SIZE - 1)) * RECORD_BYTES + USER_NAME_CODE);
+    }
+
+    @Override
+    public int avatarCode(int handle) {
+        return chunks[handle >>> CHUNK_SHIFT].getInt((handle & (CHUNK_SIZE - 1)) * RECORD_BYTES + AVATAR_CODE);
+    }
+
+    @Override
+    public synchronized long offHeapBytes() {
+        return freed ? 0 : (long) chunks.length * CHUNK_SIZE * RECORD_BYTES + comments.capacityBytes();
+    }
+
+    @Override
+    public synchronized void free() {
+        if (freed) {
+            return;
+        }
+        freed = true;
+        ByteBuffer[] current = chunks;
+        chunks = new ByteBuffer[0];
+        for (ByteBuffer chunk : current) {
+            DirectBuffers.free(chunk);
+        }
+        comments.free();
+    }
+}
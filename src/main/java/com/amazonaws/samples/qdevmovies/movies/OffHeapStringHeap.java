@@ -0,0 +1,82 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Append-only UTF-8 string storage in direct memory. Each string is written as a length
+ * followed by its bytes into 1 MB chunks; its address packs the chunk number and the
+ * offset into one long. Chunks never move once written, so a reader holding an address
+ * needs no lock; only appending takes one.
+ */
+final class OffHeapStringHeap {
+    static final long NULL_ADDRESS = -1L;
+    private static final int CHUNK_BYTES = 1 << 20;
+
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private int used;
+
+    /**
+     * @param value String to store, may be null
+     * @return Address to pass to {@link #get(long)}
+     */
+    synchronized long add(String value) {
+        if (value == null) {
+            return NULL_ADDRESS;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int needed = Integer.BYTES + bytes.length;
+        ByteBuffer[] current = chunks;
+        if (current.length == 0 || used + needed > current[current.length - 1].capacity()) {
+            current = Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = DirectBuffers.allocate(Math.max(CHUNK_BYTES, needed));
+            used = 0;
+        }
+        ByteBuffer chunk = current[current.length - 1];
+        int offset = used;
+        chunk.putInt(offset, bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            chunk.put(offset + Integer.BYTES + i, bytes[i]);
+        }
+        used += needed;
+        chunks = current;
+        return ((long) (current.length - 1) << 32) | offset;
+    }
+
+    String get(long address) {
+        if (address == NULL_ADDRESS) {
+            return null;
+        }
+        ByteBuffer chunk = chunks[(int) (address >>> 32)];
+        int offset = (int) address;
+        byte[] bytes = new byte[chunk.getInt(offset)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = chunk.get(offset + Integer.BYTES + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Frees every chunk. No address handed out may be read afterwards.
+     */
+    synchronized void free() {
+        ByteBuffer[] current = chunks;
+        chunks = new ByteBuffer[0];
+        used = 0;
+        for (ByteBuffer chunk : current) {
+            DirectBuffers.free(chunk);
+        }
+    }
+
+    /**
+     * @return Direct memory reserved by the heap
+     */
+    long capacityBytes() {
+        long bytes = 0;
+        for (ByteBuffer chunk : chunks) {
+            bytes += chunk.capacity();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,416 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * "Similar movies" recommendations. Neighbour lists are computed by a background batch
+ * job, in parallel across the catalog, whenever the catalog or reviews change; serving
+ * a request only looks up the precomputed ids of at most K movies. The lists keep ids
+ * rather than movies, so with off-heap storage the catalog stays off the heap.
+ * <p>
+ * Similarity combines shared genre facets (e.g. "Crime" in "Crime/Drama"), a shared
+ * director, release-year proximity and co-rating: reviewers who rated both movies highly.
+ * Only movies sharing a facet, the director or a high rater are scored, and from each of
+ * those lists only the {@code movies.similar.max-candidates-per-facet} closest in release
+ * year, so a facet shared by most of the catalog does not make the build quadratic.
+ */
+@Service
+public class RecommendationService {
+    private static final Logger logger = LogManager.getLogger(RecommendationService.class);
+    static final double HIGH_RATING = 4.0;
+    private static final double GENRE_WEIGHT = 3.0;
+    private static final double DIRECTOR_WEIGHT = 1.5;
+    private static final double YEAR_WEIGHT = 1.0;
+    private static final double CO_RATING_WEIGHT = 2.0;
+    private static final double YEAR_SCALE = 5.0;
+
+    private final MovieService movieService;
+    private final ReviewService reviewService;
+    private final CatalogChangeLog changeLog;
+    private final int topK;
+    private final int maxCandidatesPerFacet;
+    private final int parallelism;
+    private final ExecutorService batchPool;
+    private final ExecutorService refreshExecutor;
+    private CompletableFuture<Void> pendingRefresh;
+    private volatile NeighborIndex index = NeighborIndex.EMPTY;
+
+    public RecommendationService(MovieService movieService, ReviewService reviewService, CatalogChangeLog changeLog,
+                                 int topK) {
+        this(movieService, reviewService, changeLog, topK, 500);
+    }
+
+    @Autowired
+    public RecommendationService(MovieService movieService, ReviewService reviewService, CatalogChangeLog changeLog,
+                                 @Value("${movies.similar.top-k:5}") int topK,
+                                 @Value("${movies.similar.max-candidates-per-facet:500}") int maxCandidatesPerFacet) {
+        this.movieService = movieService;
+        this.reviewService = reviewService;
+        this.changeLog = changeLog;
+        this.topK = Math.max(1, topK);
+        this.maxCandidatesPerFacet = Math.max(1, maxCandidatesPerFacet);
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.batchPool = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "similar-movies-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // The rebuild waits on its chunk jobs, so it runs apart from the pool doing them
+        this.refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "similar-movies-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        refresh();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+        batchPool.shutdownNow();
+    }
+
+    /**
+     * Returns the movies most similar to the given one, best first. If the catalog has
+     * changed since the neighbour lists were built, a rebuild is started in the background
+     * and the current lists are served meanwhile.
+     *
+     * @param movieId Movie to find neighbours for
+     * @return Up to K similar movies, or an empty list if the movie is unknown
+     */
+    public List<Movie> getSimilarMovies(long movieId) {
+        try (RequestTrace.Span span = RequestTrace.span("similar-lookup")) {
+            NeighborIndex current = index;
+            if (current.version != changeLog.getVersion()) {
+                refresh();
+            }
+            Integer row = current.rowById.get(movieId);
+            if (row == null) {
+                return Collections.emptyList();
+            }
+            int[] neighbors = current.neighbors[row];
+            List<Movie> similar = new ArrayList<>(neighbors.length);
+            for (int neighbor : neighbors) {
+                // A movie removed since the lists were built is skipped until the rebuild
+                movieService.getMovieById(current.ids[neighbor]).ifPresent(similar::add);
+            }
+            return similar;
+        }
+    }
+
+    /**
+     * Starts a rebuild of the neighbour lists unless one is already running.
+     *
+     * @return Future completing when the rebuild that was started (or already running) ends
+     */
+    synchronized Future<?> refresh() {
+        if (pendingRefresh != null && !pendingRefresh.isDone()) {
+            return pendingRefresh;
+        }
+        pendingRefresh = CompletableFuture.runAsync(() -> {
+            try {
+                long version = changeLog.getVersion();
+                long start = System.nanoTime();
+                index = build(version);
+                logger.info("Built similar-movie lists for {} movies in {} ms", index.ids.length,
+                    (System.nanoTime() - start) / 1_000_000);
+            } catch (RuntimeException e) {
+                logger.error("Failed to build similar-movie lists: {}", e.getMessage(), e);
+            }
+        }, refreshExecutor);
+        return pendingRefresh;
+    }
+
+    private NeighborIndex build(long version) {
+        // Per-row features as dense codes, inverted below so each movie only scores movies it shares something with.
+        // Movies are read one at a time, so only these features are held, not the catalog.
+        List<Long> idList = new ArrayList<>();
+        List<Integer> yearList = new ArrayList<>();
+        List<int[]> facetList = new ArrayList<>();
+        List<int[]> directorList = new ArrayList<>();
+        List<int[]> raterList = new ArrayList<>();
+        Map<String, Integer> facetCodes = new HashMap<>();
+        Map<String, Integer> directorCodes = new HashMap<>();
+        Map<String, Integer> raterCodes = new HashMap<>();
+        movieService.forEachMovie(movie -> {
+            idList.add(movie.getId());
+            yearList.add(movie.getYear());
+            String genre = movie.getGenre() == null ? "" : movie.getGenre();
+            String[] parts = genre.toLowerCase(Locale.ROOT).split("/");
+            int[] codes = new int[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                codes[i] = facetCodes.computeIfAbsent(parts[i].trim(), key -> facetCodes.size());
+            }
+            facetList.add(codes);
+            directorList.add(new int[] {directorCodes.computeIfAbsent(movie.getDirector(),
+                key -> directorCodes.size())});
+
+            String[] names = reviewService.reviewerNamesRatedAtLeast(movie.getId(), HIGH_RATING);
+            int[] raters = new int[names.length];
+            for (int i = 0; i < names.length; i++) {
+                raters[i] = raterCodes.computeIfAbsent(names[i], key -> raterCodes.size());
+            }
+            raterList.add(Arrays.stream(raters).sorted().distinct().toArray());
+        });
+
+        int size = idList.size();
+        long[] ids = new long[size];
+        int[] years = new int[size];
+        Map<Long, Integer> rowById = new HashMap<>();
+        for (int row = 0; row < size; row++) {
+            ids[row] = idList.get(row);
+            years[row] = yearList.get(row);
+            rowById.put(ids[row], row);
+        }
+        int[][] facets = facetList.toArray(new int[0][]);
+        int[][] directors = directorList.toArray(new int[0][]);
+        int[][] highRaters = raterList.toArray(new int[0][]);
+        int[][] rowsByFacet = invert(facets, facetCodes.size(), years);
+        int[][] rowsByDirector = invert(directors, directorCodes.size(), years);
+        int[][] rowsByRater = invert(highRaters, raterCodes.size(), years);
+
+        int[][] neighbors = new int[size][];
+        int chunk = Math.max(1, (size + parallelism - 1) / parallelism);
+        List<CompletableFuture<Void>> jobs = new ArrayList<>();
+        for (int from = 0; from < size; from += chunk) {
+            int start = from;
+            int end = Math.min(size, from + chunk);
+            jobs.add(CompletableFuture.runAsync(() -> {
+                Candidates candidates = new Candidates(size);
+                for (int row = start; row < end; row++) {
+                    candidates.next(row);
+                    candidates.addNearest(rowsByDirector, directors[row], row, years, maxCandidatesPerFacet);
+                    candidates.addNearest(rowsByFacet, facets[row], row, years, maxCandidatesPerFacet);
+                    candidates.addNearest(rowsByRater, highRaters[row], row, years, maxCandidatesPerFacet);
+                    neighbors[row] = topNeighbors(row, years, facets, directors, highRaters, candidates);
+                }
+            }, batchPool));
+        }
+        CompletableFuture.allOf(jobs.toArray(new CompletableFuture<?>[0])).join();
+        return new NeighborIndex(version, ids, rowById, neighbors);
+    }
+
+    /**
+     * Turns per-row keys into per-key row lists, each sorted by release year and then row.
+     */
+    private static int[][] invert(int[][] keysByRow, int keyCount, int[] years) {
+        int[] counts = new int[keyCount];
+        for (int[] keys : keysByRow) {
+            for (int key : keys) {
+                counts[key]++;
+            }
+        }
+        long[][] sortKeys = new long[keyCount][];
+        for (int key = 0; key < keyCount; key++) {
+            sortKeys[key] = new long[counts[key]];
+            counts[key] = 0;
+        }
+        for (int row = 0; row < keysByRow.length; row++) {
+            for (int key : keysByRow[row]) {
+                sortKeys[key][counts[key]++] = ((long) years[row] << 32) | row;
+            }
+        }
+        int[][] lists = new int[keyCount][];
+        for (int key = 0; key < keyCount; key++) {
+            long[] sorted = sortKeys[key];
+            Arrays.sort(sorted);
+            int[] rows = new int[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                rows[i] = (int) sorted[i];
+            }
+            lists[key] = rows;
+        }
+        return lists;
+    }
+
+    private int[] topNeighbors(int row, int[] years, int[][] facets, int[][] directors, int[][] highRaters,
+                               Candidates candidates) {
+        // Best K so far, kept sorted by descending score
+        int[] best = new int[topK];
+        double[] bestScores = new double[topK];
+        int found = 0;
+        for (int i = 0; i < candidates.size; i++) {
+            int candidate = candidates.rows[i];
+            double score = score(years[row], years[candidate], facets[row], facets[candidate],
+                directors[row][0] == directors[candidate][0], highRaters[row], highRaters[candidate]);
+            if (found < topK || score > bestScores[found - 1]) {
+                int position = Math.min(found, topK - 1);
+                while (position > 0 && bestScores[position - 1] < score) {
+                    best[position] = best[position - 1];
+                    bestScores[position] = bestScores[position - 1];
+                    position--;
+                }
+                best[position] = candidate;
+                bestScores[position] = score;
+                found = Math.min(found + 1, topK);
+            }
+        }
+        return Arrays.copyOf(best, found);
+    }
+
+    private static double score(int year, int otherYear, int[] facets, int[] otherFacets, boolean sameDirector,
+                                int[] raters, int[] otherRaters) {
+        int sharedFacets = 0;
+        for (int facet : facets) {
+            for (int otherFacet : otherFacets) {
+                if (facet == otherFacet) {
+                    sharedFacets++;
+                    break;
+                }
+            }
+        }
+        double genreScore = (double) sharedFacets / (facets.length + otherFacets.length - sharedFacets);
+        double directorScore = sameDirector ? 1.0 : 0.0;
+        double yearScore = 1.0 / (1.0 + Math.abs(year - otherYear) / YEAR_SCALE);
+
+        double coRatingScore = 0;
+        if (raters.length > 0 && otherRaters.length > 0) {
+            int shared = 0;
+            int i = 0;
+            int j = 0;
+            while (i < raters.length && j < otherRaters.length) {
+                if (raters[i] == otherRaters[j]) {
+                    shared++;
+                    i++;
+                    j++;
+                } else if (raters[i] < otherRaters[j]) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+            coRatingScore = shared / Math.sqrt((double) raters.length * otherRaters.length);
+        }
+
+        return GENRE_WEIGHT * genreScore + DIRECTOR_WEIGHT * directorScore
+            + YEAR_WEIGHT * yearScore + CO_RATING_WEIGHT * coRatingScore;
+    }
+
+    /**
+     * Candidate rows for one movie at a time, reused across the rows of a batch job.
+     * A row is visited once per movie: {@code visited[row]} holds the number of the last
+     * movie that collected it, so nothing needs clearing between movies.
+     */
+    private static final class Candidates {
+        private int[] rows = new int[64];
+        private int size;
+        private final int[] visited;
+        private int epoch;
+
+        Candidates(int catalogSize) {
+            this.visited = new int[catalogSize];
+        }
+
+        /**
+         * Starts collecting for a new movie, which is never its own candidate.
+         */
+        void next(int row) {
+            size = 0;
+            epoch++;
+            visited[row] = epoch;
+        }
+
+        /**
+         * Adds, from each list named by {@code keys}, the rows nearest in release year to
+         * {@code row}, at most {@code limit} per list.
+         */
+        void addNearest(int[][] lists, int[] keys, int row, int[] years, int limit) {
+            for (int key : keys) {
+                int[] list = lists[key];
+                int from = 0;
+                int to = list.length;
+                if (list.length > limit) {
+                    from = Math.max(0, Math.min(list.length - limit, positionOf(list, row, years) - limit / 2));
+                    to = from + limit;
+                }
+                for (int i = from; i < to; i++) {
+                    add(list[i]);
+                }
+            }
+        }
+
+        private void add(int candidate) {
+            if (visited[candidate] == epoch) {
+                return;
+            }
+            visited[candidate] = epoch;
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = candidate;
+        }
+
+        /**
+         * @return Index of {@code row} in a list sorted by year and then row
+         */
+        private static int positionOf(int[] list, int row, int[] years) {
+            int low = 0;
+            int high = list.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int other = list[mid];
+                int order = years[other] != years[row] ? Integer.compare(years[other], years[row])
+                    : Integer.compare(other, row);
+                if (order < 0) {
+                    low = mid + 1;
+                } else if (order > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    Optional<Long> getIndexedVersion() {
+        NeighborIndex current = index;
+        return current == NeighborIndex.EMPTY ? Optional.empty() : Optional.of(current.version);
+    }
+
+    /**
+     * Neighbour lists for one catalog version; {@code neighbors[row]} holds rows, and
+     * {@code ids[row]} the id of the movie at a row.
+     */
+    private static final class NeighborIndex {
+        static final NeighborIndex EMPTY =
+            new NeighborIndex(-1, new long[0], Collections.emptyMap(), new int[0][]);
+
+        private final long version;
+        private final long[] ids;
+        private final Map<Long, Integer> rowById;
+        private final int[][] neighbors;
+
+        NeighborIndex(long version, long[] ids, Map<Long, Integer> rowById, int[][] neighbors) {
+            this.version = version;
+            this.ids = ids;
+            this.rowById = rowById;
+            this.neighbors = neighbors;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spans timed while serving one request. {@link RequestTracingFilter} starts a trace per
+ * request and binds it to the serving thread; code on that thread times a stage with
+ *
+ * <pre>
+ * try (RequestTrace.Span span = RequestTrace.span("movie-lookup")) {
+ *     ...
+ * }
+ * </pre>
+ *
+ * which is a no-op outside a traced request. Spans nest by the order they are opened.
+ * A trace is a handful of parallel arrays and is only formatted (ids as hex, OTLP JSON)
+ * when it is exported, so tracing every request stays cheap.
+ */
+public final class RequestTrace {
+    private static final ThreadLocal<RequestTrace> CURRENT = new ThreadLocal<>();
+    private static final Span NOOP_SPAN = new Span(null, -1);
+
+    private final long traceIdHigh;
+    private final long traceIdLow;
+    private final long parentSpanId;
+    private final boolean sampled;
+    private final long startEpochNanos;
+    private final long startNanos;
+    private final String method;
+    private final String path;
+    private int status;
+    private boolean longRunning;
+
+    private String[] names = new String[8];
+    private long[] spanIds = new long[8];
+    private int[] parents = new int[8];
+    private long[] starts = new long[8];
+    private long[] ends = new long[8];
+    private int count;
+    private int open = -1;
+
+    RequestTrace(String method, String path, String traceparent, boolean sampled) {
+        this.method = method;
+        this.path = path;
+        this.startEpochNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        this.startNanos = System.nanoTime();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long[] incoming = parseTraceparent(traceparent);
+        if (incoming != null) {
+            // Continue the caller's W3C trace so the spans join its distributed trace
+            this.traceIdHigh = incoming[0];
+            this.traceIdLow = incoming[1];
+            this.parentSpanId = incoming[2];
+            this.sampled = sampled || incoming[3] != 0;
+        } else {
+            this.traceIdHigh = random.nextLong();
+            this.traceIdLow = random.nextLong() | 1;
+            this.parentSpanId = 0;
+            this.sampled = sampled;
+        }
+        startSpan("request");
+    }
+
+    /**
+     * Opens a span on the current thread's trace.
+     *
+     * @param name Stage name; also used as the {@code Server-Timing} metric name
+     * @return Span to close when the stage ends, or a no-op span outside a traced request
+     */
+    public static Span span(String name) {
+        RequestTrace trace = CURRENT.get();
+        return trace == null ? NOOP_SPAN : trace.startSpan(name);
+    }
+
+    /**
+     * Marks the current thread's request as long-running by design, e.g. a long poll or an
+     * event stream, so its duration does not make it a slow request. A no-op outside a
+     * traced request.
+     */
+    public static void markLongRunning() {
+        RequestTrace trace = CURRENT.get();
+        if (trace != null) {
+            trace.longRunning = true;
+        }
+    }
+
+    static RequestTrace current() {
+        return CURRENT.get();
+    }
+
+    void bind() {
+        CURRENT.set(this);
+    }
+
+    void unbind() {
+        CURRENT.remove();
+    }
+
+    private Span startSpan(String name) {
+        if (count == names.length) {
+            int capacity = count * 2;
+            names = Arrays.copyOf(names, capacity);
+            spanIds = Arrays.copyOf(spanIds, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        int index = count++;
+        names[index] = name;
+        spanIds[index] = ThreadLocalRandom.current().nextLong() | 1;
+        parents[index] = open;
+        starts[index] = System.nanoTime();
+        ends[index] = -1;
+        open = index;
+        return new Span(this, index);
+    }
+
+    private void endSpan(int index) {
+        ends[index] = System.nanoTime();
+        // Closing a span also closes any child left open, e.g. by an exception
+        for (int child = index + 1; child < count; child++) {
+            if (ends[child] < 0) {
+                ends[child] = ends[index];
+            }
+        }
+        open = parents[index];
+    }
+
+    /**
+     * Ends the request span.
+     *
+     * @param httpStatus Response status
+     */
+    void finish(int httpStatus) {
+        this.status = httpStatus;
+        if (ends[0] < 0) {
+            endSpan(0);
+        }
+    }
+
+    /**
+     * @return Total time of each stage finished so far, for the {@code Server-Timing} header
+     */
+    String serverTiming() {
+        Map<String, Long> totals = new LinkedHashMap<>();
+        long now = System.nanoTime();
+        for (int i = 1; i < count; i++) {
+            if (ends[i] >= 0) {
+                totals.merge(names[i], ends[i] - starts[i], Long::sum);
+            }
+        }
+        totals.put("total", (ends[0] >= 0 ? ends[0] : now) - starts[0]);
+        StringBuilder header = new StringBuilder();
+        for (Map.Entry<String, Long> entry : totals.entrySet()) {
+            if (header.length() > 0) {
+                header.append(", ");
+            }
+            header.append(entry.getKey()).append(";dur=").append(Math.round(entry.getValue() / 1_000.0) / 1_000.0);
+        }
+        return header.toString();
+    }
+
+    boolean isLongRunning() {
+        return longRunning;
+    }
+
+    long durationNanos() {
+        return (ends[0] >= 0 ? ends[0] : System.nanoTime()) - starts[0];
+    }
+
+    boolean isSampled() {
+        return sampled;
+    }
+
+    String getMethod() {
+        return method;
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    int getStatus() {
+        return status;
+    }
+
+    int spanCount() {
+        return count;
+    }
+
+    String spanName(int index) {
+        return names[index];
+    }
+
+    long spanDurationNanos(int index) {
+        return ends[index] - starts[index];
+    }
+
+    long spanStartEpochNanos(int index) {
+        return startEpochNanos + (starts[index] - startNanos);
+    }
+
+    long spanEndEpochNanos(int index) {
+        return startEpochNanos + (ends[index] - startNanos);
+    }
+
+    String spanIdHex(int index) {
+        return hex(spanIds[index]);
+    }
+
+    /**
+     * @return Parent span id as hex, or an empty string for a root span
+     */
+    String parentSpanIdHex(int index) {
+        if (parents[index] >= 0) {
+            return hex(spanIds[parents[index]]);
+        }
+        return parentSpanId != 0 ? hex(parentSpanId) : "";
+    }
+
+    String traceIdHex() {
+        return hex(traceIdHigh) + hex(traceIdLow);
+    }
+
+    /**
+     * Formats the trace as an OTLP/JSON {@code ExportTraceServiceRequest}.
+     *
+     * @param serviceName Value of the {@code service.name} resource attribute
+     * @return JSON object with one {@code resourceSpans} entry holding every span
+     */
+    JSONObject toOtlpJson(String serviceName) {
+        String traceId = traceIdHex();
+        JSONArray spans = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            JSONObject span = new JSONObject();
+            span.put("traceId", traceId);
+            span.put("spanId", spanIdHex(i));
+            String parent = parentSpanIdHex(i);
+            if (!parent.isEmpty()) {
+                span.put("parentSpanId", parent);
+            }
+            span.put("name", i == 0 ? method + " " + path : names[i]);
+            // SPAN_KIND_SERVER for the request, SPAN_KIND_INTERNAL for stages
+            span.put("kind", i == 0 ? 2 : 1);
+            // OTLP/JSON encodes 64-bit integers as strings
+            span.put("startTimeUnixNano", String.valueOf(spanStartEpochNanos(i)));
+            span.put("endTimeUnixNano", String.valueOf(spanEndEpochNanos(i)));
+            if (i == 0) {
+                JSONArray attributes = new JSONArray();
+                attributes.put(attribute("http.request.method", "stringValue", method));
+                attributes.put(attribute("url.path", "stringValue", path));
+                attributes.put(attribute("http.response.status_code", "intValue", String.valueOf(status)));
+                span.put("attributes", attributes);
+            }
+            spans.put(span);
+        }
+
+        JSONObject scopeSpans = new JSONObject();
+        scopeSpans.put("scope", new JSONObject().put("name", "com.amazonaws.samples.qdevmovies"));
+        scopeSpans.put("spans", spans);
+        JSONObject resource = new JSONObject();
+        resource.put("attributes", new JSONArray().put(attribute("service.name", "stringValue", serviceName)));
+        JSONObject resourceSpans = new JSONObject();
+        resourceSpans.put("resource", resource);
+        resourceSpans.put("scopeSpans", new JSONArray().put(scopeSpans));
+        return new JSONObject().put("resourceSpans", new JSONArray().put(resourceSpans));
+    }
+
+    private static JSONObject attribute(String key, String type, String value) {
+        return new JSONObject().put("key", key).put("value", new JSONObject().put(type, value));
+    }
+
+    private static String hex(long value) {
+        String digits = Long.toHexString(value);
+        return "0000000000000000".substring(digits.length()) + digits;
+    }
+
+    /**
+     * Parses a W3C {@code traceparent} header ({@code 00-<trace id>-<parent id>-<flags>}).
+     *
+     * @return trace id high and low, parent span id and sampled flag, or null if absent or malformed
+     */
+    private static long[] parseTraceparent(String header) {
+        if (header == null || header.length() != 55 || header.charAt(2) != '-' || header.charAt(35) != '-'
+                || header.charAt(52) != '-') {
+            return null;
+        }
+        try {
+            long high = Long.parseUnsignedLong(header.substring(3, 19), 16);
+            long low = Long.parseUnsignedLong(header.substring(19, 35), 16);
+            long parent = Long.parseUnsignedLong(header.substring(36, 52), 16);
+            long flags = Long.parseLong(header.substring(53, 55), 16);
+            if ((high == 0 && low == 0) || parent == 0) {
+                return null;
+            }
+            return new long[] {high, low, parent, flags & 1};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * One timed stage. Closing it a second time has no effect.
+     */
+    public static final class Span implements AutoCloseable {
+        private final RequestTrace trace;
+        private final int index;
+
+        private Span(RequestTrace trace, int index) {
+            this.trace = trace;
+            this.index = index;
+        }
+
+        @Override
+        public void close() {
+            if (trace != null && trace.ends[index] < 0) {
+                trace.endSpan(index);
+            }
+        }
+    }
+}
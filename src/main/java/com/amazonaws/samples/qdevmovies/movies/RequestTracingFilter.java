@@ -0,0 +1,48 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Traces every request: opens the root span, binds the trace to the serving thread for
+ * {@link RequestTrace#span(String)}, and hands the finished trace to the
+ * {@link TraceRecorder}. The {@code Server-Timing} header is written here when the
+ * response is still uncommitted, so it then includes rendering; otherwise the header
+ * set before the body was written, by {@link TracingInterceptor} or
+ * {@link ServerTimingAdvice}, stands.
+ */
+public class RequestTracingFilter extends OncePerRequestFilter {
+    static final String SERVER_TIMING = "Server-Timing";
+
+    private final TraceRecorder recorder;
+
+    RequestTracingFilter(TraceRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RequestTrace trace = recorder.start(request);
+        trace.bind();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                // Streams such as /catalog/events stay open long after this thread returns
+                RequestTrace.markLongRunning();
+            }
+            trace.finish(response.getStatus());
+            if (!response.isCommitted()) {
+                response.setHeader(SERVER_TIMING, trace.serverTiming());
+            }
+            trace.unbind();
+            recorder.finish(trace);
+        }
+    }
+}
@@ -1,10 +1,10 @@
 package com.amazonaws.samples.qdevmovies.movies;
 
 public class Review {
-    private String userName;
-    private String avatarEmoji;
-    private double rating;
-    private String comment;
+    private final String userName;
+    private final String avatarEmoji;
+    private final double rating;
+    private final String comment;
 
     public Review(String userName, String avatarEmoji, double rating, String comment) {
         this.userName = userName;
@@ -17,4 +17,21 @@ public class Review {
     public String getAvatarEmoji() { return avatarEmoji; }
     public double getRating() { return rating; }
     public String getComment() { return comment; }
+
+    /**
+     * Shares the review set's instances of the reviewer name and avatar strings, so a
+     * value that repeats across reviews is stored once.
+     *
+     * @param userNames Reviewer name table
+     * @param avatars Avatar table
+     * @return This review if it already holds the shared instances, otherwise a copy that does
+     */
+    Review withSharedText(SymbolTable userNames, SymbolTable avatars) {
+        String sharedUserName = userNames.canonical(userName);
+        String sharedAvatar = avatars.canonical(avatarEmoji);
+        if (sharedUserName == userName && sharedAvatar == avatarEmoji) {
+            return this;
+        }
+        return new Review(sharedUserName, sharedAvatar, rating, comment);
+    }
 }
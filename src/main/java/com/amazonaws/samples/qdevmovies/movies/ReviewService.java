@@ -2,46 +2,457 @@ package com.amazonaws.samples.qdevmovies.movies;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import javax.annotation.PreDestroy;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Reviews per movie, kept sorted best first: by rating, highest first, then most recent
+ * first. Recency is the order reviews arrived in for that movie (file order, then
+ * additions). Pages are read with a keyset cursor naming the last review seen, so a
+ * page costs a binary search plus the page itself however many reviews a movie has,
+ * and a review added between two page reads never shifts the pages already read.
+ * The review records themselves live in a {@link ReviewStorage}, on or off the heap
+ * as {@code movies.storage} says; the per-movie order only holds handles into it.
+ * Reviews are read out of storage into fresh lists, so nothing handed to a caller
+ * points into records that a resync may free.
+ */
 @Service
 public class ReviewService {
     private static final Logger logger = LogManager.getLogger(ReviewService.class);
 
-    public List<Review> getReviewsForMovie(long movieId) {
-        List<Review> reviews = new ArrayList<>();
+    private final CatalogStorage storage;
+    // A full resync swaps in a new set, so readers see either all old or all new reviews
+    private volatile ReviewSet reviews;
+
+    public ReviewService() {
+        this(CatalogStorage.HEAP);
+    }
+
+    /**
+     * @param storage {@code heap} or {@code off-heap}, where the review records are kept
+     */
+    @Autowired
+    public ReviewService(@Value("${movies.storage:heap}") String storage) {
+        this(CatalogStorage.parse(storage));
+    }
+
+    ReviewService(CatalogStorage storage) {
+        this.storage = storage;
+        this.reviews = ReviewSet.of(loadReviewsFromJson(), storage);
+    }
+
+    /**
+     * Frees the current review records. Nothing may read reviews afterwards.
+     */
+    @PreDestroy
+    public synchronized void close() {
+        reviews.close();
+    }
+
+    private Map<Long, List<Review>> loadReviewsFromJson() {
+        Map<Long, List<Review>> reviews = new HashMap<>();
         try {
             InputStream inputStream = getClass().getClassLoader().getResourceAsStream("mock-reviews.json");
             if (inputStream != null) {
                 Scanner scanner = new Scanner(inputStream, StandardCharsets.UTF_8.name());
                 String jsonContent = scanner.useDelimiter("\\A").next();
                 scanner.close();
-                
+
                 JSONObject reviewsData = new JSONObject(jsonContent);
-                if (reviewsData.has(String.valueOf(movieId))) {
-                    JSONArray movieReviews = reviewsData.getJSONArray(String.valueOf(movieId));
+                for (String movieId : reviewsData.keySet()) {
+                    JSONArray movieReviews = reviewsData.getJSONArray(movieId);
+                    List<Review> parsed = new ArrayList<>(movieReviews.length());
                     for (int i = 0; i < movieReviews.length(); i++) {
-                        JSONObject reviewObj = movieReviews.getJSONObject(i);
-                        reviews.add(new Review(
-                            reviewObj.getString("userName"),
-                            reviewObj.getString("avatarEmoji"),
-                            reviewObj.getDouble("rating"),
-                            reviewObj.getString("comment")
-                        ));
+                        parsed.add(MovieJson.reviewFromJson(movieReviews.getJSONObject(i)));
                     }
+                    reviews.put(Long.parseLong(movieId), parsed);
                 }
             }
         } catch (Exception e) {
-            logger.error("Failed to load reviews for movie {}: {}", movieId, e.getMessage());
+            logger.error("Failed to load reviews from JSON: {}", e.getMessage());
         }
         return reviews;
     }
+
+    /**
+     * @param movieId Movie whose reviews to return
+     * @return Every review of the movie, best first
+     */
+    public List<Review> getReviewsForMovie(long movieId) {
+        try (RequestTrace.Span span = RequestTrace.span("review-lookup");
+             ReviewSet current = acquireReviews()) {
+            MovieReviews reviews = current.byMovie.getOrDefault(movieId, MovieReviews.EMPTY);
+            return reviews.read(current.storage, 0, reviews.size());
+        }
+    }
+
+    /**
+     * Returns one page of a movie's reviews, best first.
+     *
+     * @param movieId Movie whose reviews to return
+     * @param after Cursor from the previous page's {@link ReviewPage#getNextCursor()}, or null for the first page
+     * @param limit Maximum number of reviews on the page
+     * @return The page, with a cursor for the next one if more reviews follow
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public ReviewPage getReviewPage(long movieId, String after, int limit) {
+        try (RequestTrace.Span span = RequestTrace.span("review-lookup");
+             ReviewSet current = acquireReviews()) {
+            MovieReviews reviews = current.byMovie.getOrDefault(movieId, MovieReviews.EMPTY);
+            int from = 0;
+            if (after != null && !after.trim().isEmpty()) {
+                int separator = after.indexOf('_');
+                if (separator < 0) {
+                    throw new IllegalArgumentException("Malformed review cursor: " + after);
+                }
+                double rating;
+                int sequence;
+                try {
+                    rating = Double.parseDouble(after.substring(0, separator));
+                    sequence = Integer.parseInt(after.substring(separator + 1));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Malformed review cursor: " + after);
+                }
+                // NaN compares as neither higher nor lower than any rating, and would land on the first page
+                if (Double.isNaN(rating) || Double.isInfinite(rating)) {
+                    throw new IllegalArgumentException("Malformed review cursor: " + after);
+                }
+                from = reviews.firstAfter(current.storage, rating, sequence);
+            }
+            int to = Math.min(reviews.size(), from + Math.max(1, limit));
+            String nextCursor = to < reviews.size() ? reviews.cursor(current.storage, to - 1) : null;
+            return new ReviewPage(reviews.read(current.storage, from, to), nextCursor, reviews.size());
+        }
+    }
+
+    /**
+     * Reads ratings and reviewer names straight from storage, so scanning every movie's
+     * reviews creates no review objects.
+     *
+     * @param movieId Movie whose reviews to read
+     * @param minRating Lowest rating to include
+     * @return Names of the reviewers who rated the movie at least {@code minRating}, may repeat
+     */
+    String[] reviewerNamesRatedAtLeast(long movieId, double minRating) {
+        try (ReviewSet current = acquireReviews()) {
+            MovieReviews reviews = current.byMovie.getOrDefault(movieId, MovieReviews.EMPTY);
+            // Sorted best first, so the qualifying reviews are a prefix
+            int count = 0;
+            while (count < reviews.size() && current.storage.rating(reviews.handles[count]) >= minRating) {
+                count++;
+            }
+            String[] names = new String[count];
+            for (int i = 0; i < count; i++) {
+                names[i] = current.userNames.decode(current.storage.userNameCode(reviews.handles[i]));
+            }
+            return names;
+        }
+    }
+
+    /**
+     * @return Every movie's reviews in the order they arrived, keyed by movie id
+     */
+    public Map<Long, List<Review>> getAllReviews() {
+        try (ReviewSet current = acquireReviews()) {
+            Map<Long, List<Review>> reviews = new HashMap<>();
+            for (Map.Entry<Long, MovieReviews> entry : current.byMovie.entrySet()) {
+                reviews.put(entry.getKey(), entry.getValue().inArrivalOrder(current.storage));
+            }
+            return Collections.unmodifiableMap(reviews);
+        }
+    }
+
+    /**
+     * @return Total number of reviews across all movies
+     */
+    public long countReviews() {
+        long count = 0;
+        for (MovieReviews movieReviews : reviews.byMovie.values()) {
+            count += movieReviews.size();
+        }
+        return count;
+    }
+
+    /**
+     * @return Where the review records are kept
+     */
+    public CatalogStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * @return Direct memory held by the review records, 0 when they live on the heap
+     */
+    public long getOffHeapBytes() {
+        return reviews.storage.offHeapBytes();
+    }
+
+    /**
+     * Adds a review to a movie's reviews as its most recent one.
+     *
+     * @param movieId Movie being reviewed
+     * @param review Review to add
+     */
+    public synchronized void addReview(long movieId, Review review) {
+        // The service's own reference keeps the current set alive while it holds the lock
+        ReviewSet current = reviews;
+        current.byMovie.compute(movieId,
+            (id, existing) -> (existing != null ? existing : MovieReviews.EMPTY).with(current.storage, review));
+    }
+
+    /**
+     * Replaces every review, e.g. when a follower resynchronises from a snapshot. The
+     * symbol tables and the records are rebuilt from the new reviews; the old records are
+     * freed once the last reader still holding them is done.
+     *
+     * @param reviews New reviews keyed by movie id, each list in arrival order
+     */
+    public synchronized void replaceAllReviews(Map<Long, List<Review>> reviews) {
+        ReviewSet previous = this.reviews;
+        this.reviews = ReviewSet.of(reviews, storage);
+        previous.close();
+    }
+
+    /**
+     * Memory report of the reviewer name and avatar symbol tables, counting the
+     * references held by the current reviews.
+     *
+     * @return One {@link SymbolTable#memoryReport} per table, keyed by table name
+     */
+    public Map<String, Object> getSymbolReport() {
+        try (ReviewSet current = acquireReviews()) {
+            SymbolTable.Usage userNames = current.userNames.usage();
+            SymbolTable.Usage avatars = current.avatars.usage();
+            for (MovieReviews movieReviews : current.byMovie.values()) {
+                for (int handle : movieReviews.handles) {
+                    userNames.add(current.storage.userNameCode(handle));
+                    avatars.add(current.storage.avatarCode(handle));
+                }
+            }
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put(current.userNames.getName(), current.userNames.memoryReport(userNames));
+            report.put(current.avatars.getName(), current.avatars.memoryReport(avatars));
+            return report;
+        }
+    }
+
+    /**
+     * @return The current reviews, retained; close them when done
+     * @throws IllegalStateException if the service has been closed
+     */
+    private ReviewSet acquireReviews() {
+        while (true) {
+            ReviewSet current = reviews;
+            if (current.retain()) {
+                return current;
+            }
+            // A set is only freed after it was replaced, unless the service itself was closed
+            if (current == reviews) {
+                throw new IllegalStateException("Review service has been closed");
+            }
+        }
+    }
+
+    /**
+     * One page of a movie's reviews.
+     */
+    public static final class ReviewPage {
+        private final List<Review> reviews;
+        private final String nextCursor;
+        private final int totalReviews;
+
+        ReviewPage(List<Review> reviews, String nextCursor, int totalReviews) {
+            this.reviews = reviews;
+            this.nextCursor = nextCursor;
+            this.totalReviews = totalReviews;
+        }
+
+        public List<Review> getReviews() {
+            return reviews;
+        }
+
+        /**
+         * @return Cursor to pass as {@code after} for the next page, or null on the last page
+         */
+        public String getNextCursor() {
+            return nextCursor;
+        }
+
+        public int getTotalReviews() {
+            return totalReviews;
+        }
+    }
+
+    /**
+     * One full set of reviews: the per-movie order, the records it points into and the
+     * symbol tables of the records' repeated text. Reference counted: the service holds
+     * one reference while the set is current and every reader one while it reads, and
+     * the records are freed when the last one is released.
+     */
+    private static final class ReviewSet implements AutoCloseable {
+        private final SymbolTable userNames = new SymbolTable("reviewerNames");
+        private final SymbolTable avatars = new SymbolTable("avatars");
+        private final ReviewStorage storage;
+        // Each movie's reviews are immutable and replaced on change, so readers never need a lock
+        private final Map<Long, MovieReviews> byMovie = new ConcurrentHashMap<>();
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private ReviewSet(CatalogStorage storage) {
+            this.storage = ReviewStorage.create(storage, userNames, avatars);
+        }
+
+        static ReviewSet of(Map<Long, List<Review>> reviews, CatalogStorage storage) {
+            ReviewSet set = new ReviewSet(storage);
+            for (Map.Entry<Long, List<Review>> entry : reviews.entrySet()) {
+                set.byMovie.put(entry.getKey(), MovieReviews.of(set.storage, entry.getValue()));
+            }
+            return set;
+        }
+
+        /**
+         * @return false if the set has already been freed
+         */
+        boolean retain() {
+            int count;
+            do {
+                count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        @Override
+        public void close() {
+            if (references.decrementAndGet() == 0) {
+                storage.free();
+            }
+        }
+    }
+
+    /**
+     * A movie's reviews sorted best first, as handles into the set's storage, each with
+     * its arrival number for that movie.
+     */
+    private static final class MovieReviews {
+        static final MovieReviews EMPTY = new MovieReviews(new int[0], new int[0], 0);
+
+        private final int[] handles;
+        private final int[] sequences;
+        private final int nextSequence;
+
+        private MovieReviews(int[] handles, int[] sequences, int nextSequence) {
+            this.handles = handles;
+            this.sequences = sequences;
+            this.nextSequence = nextSequence;
+        }
+
+        static MovieReviews of(ReviewStorage storage, List<Review> arrivalOrder) {
+            if (arrivalOrder.isEmpty()) {
+                return EMPTY;
+            }
+            Integer[] order = new Integer[arrivalOrder.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> compare(arrivalOrder.get(a).getRating(), a, arrivalOrder.get(b).getRating(), b));
+            int[] handles = new int[order.length];
+            int[] sequences = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                handles[i] = storage.append(arrivalOrder.get(order[i]));
+                sequences[i] = order[i];
+            }
+            return new MovieReviews(handles, sequences, order.length);
+        }
+
+        /**
+         * Copies both arrays with the review inserted at its place, so adding a review costs
+         * time linear in the movie's review count. Readers keep using the old arrays without
+         * a lock; a movie's reviews number in the hundreds at most, so the copy stays cheaper
+         * than a tree that would have to be copied or locked for every page read.
+         */
+        MovieReviews with(ReviewStorage storage, Review review) {
+            int sequence = nextSequence;
+            int position = firstAfter(storage, review.getRating(), sequence);
+            int[] handles = new int[this.handles.length + 1];
+            int[] sequences = new int[handles.length];
+            System.arraycopy(this.handles, 0, handles, 0, position);
+            System.arraycopy(this.sequences, 0, sequences, 0, position);
+            handles[position] = storage.append(review);
+            sequences[position] = sequence;
+            System.arraycopy(this.handles, position, handles, position + 1, this.handles.length - position);
+            System.arraycopy(this.sequences, position, sequences, position + 1, this.sequences.length - position);
+            return new MovieReviews(handles, sequences, sequence + 1);
+        }
+
+        int size() {
+            return handles.length;
+        }
+
+        /**
+         * @return Index of the first review ordered after the (rating, sequence) position
+         */
+        int firstAfter(ReviewStorage storage, double rating, int sequence) {
+            int low = 0;
+            int high = handles.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (compare(storage.rating(handles[middle]), sequences[middle], rating, sequence) <= 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        String cursor(ReviewStorage storage, int index) {
+            return storage.rating(handles[index]) + "_" + sequences[index];
+        }
+
+        /**
+         * @return The reviews from index {@code from} to {@code to}, best first, read out of storage
+         */
+        List<Review> read(ReviewStorage storage, int from, int to) {
+            Review[] reviews = new Review[to - from];
+            for (int i = from; i < to; i++) {
+                reviews[i - from] = storage.get(handles[i]);
+            }
+            return Collections.unmodifiableList(Arrays.asList(reviews));
+        }
+
+        List<Review> inArrivalOrder(ReviewStorage storage) {
+            Review[] arrival = new Review[handles.length];
+            for (int i = 0; i < handles.length; i++) {
+                arrival[sequences[i]] = storage.get(handles[i]);
+            }
+            return Collections.unmodifiableList(Arrays.asList(arrival));
+        }
+
+        // Higher rating first, then the later arrival first
+        private static int compare(double rating, int sequence, double otherRating, int otherSequence) {
+            if (rating != otherRating) {
+                return rating > otherRating ? -1 : 1;
+            }
+            return Integer.compare(otherSequence, sequence);
+        }
+    }
 }
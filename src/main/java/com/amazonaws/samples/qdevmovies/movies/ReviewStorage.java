@@ -0,0 +1,50 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+/**
+ * Append-only review records addressed by handle, behind which {@link ReviewService}
+ * keeps one set of reviews. A handle stays valid until the storage is freed. Appends
+ * may run concurrently with reads of handles already handed out.
+ */
+interface ReviewStorage {
+
+    /**
+     * @param storage Where to keep the records
+     * @param userNames Table the reviewer name codes refer to
+     * @param avatars Table the avatar codes refer to
+     * @return An empty storage
+     */
+    static ReviewStorage create(CatalogStorage storage, SymbolTable userNames, SymbolTable avatars) {
+        return storage == CatalogStorage.OFF_HEAP
+            ? new OffHeapReviewStorage(userNames, avatars)
+            : new HeapReviewStorage(userNames, avatars);
+    }
+
+    /**
+     * @return Handle of the stored review
+     */
+    int append(Review review);
+
+    Review get(int handle);
+
+    double rating(int handle);
+
+    /**
+     * @return Code of the reviewer's name, or {@link SymbolTable#NULL_CODE}
+     */
+    int userNameCode(int handle);
+
+    /**
+     * @return Code of the reviewer's avatar, or {@link SymbolTable#NULL_CODE}
+     */
+    int avatarCode(int handle);
+
+    /**
+     * @return Direct memory held by the storage, 0 when it lives on the heap
+     */
+    long offHeapBytes();
+
+    /**
+     * Frees the direct memory held by the storage. No handle may be read afterwards.
+     */
+    void free();
+}
@@ -0,0 +1,29 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers {@link SearchAdmissionFilter} in front of the search API.
+ */
+@Configuration
+public class SearchAdmissionConfig {
+
+    @Bean
+    public FilterRegistrationBean<SearchAdmissionFilter> searchAdmissionFilter(
+            @Value("${movies.admission.rate-per-second:20}") double ratePerSecond,
+            @Value("${movies.admission.burst:40}") int burst,
+            @Value("${movies.admission.stripes:4096}") int stripes,
+            @Value("${movies.admission.max-concurrent:64}") int maxConcurrent,
+            @Value("${movies.admission.queue-timeout-ms:50}") long queueTimeoutMillis,
+            @Value("${movies.admission.client-header:}") String clientHeader) {
+        SearchAdmissionFilter filter = new SearchAdmissionFilter(
+            new ClientRateLimiter(ratePerSecond, burst, stripes), maxConcurrent, queueTimeoutMillis, clientHeader);
+        FilterRegistrationBean<SearchAdmissionFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/movies/search");
+        registration.setName("searchAdmissionFilter");
+        return registration;
+    }
+}
@@ -0,0 +1,103 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONObject;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control for the search API. Each request first takes a permit from its
+ * client's token bucket (429 Too Many Requests when empty), then waits for one of a
+ * fixed number of execution slots. If no slot frees up within the queue-latency
+ * target the request is shed with 503 Service Unavailable rather than queueing
+ * without bound. Both rejections carry a {@code Retry-After} header.
+ */
+public class SearchAdmissionFilter extends OncePerRequestFilter {
+    private static final Logger logger = LogManager.getLogger(SearchAdmissionFilter.class);
+
+    private final ClientRateLimiter rateLimiter;
+    private final Semaphore executionSlots;
+    private final long queueTimeoutMillis;
+    private final String clientHeader;
+
+    /**
+     * @param rateLimiter Per-client token buckets
+     * @param maxConcurrent Searches allowed to run at the same time
+     * @param queueTimeoutMillis Longest a request may wait for a slot before being shed
+     * @param clientHeader Header identifying the client (e.g. an API key), or null to use the remote address
+     */
+    SearchAdmissionFilter(ClientRateLimiter rateLimiter, int maxConcurrent, long queueTimeoutMillis,
+                          String clientHeader) {
+        this.rateLimiter = rateLimiter;
+        this.executionSlots = new Semaphore(Math.max(1, maxConcurrent));
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.clientHeader = clientHeader != null && !clientHeader.trim().isEmpty() ? clientHeader.trim() : null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String client = clientKey(request);
+        long waitNanos = rateLimiter.tryAcquire(client);
+        if (waitNanos > 0) {
+            logger.debug("Rate limited search client {}", client);
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, waitNanos,
+                "Avast! Ye be searchin' too fast, matey! Slow yer sails and try again shortly.");
+            return;
+        }
+
+        boolean admitted;
+        try {
+            admitted = executionSlots.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+        if (!admitted) {
+            logger.warn("Shedding search request from {}: no slot free within {} ms", client, queueTimeoutMillis);
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, TimeUnit.SECONDS.toNanos(1),
+                "Batten down the hatches! The ship be overloaded, matey. Try again in a moment.");
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            executionSlots.release();
+        }
+    }
+
+    private String clientKey(HttpServletRequest request) {
+        if (clientHeader != null) {
+            String value = request.getHeader(clientHeader);
+            if (value != null && !value.isEmpty()) {
+                return value;
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, long retryAfterNanos, String message)
+            throws IOException {
+        long retryAfterSeconds = Math.max(1, (retryAfterNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(new JSONObject()
+            .put("success", false)
+            .put("message", message)
+            .toString());
+    }
+}
@@ -0,0 +1,128 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Each search-as-you-type session's last search, so the next keystroke can refine it
+ * instead of rescanning the catalog. Bounded twice: entries idle longer than the TTL
+ * expire, and the least recently used sessions are evicted once the cached searches
+ * together hold more than the row budget. A search larger than the whole budget is
+ * not cached; its session simply scans the catalog again on the next keystroke.
+ */
+@Component
+public class SearchSessionCache {
+    static final int MAX_SESSION_LENGTH = 128;
+
+    private final int maxSessions;
+    private final long maxRows;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    // Access order, so the eldest entry is both the least recently used and the longest idle
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedRows;
+
+    @Autowired
+    public SearchSessionCache(@Value("${movies.search.sessions.max-sessions:10000}") int maxSessions,
+                              @Value("${movies.search.sessions.max-rows:1000000}") long maxRows,
+                              @Value("${movies.search.sessions.ttl-ms:30000}") long ttlMillis) {
+        this(maxSessions, maxRows, ttlMillis, System::currentTimeMillis);
+    }
+
+    SearchSessionCache(int maxSessions, long maxRows, long ttlMillis, LongSupplier clock) {
+        this.maxSessions = Math.max(1, maxSessions);
+        this.maxRows = Math.max(0, maxRows);
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * @param session Session key chosen by the client
+     * @return The session's last search, or null if it has none or it expired
+     */
+    public synchronized MovieService.RefinableSearch get(String session) {
+        long now = clock.getAsLong();
+        expire(now);
+        Entry entry = entries.get(session);
+        if (entry == null) {
+            return null;
+        }
+        entry.lastUsed = now;
+        return entry.search;
+    }
+
+    /**
+     * Records a session's latest search, replacing its previous one.
+     *
+     * @param session Session key chosen by the client
+     * @param search The search to refine on the next keystroke
+     */
+    public synchronized void put(String session, MovieService.RefinableSearch search) {
+        remove(session);
+        if (search.size() > maxRows) {
+            return;
+        }
+        // Keep only rows and criteria; movies read from off-heap storage would be copies
+        entries.put(session, new Entry(search.withoutMovies(), clock.getAsLong()));
+        cachedRows += search.size();
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxSessions || cachedRows > maxRows) {
+            cachedRows -= eldest.next().search.size();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * @param session Session key to validate
+     * @throws IllegalArgumentException if the key is blank or too long
+     */
+    static void checkSession(String session) {
+        if (session.trim().isEmpty() || session.length() > MAX_SESSION_LENGTH) {
+            throw new IllegalArgumentException(
+                "Session must be between 1 and " + MAX_SESSION_LENGTH + " characters");
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long cachedRows() {
+        return cachedRows;
+    }
+
+    private void remove(String session) {
+        Entry previous = entries.remove(session);
+        if (previous != null) {
+            cachedRows -= previous.search.size();
+        }
+    }
+
+    private void expire(long now) {
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (eldest.hasNext()) {
+            Entry entry = eldest.next().getValue();
+            if (now - entry.lastUsed < ttlMillis) {
+                break;
+            }
+            cachedRows -= entry.search.size();
+            eldest.remove();
+        }
+    }
+
+    private static final class Entry {
+        private final MovieService.RefinableSearch search;
+        private long lastUsed;
+
+        Entry(MovieService.RefinableSearch search, long lastUsed) {
+            this.search = search;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
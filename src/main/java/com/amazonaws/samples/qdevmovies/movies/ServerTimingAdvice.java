@@ -0,0 +1,37 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Sets the {@code Server-Timing} header on {@code @ResponseBody} and {@code ResponseEntity}
+ * responses. Their handlers write the body before {@link TracingInterceptor#postHandle} runs,
+ * by which time the response is committed, so the header is added here instead, just
+ * before the body is written. This ends the {@code controller} stage.
+ */
+@ControllerAdvice
+public class ServerTimingAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        RequestTrace trace = RequestTrace.current();
+        if (trace != null && request instanceof ServletServerHttpRequest) {
+            TracingInterceptor.endController(((ServletServerHttpRequest) request).getServletRequest());
+            response.getHeaders().set(RequestTracingFilter.SERVER_TIMING, trace.serverTiming());
+        }
+        return body;
+    }
+}
@@ -0,0 +1,301 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scatter-gathers searches across catalog shards. Each shard is a MoviesApplication
+ * started with {@code movies.shard.index}/{@code movies.shard.count}; this coordinator
+ * queries every shard's {@code /movies/shard/search} endpoint in parallel. Each shard
+ * returns its lowest-id matches in id order, so merging the lists and keeping the first
+ * {@code movies.shard.max-results} gives exactly what one node holding the whole catalog
+ * would return. Shards that fail or miss the deadline are reported instead of failing
+ * the whole search; a call still running at the deadline is disconnected so its thread
+ * is free again. Only active when {@code movies.shard.peers} is set.
+ */
+@Service
+@ConditionalOnProperty(name = "movies.shard.peers")
+public class ShardedSearchCoordinator {
+    private static final Logger logger = LogManager.getLogger(ShardedSearchCoordinator.class);
+
+    private final List<String> shardUrls;
+    private final long timeoutMillis;
+    private final int maxResults;
+    private final ThreadPoolExecutor scatterPool;
+    // One per pool thread; a shard call holds one from submission until it returns
+    private final Semaphore callSlots;
+
+    public ShardedSearchCoordinator(String[] shardUrls, long timeoutMillis, int maxResults) {
+        this(shardUrls, timeoutMillis, maxResults, 64);
+    }
+
+    /**
+     * @param shardUrls Base URLs of every shard, e.g. {@code http://localhost:8081}
+     * @param timeoutMillis Deadline for the whole scatter-gather
+     * @param maxResults Number of merged results to keep (top-K)
+     * @param maxConcurrentSearches Searches that may scatter at once; the pool has a thread
+     *                              per shard for each, so no shard call waits for a thread
+     */
+    @Autowired
+    public ShardedSearchCoordinator(@Value("${movies.shard.peers}") String[] shardUrls,
+                                    @Value("${movies.shard.timeout-ms:500}") long timeoutMillis,
+                                    @Value("${movies.shard.max-results:1000}") int maxResults,
+                                    @Value("${movies.shard.max-concurrent-searches:${movies.admission.max-concurrent:64}}")
+                                    int maxConcurrentSearches) {
+        List<String> urls = new ArrayList<>();
+        for (String url : shardUrls) {
+            if (url != null && !url.trim().isEmpty()) {
+                urls.add(url.trim());
+            }
+        }
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("movies.shard.peers must list at least one shard URL");
+        }
+        this.shardUrls = Collections.unmodifiableList(urls);
+        this.timeoutMillis = timeoutMillis;
+        this.maxResults = maxResults;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        int threads = Math.max(1, maxConcurrentSearches) * this.shardUrls.size();
+        // A call that had to wait for a busy thread could only start late and be reported as
+        // a failed shard, so without a free slot it is refused at once instead. With one, it
+        // waits in the queue at most for a thread that has already returned from its call.
+        this.callSlots = new Semaphore(threads);
+        this.scatterPool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "shard-scatter-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.scatterPool.allowCoreThreadTimeOut(true);
+        logger.info("Coordinating searches across {} shards: {}", this.shardUrls.size(), this.shardUrls);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scatterPool.shutdownNow();
+    }
+
+    /**
+     * Searches every shard in parallel and merges what arrives before the deadline.
+     *
+     * @param name Movie name to search for (can be null)
+     * @param id Specific movie ID to find (can be null)
+     * @param genre Genre to filter by (can be null)
+     * @return Merged results plus the shards that did not answer in time
+     */
+    public ShardedSearchResult search(String name, Long id, String genre) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        List<ShardCall> calls = new ArrayList<>(shardUrls.size());
+        List<CompletableFuture<List<Movie>>> futures = new ArrayList<>(shardUrls.size());
+        for (String shardUrl : shardUrls) {
+            ShardCall call = new ShardCall(buildShardUri(shardUrl, name, id, genre), deadline);
+            calls.add(call);
+            futures.add(submit(call));
+        }
+
+        List<List<Movie>> shardResults = new ArrayList<>(shardUrls.size());
+        List<String> failedShards = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            CompletableFuture<List<Movie>> future = futures.get(i);
+            try {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                shardResults.add(future.get(remaining, TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                calls.get(i).cancel();
+                logger.warn("Shard {} missed the {} ms search deadline", shardUrls.get(i), timeoutMillis);
+                failedShards.add(shardUrls.get(i));
+            } catch (ExecutionException e) {
+                logger.warn("Shard {} search failed: {}", shardUrls.get(i), e.getCause().getMessage());
+                failedShards.add(shardUrls.get(i));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                calls.get(i).cancel();
+                failedShards.add(shardUrls.get(i));
+            }
+        }
+        return new ShardedSearchResult(merge(shardResults, maxResults), failedShards);
+    }
+
+    private CompletableFuture<List<Movie>> submit(ShardCall call) {
+        CompletableFuture<List<Movie>> future = new CompletableFuture<>();
+        if (!callSlots.tryAcquire()) {
+            future.completeExceptionally(new IllegalStateException("too many concurrent searches"));
+            return future;
+        }
+        try {
+            scatterPool.execute(() -> {
+                try {
+                    future.complete(call.execute());
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    callSlots.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            callSlots.release();
+            future.completeExceptionally(new IllegalStateException("coordinator is shut down"));
+        }
+        return future;
+    }
+
+    /**
+     * K-way merge of lists each sorted by id, keeping the first {@code limit} movies.
+     */
+    static List<Movie> merge(List<List<Movie>> sortedLists, int limit) {
+        // Each entry is {list index, position in that list}, ordered by the id found there
+        PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) -> Long.compare(
+            sortedLists.get(a[0]).get(a[1]).getId(), sortedLists.get(b[0]).get(b[1]).getId()));
+        for (int i = 0; i < sortedLists.size(); i++) {
+            if (!sortedLists.get(i).isEmpty()) {
+                heads.add(new int[] {i, 0});
+            }
+        }
+        List<Movie> merged = new ArrayList<>();
+        while (!heads.isEmpty() && merged.size() < limit) {
+            int[] head = heads.poll();
+            List<Movie> list = sortedLists.get(head[0]);
+            merged.add(list.get(head[1]));
+            if (++head[1] < list.size()) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    private URI buildShardUri(String shardUrl, String name, Long id, String genre) {
+        UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(shardUrl)
+            .path("/movies/shard/search")
+            .queryParam("limit", maxResults);
+        if (name != null) {
+            builder.queryParam("name", name);
+        }
+        if (id != null) {
+            builder.queryParam("id", id);
+        }
+        if (genre != null) {
+            builder.queryParam("genre", genre);
+        }
+        return builder.encode().build().toUri();
+    }
+
+    /**
+     * One shard request. Its connect and read timeouts are the time left until the search
+     * deadline, and {@link #cancel()} disconnects it, which ends a blocked read at once.
+     */
+    private static final class ShardCall {
+        private final URI uri;
+        private final long deadline;
+        private HttpURLConnection connection;
+        private boolean cancelled;
+
+        ShardCall(URI uri, long deadline) {
+            this.uri = uri;
+            this.deadline = deadline;
+        }
+
+        List<Movie> execute() {
+            try {
+                String body = fetch();
+                JSONArray moviesArray = new JSONObject(body).getJSONArray("movies");
+                List<Movie> movies = new ArrayList<>(moviesArray.length());
+                for (int i = 0; i < moviesArray.length(); i++) {
+                    movies.add(MovieJson.movieFromJson(moviesArray.getJSONObject(i)));
+                }
+                return movies;
+            } catch (IOException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+
+        private String fetch() throws IOException {
+            int remainingMillis = (int) TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                throw new SocketTimeoutException("deadline passed before the call started");
+            }
+            HttpURLConnection opened = (HttpURLConnection) uri.toURL().openConnection();
+            synchronized (this) {
+                if (cancelled) {
+                    throw new SocketTimeoutException("cancelled");
+                }
+                connection = opened;
+            }
+            opened.setConnectTimeout(remainingMillis);
+            opened.setReadTimeout(remainingMillis);
+            int status = opened.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                opened.disconnect();
+                throw new IOException("HTTP " + status);
+            }
+            try (InputStream body = opened.getInputStream()) {
+                return StreamUtils.copyToString(body, StandardCharsets.UTF_8);
+            }
+        }
+
+        void cancel() {
+            HttpURLConnection open;
+            synchronized (this) {
+                cancelled = true;
+                open = connection;
+            }
+            if (open != null) {
+                open.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Merged outcome of a scatter-gather search.
+     */
+    public static final class ShardedSearchResult {
+        private final List<Movie> movies;
+        private final List<String> failedShards;
+
+        ShardedSearchResult(List<Movie> movies, List<String> failedShards) {
+            this.movies = movies;
+            this.failedShards = failedShards;
+        }
+
+        public List<Movie> getMovies() {
+            return movies;
+        }
+
+        public List<String> getFailedShards() {
+            return failedShards;
+        }
+
+        public boolean isPartial() {
+            return !failedShards.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Logs how long the JVM took to become ready to serve, counted from JVM start so class
+ * loading and catalog parsing are included. With {@code movies.startup.exit-when-ready}
+ * the application then exits, which is how the CDS training run and the startup
+ * benchmark (see the {@code cds} Maven profile) time cold starts.
+ */
+@Component
+public class StartupReporter implements ApplicationListener<ApplicationReadyEvent> {
+    private static final Logger logger = LogManager.getLogger(StartupReporter.class);
+
+    private final boolean exitWhenReady;
+
+    public StartupReporter(@Value("${movies.startup.exit-when-ready:false}") boolean exitWhenReady) {
+        this.exitWhenReady = exitWhenReady;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        logger.info("Ready in {} ms after JVM start", ManagementFactory.getRuntimeMXBean().getUptime());
+        if (exitWhenReady) {
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary that maps each distinct string of one field to a compact int code and
+ * keeps one shared instance of each string. Records that hold the shared instance
+ * instead of their own copy store a repeated value once, and stores can keep the code
+ * in place of the string. Lookups by code are lock-free; only adding a new symbol takes
+ * a lock.
+ * <p>
+ * A table only grows. It is owned by one catalog or one set of reviews and is dropped
+ * with it, so it holds at most the values of the records it was built for.
+ */
+public final class SymbolTable {
+    // Rough per-String heap cost (object header, fields, array header) on a 64-bit JVM
+    private static final int STRING_OVERHEAD_BYTES = 40;
+    // Code of a null value
+    static final int NULL_CODE = -1;
+
+    private final String name;
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] symbols = new String[16];
+    private int size;
+
+    public SymbolTable(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the code for a value, adding it to the table if it is new.
+     *
+     * @param value Value to encode
+     * @return The value's code, or {@link #NULL_CODE} for null
+     */
+    int encode(String value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        return add(value);
+    }
+
+    private synchronized int add(String value) {
+        Integer existing = codes.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        String[] current = symbols;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = value;
+        // Publish the array before the code so a reader holding the code always finds the value
+        symbols = current;
+        codes.put(value, size);
+        return size++;
+    }
+
+    String decode(int code) {
+        return code == NULL_CODE ? null : symbols[code];
+    }
+
+    /**
+     * @param value Value to share (can be null)
+     * @return The table's instance of an equal string, added if it is new
+     */
+    public String canonical(String value) {
+        return decode(encode(value));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        return codes.size();
+    }
+
+    /**
+     * @return A counter for the codes held by a set of records
+     */
+    Usage usage() {
+        return new Usage();
+    }
+
+    /**
+     * Estimated heap use of the table against what one String per reference would cost.
+     *
+     * @param usage Codes held by the records currently in the catalog
+     * @return Report with {@code distinctValues}, {@code liveValues}, {@code references},
+     *         {@code tableBytes}, {@code uncompressedBytes} and {@code savedBytes}
+     */
+    public Map<String, Object> memoryReport(Usage usage) {
+        String[] snapshot = symbols;
+        int distinct = size();
+        long tableBytes = 4L * snapshot.length + 48L * distinct;
+        for (int i = 0; i < distinct; i++) {
+            tableBytes += stringBytes(snapshot[i]);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("distinctValues", distinct);
+        // Values still held by some record; the rest belong to records changed since the table was built
+        report.put("liveValues", usage.liveCodes.cardinality());
+        report.put("references", usage.references);
+        report.put("tableBytes", tableBytes);
+        report.put("uncompressedBytes", usage.uncompressedBytes);
+        report.put("savedBytes", Math.max(0, usage.uncompressedBytes - tableBytes));
+        return report;
+    }
+
+    private static long stringBytes(String value) {
+        return STRING_OVERHEAD_BYTES + 2L * value.length();
+    }
+
+    /**
+     * Counts the references to a table's codes from one set of live records.
+     */
+    final class Usage {
+        private final BitSet liveCodes = new BitSet();
+        private long references;
+        private long uncompressedBytes;
+
+        void add(int code) {
+            if (code == NULL_CODE) {
+                return;
+            }
+            liveCodes.set(code);
+            references++;
+            uncompressedBytes += stringBytes(decode(code));
+        }
+    }
+}
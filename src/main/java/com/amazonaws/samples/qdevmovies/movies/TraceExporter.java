@@ -0,0 +1,13 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+/**
+ * Destination for finished request traces. Called on the request thread, so
+ * implementations must not block.
+ */
+interface TraceExporter {
+
+    void export(RequestTrace trace);
+
+    default void close() {
+    }
+}
@@ -0,0 +1,90 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Starts request traces and decides what happens to them when they finish. A fraction
+ * of requests is sampled for export up front; requests slower than the threshold are
+ * always exported and logged, with the log capped at a few lines per second so a slow
+ * spell cannot flood it. Requests that are long-running by design, such as long polls and
+ * asynchronous streams, are never counted as slow.
+ */
+public class TraceRecorder {
+    private static final Logger logger = LogManager.getLogger(TraceRecorder.class);
+
+    private final double sampleRate;
+    private final long slowThresholdNanos;
+    private final int slowLogsPerSecond;
+    private final TraceExporter exporter;
+    private final AtomicLong slowLogSecond = new AtomicLong();
+    private final AtomicInteger slowLogsThisSecond = new AtomicInteger();
+
+    /**
+     * @param sampleRate Fraction of requests exported regardless of latency (0 to 1)
+     * @param slowThresholdMillis Requests at least this slow are logged and exported
+     * @param slowLogsPerSecond Most slow requests logged per second
+     * @param exporter Where exported traces go, or null to export nothing
+     */
+    TraceRecorder(double sampleRate, long slowThresholdMillis, int slowLogsPerSecond, TraceExporter exporter) {
+        this.sampleRate = sampleRate;
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+        this.slowLogsPerSecond = slowLogsPerSecond;
+        this.exporter = exporter;
+    }
+
+    RequestTrace start(HttpServletRequest request) {
+        boolean sampled = sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+        return new RequestTrace(request.getMethod(), request.getRequestURI(), request.getHeader("traceparent"), sampled);
+    }
+
+    void finish(RequestTrace trace) {
+        boolean slow = !trace.isLongRunning() && trace.durationNanos() >= slowThresholdNanos;
+        if (slow && allowSlowLog()) {
+            logger.warn("Slow request {} {} -> {} took {} ms [{}] trace {}", trace.getMethod(), trace.getPath(),
+                trace.getStatus(), TimeUnit.NANOSECONDS.toMillis(trace.durationNanos()), trace.serverTiming(),
+                trace.traceIdHex());
+        }
+        if (exporter != null && (slow || trace.isSampled())) {
+            exporter.export(trace);
+        }
+    }
+
+    private boolean allowSlowLog() {
+        long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+        long current = slowLogSecond.get();
+        if (current != second && slowLogSecond.compareAndSet(current, second)) {
+            slowLogsThisSecond.set(0);
+        }
+        return slowLogsThisSecond.incrementAndGet() <= slowLogsPerSecond;
+    }
+
+    /**
+     * @param limit Maximum number of traces to return
+     * @return Most recent exported traces, newest first, or an empty list unless exporting to memory
+     */
+    List<RequestTrace> recentTraces(int limit) {
+        if (exporter instanceof InMemoryTraceExporter) {
+            return ((InMemoryTraceExporter) exporter).recent(limit);
+        }
+        return Collections.emptyList();
+    }
+
+    boolean isInMemory() {
+        return exporter instanceof InMemoryTraceExporter;
+    }
+
+    void shutdown() {
+        if (exporter != null) {
+            exporter.close();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * Wires request tracing: the recorder and its exporter, the filter that traces each
+ * request and the interceptor that splits controller time from rendering.
+ * Disabled entirely with {@code movies.tracing.enabled=false}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "movies.tracing.enabled", matchIfMissing = true)
+public class TracingConfig implements WebMvcConfigurer {
+
+    @Bean(destroyMethod = "shutdown")
+    public TraceRecorder traceRecorder(
+            @Value("${movies.tracing.sample-rate:0.01}") double sampleRate,
+            @Value("${movies.tracing.slow-threshold-ms:500}") long slowThresholdMillis,
+            @Value("${movies.tracing.slow-log-per-second:5}") int slowLogsPerSecond,
+            @Value("${movies.tracing.exporter:memory}") String exporterType,
+            @Value("${movies.tracing.memory-capacity:1000}") int memoryCapacity,
+            @Value("${movies.tracing.file:traces.jsonl}") String file,
+            @Value("${spring.application.name:movie-service}") String serviceName) {
+        TraceExporter exporter;
+        switch (exporterType.trim().toLowerCase(Locale.ROOT)) {
+            case "memory":
+                exporter = new InMemoryTraceExporter(memoryCapacity);
+                break;
+            case "file":
+                exporter = new FileTraceExporter(Paths.get(file), serviceName, memoryCapacity);
+                break;
+            case "none":
+                exporter = null;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown movies.tracing.exporter '" + exporterType
+                    + "' (expected memory, file or none)");
+        }
+        return new TraceRecorder(sampleRate, slowThresholdMillis, slowLogsPerSecond, exporter);
+    }
+
+    @Bean
+    public FilterRegistrationBean<RequestTracingFilter> requestTracingFilter(TraceRecorder traceRecorder) {
+        FilterRegistrationBean<RequestTracingFilter> registration =
+            new FilterRegistrationBean<>(new RequestTracingFilter(traceRecorder));
+        registration.addUrlPatterns("/*");
+        registration.setName("requestTracingFilter");
+        // Outermost, so time spent in admission control counts towards the request
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new TracingInterceptor());
+    }
+}
@@ -0,0 +1,51 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.List;
+
+/**
+ * Serves the traces kept by the in-memory exporter as one OTLP/JSON export request.
+ */
+@Controller
+public class TracingController {
+    private static final int MAX_TRACES = 1_000;
+
+    // Absent when tracing is disabled
+    @Autowired(required = false)
+    private TraceRecorder traceRecorder;
+
+    @Value("${spring.application.name:movie-service}")
+    private String serviceName;
+
+    /**
+     * @param limit Maximum number of traces, newest first (capped at 1000)
+     * @return OTLP/JSON {@code ExportTraceServiceRequest}, or 404 unless traces are kept in memory
+     */
+    @GetMapping(value = "/tracing/traces", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<String> getTraces(@RequestParam(value = "limit", defaultValue = "100") int limit) {
+        if (traceRecorder == null || !traceRecorder.isInMemory()) {
+            JSONObject error = new JSONObject();
+            error.put("success", false);
+            error.put("message", "Arrr! No traces be kept in the hold. Set movies.tracing.exporter=memory, matey.");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error.toString());
+        }
+        List<RequestTrace> traces = traceRecorder.recentTraces(Math.max(0, Math.min(limit, MAX_TRACES)));
+        JSONArray resourceSpans = new JSONArray();
+        for (RequestTrace trace : traces) {
+            resourceSpans.put(trace.toOtlpJson(serviceName).getJSONArray("resourceSpans").get(0));
+        }
+        return ResponseEntity.ok(new JSONObject().put("resourceSpans", resourceSpans).toString());
+    }
+}
@@ -0,0 +1,67 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Splits a traced request into the {@code controller} stage (the handler method and the
+ * services it calls) and the {@code render} stage (the Thymeleaf view). The
+ * {@code Server-Timing} header is set between the two, before the view starts writing
+ * the body. Handlers that write the body themselves get the header from
+ * {@link ServerTimingAdvice} instead.
+ */
+public class TracingInterceptor implements HandlerInterceptor {
+    private static final String CONTROLLER_SPAN = TracingInterceptor.class.getName() + ".controller";
+    private static final String RENDER_SPAN = TracingInterceptor.class.getName() + ".render";
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (RequestTrace.current() != null) {
+            request.setAttribute(CONTROLLER_SPAN, RequestTrace.span("controller"));
+        }
+        return true;
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+                           ModelAndView modelAndView) {
+        RequestTrace trace = RequestTrace.current();
+        if (trace == null) {
+            return;
+        }
+        close(request, CONTROLLER_SPAN);
+        if (!response.isCommitted()) {
+            response.setHeader(RequestTracingFilter.SERVER_TIMING, trace.serverTiming());
+        }
+        if (modelAndView != null && !modelAndView.wasCleared()) {
+            request.setAttribute(RENDER_SPAN, RequestTrace.span("render"));
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        close(request, RENDER_SPAN);
+        close(request, CONTROLLER_SPAN);
+    }
+
+    /**
+     * Ends the {@code controller} stage of the request, if it is still open.
+     *
+     * @param request The traced request
+     */
+    static void endController(HttpServletRequest request) {
+        close(request, CONTROLLER_SPAN);
+    }
+
+    private static void close(HttpServletRequest request, String attribute) {
+        Object span = request.getAttribute(attribute);
+        if (span instanceof RequestTrace.Span) {
+            ((RequestTrace.Span) span).close();
+            request.removeAttribute(attribute);
+        }
+    }
+}
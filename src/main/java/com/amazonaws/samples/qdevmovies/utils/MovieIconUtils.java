@@ -1,22 +1,139 @@
 package com.amazonaws.samples.qdevmovies.utils;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Scanner;
+
+/**
+ * Resolves movie icons from the rules in movie-icons.json: an exact title match wins,
+ * then a whole-word title keyword, then a genre, then the fallback icon. Rules are
+ * resolved once per movie into a small integer icon id, so looking an icon up while
+ * rendering is an array read.
+ */
 public class MovieIconUtils {
-    
-    public static String getMovieIcon(String movieName) {
-        switch (movieName.toLowerCase()) {
-            case "the prison escape": return "🔒";
-            case "the family boss": return "👔";
-            case "the masked hero": return "🦇";
-            case "urban stories": return "🌆";
-            case "life journey": return "🏃";
-            case "dream heist": return "💭";
-            case "the virtual world": return "🕶️";
-            case "the wise guys": return "🤵";
-            case "the quest for the ring": return "💍";
-            case "space wars: the beginning": return "🚀";
-            case "the factory owner": return "🏭";
-            case "underground club": return "👊";
-            default: return "🎬";
+    private static final Logger logger = LogManager.getLogger(MovieIconUtils.class);
+    private static final String DEFAULT_FALLBACK_ICON = "🎬";
+    private static final IconRules RULES = IconRules.load("movie-icons.json");
+
+    /**
+     * Resolves the icon for a movie from its title and genre.
+     *
+     * @param movieName Movie title
+     * @param genre Movie genre, e.g. "Action/Sci-Fi" (can be null)
+     * @return Icon id to pass to {@link #iconForId(int)}
+     */
+    public static int resolveIconId(String movieName, String genre) {
+        return RULES.resolve(movieName, genre);
+    }
+
+    /**
+     * @param iconId Id returned by {@link #resolveIconId(String, String)}
+     * @return The icon for that id
+     */
+    public static String iconForId(int iconId) {
+        return RULES.icons[iconId];
+    }
+
+    private static final class IconRules {
+        private final String[] icons;
+        private final Map<String, Integer> titleIcons;
+        private final Map<String, Integer> keywordIcons;
+        private final List<String> genreKeys;
+        private final List<Integer> genreIcons;
+        private final int fallbackIcon;
+
+        private IconRules(String[] icons, Map<String, Integer> titleIcons, Map<String, Integer> keywordIcons,
+                          List<String> genreKeys, List<Integer> genreIcons, int fallbackIcon) {
+            this.icons = icons;
+            this.titleIcons = titleIcons;
+            this.keywordIcons = keywordIcons;
+            this.genreKeys = genreKeys;
+            this.genreIcons = genreIcons;
+            this.fallbackIcon = fallbackIcon;
+        }
+
+        int resolve(String movieName, String genre) {
+            if (movieName != null) {
+                String title = movieName.toLowerCase(Locale.ROOT);
+                Integer iconId = titleIcons.get(title);
+                if (iconId != null) {
+                    return iconId;
+                }
+                for (String word : title.split("[^\\p{L}\\p{N}-]+")) {
+                    iconId = keywordIcons.get(word);
+                    if (iconId != null) {
+                        return iconId;
+                    }
+                }
+            }
+            if (genre != null) {
+                String normalizedGenre = genre.toLowerCase(Locale.ROOT);
+                for (int i = 0; i < genreKeys.size(); i++) {
+                    if (normalizedGenre.contains(genreKeys.get(i))) {
+                        return genreIcons.get(i);
+                    }
+                }
+            }
+            return fallbackIcon;
+        }
+
+        static IconRules load(String resource) {
+            // Icon ids are positions in this deduplicated icon table
+            Map<String, Integer> iconIds = new LinkedHashMap<>();
+            Map<String, Integer> titleIcons = new HashMap<>();
+            Map<String, Integer> keywordIcons = new HashMap<>();
+            List<String> genreKeys = new ArrayList<>();
+            List<Integer> genreIcons = new ArrayList<>();
+            String fallback = DEFAULT_FALLBACK_ICON;
+            try {
+                InputStream inputStream = MovieIconUtils.class.getClassLoader().getResourceAsStream(resource);
+                if (inputStream != null) {
+                    Scanner scanner = new Scanner(inputStream, StandardCharsets.UTF_8.name());
+                    String jsonContent = scanner.useDelimiter("\\A").next();
+                    scanner.close();
+
+                    JSONObject rules = new JSONObject(jsonContent);
+                    fallback = rules.optString("fallback", DEFAULT_FALLBACK_ICON);
+                    JSONObject titles = rules.optJSONObject("titles");
+                    if (titles != null) {
+                        for (String title : titles.keySet()) {
+                            titleIcons.put(title.toLowerCase(Locale.ROOT), idFor(iconIds, titles.getString(title)));
+                        }
+                    }
+                    JSONArray keywords = rules.optJSONArray("keywords");
+                    for (int i = 0; keywords != null && i < keywords.length(); i++) {
+                        JSONObject rule = keywords.getJSONObject(i);
+                        keywordIcons.put(rule.getString("keyword").toLowerCase(Locale.ROOT),
+                            idFor(iconIds, rule.getString("icon")));
+                    }
+                    JSONArray genres = rules.optJSONArray("genres");
+                    for (int i = 0; genres != null && i < genres.length(); i++) {
+                        JSONObject rule = genres.getJSONObject(i);
+                        genreKeys.add(rule.getString("genre").toLowerCase(Locale.ROOT));
+                        genreIcons.add(idFor(iconIds, rule.getString("icon")));
+                    }
+                }
+            } catch (Exception e) {
+                logger.error("Failed to load movie icon rules from {}: {}", resource, e.getMessage());
+            }
+            int fallbackIcon = idFor(iconIds, fallback);
+            return new IconRules(iconIds.keySet().toArray(new String[0]), titleIcons, keywordIcons,
+                genreKeys, genreIcons, fallbackIcon);
+        }
+
+        private static int idFor(Map<String, Integer> iconIds, String icon) {
+            return iconIds.computeIfAbsent(icon, key -> iconIds.size());
         }
     }
 }
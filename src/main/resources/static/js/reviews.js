@@ -0,0 +1,79 @@
+// Loads further pages of reviews on the movie details page, a page at a time,
+// when the "Load more reviews" button is clicked or scrolled into view.
+(function () {
+    var button = document.getElementById('load-more-reviews');
+    var list = document.getElementById('review-list');
+    if (!button || !list) {
+        return;
+    }
+    var loading = false;
+
+    function element(tag, className, text) {
+        var node = document.createElement(tag);
+        node.className = className;
+        if (text !== undefined) {
+            node.textContent = text;
+        }
+        return node;
+    }
+
+    function renderReview(review) {
+        var container = element('div', 'review');
+        var header = element('div', 'review-header');
+        header.appendChild(element('div', 'review-avatar', review.avatarEmoji));
+        header.appendChild(element('div', 'review-user', review.userName));
+        var rating = element('div', 'review-rating', '★★★★★ ');
+        rating.appendChild(element('span', '', Number(review.rating).toFixed(1)));
+        header.appendChild(rating);
+        container.appendChild(header);
+        container.appendChild(element('div', 'review-comment', review.comment));
+        return container;
+    }
+
+    function loadMore() {
+        var cursor = button.getAttribute('data-next-cursor');
+        if (loading || !cursor) {
+            return;
+        }
+        loading = true;
+        button.disabled = true;
+        button.textContent = 'Loading reviews...';
+        var url = button.getAttribute('data-reviews-url') + '?limit=' + button.getAttribute('data-page-size')
+            + '&after=' + encodeURIComponent(cursor);
+        fetch(url, {headers: {'Accept': 'application/json'}})
+            .then(function (response) {
+                if (!response.ok) {
+                    throw new Error('HTTP ' + response.status);
+                }
+                return response.json();
+            })
+            .then(function (page) {
+                page.reviews.forEach(function (review) {
+                    list.appendChild(renderReview(review));
+                });
+                if (page.nextCursor) {
+                    button.setAttribute('data-next-cursor', page.nextCursor);
+                    button.textContent = 'Load more reviews';
+                    button.disabled = false;
+                } else {
+                    button.remove();
+                }
+            })
+            .catch(function () {
+                button.textContent = 'Arrr! Could not load reviews. Try again';
+                button.disabled = false;
+            })
+            .then(function () {
+                loading = false;
+            });
+    }
+
+    button.addEventListener('click', loadMore);
+    if ('IntersectionObserver' in window) {
+        new IntersectionObserver(function (entries) {
+            if (entries[0].isIntersecting) {
+                loadMore();
+            }
+        }, {rootMargin: '200px'}).observe(button);
+    }
+})();
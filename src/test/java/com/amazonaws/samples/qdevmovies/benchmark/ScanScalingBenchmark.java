@@ -0,0 +1,237 @@
+package com.amazonaws.samples.qdevmovies.benchmark;
+
+import com.amazonaws.samples.qdevmovies.movies.Movie;
+import com.amazonaws.samples.qdevmovies.movies.MovieService;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Serial against parallel catalog scans, per catalog size and core count. For each core
+ * count a fresh JVM is started with {@code -XX:ActiveProcessorCount}, which sizes the
+ * search pool (and the JVM's own thread pools) as on a machine with that many cores. It
+ * times full-catalog searches with the parallel threshold above the catalog size
+ * (serial) and at 1 (parallel). The report gives the speedup per size and, per core
+ * count, the smallest catalog from which parallel scans stay faster: the value to use
+ * for {@code movies.search.parallel-threshold}. Core counts above the machine's only
+ * show the fork/join overhead. Run it with
+ * {@code mvn -P benchmark -Dbenchmark=ScanScalingBenchmark verify}; settings are
+ * {@code benchmark.*} system properties (see the README).
+ */
+public final class ScanScalingBenchmark {
+    private static final Logger logger = LogManager.getLogger(ScanScalingBenchmark.class);
+    private static final String[] ADJECTIVES = {
+        "Crimson", "Silent", "Golden", "Hidden", "Broken", "Midnight", "Frozen", "Burning",
+        "Lost", "Savage", "Electric", "Hollow", "Iron", "Velvet", "Restless", "Forgotten"
+    };
+    private static final String[] NOUNS = {
+        "Voyage", "Harbor", "Empire", "Island", "Storm", "Kingdom", "Tide", "Compass",
+        "Lighthouse", "Treasure", "Galaxy", "Frontier", "Legacy", "Mirror", "Horizon", "Garden"
+    };
+    private static final String[] GENRES = {
+        "Drama", "Crime", "Action", "Sci-Fi", "Adventure", "Fantasy", "Comedy", "Romance"
+    };
+    // Full scans: none of these has a limit, and each matches few or no movies
+    private static final String[][] QUERIES = {
+        {"storm", null}, {"golden har", "drama"}, {"no such title", null}, {null, "sci-fi/romance"}
+    };
+    private static final int WARMUP_BATCHES = 3;
+    private static final int MEASURED_BATCHES = 5;
+
+    private ScanScalingBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && "child".equals(args[0])) {
+            runChild(Paths.get(args[1]), Integer.parseInt(args[2]));
+            return;
+        }
+        int[] sizes = parseInts(System.getProperty("benchmark.sizes",
+            "1000,2500,5000,10000,25000,50000,100000,250000"));
+        int[] cores = parseInts(System.getProperty("benchmark.cores", defaultCores()));
+        Path reportPath = Paths.get(System.getProperty("benchmark.report", "target/benchmark/scan-scaling.json"));
+        if (reportPath.getParent() != null) {
+            Files.createDirectories(reportPath.getParent());
+        }
+
+        JSONArray runs = new JSONArray();
+        for (int coreCount : cores) {
+            Path childReport = Files.createTempFile("scan-scaling-", ".json");
+            try {
+                runs.put(fork(coreCount, sizes, childReport));
+            } finally {
+                Files.deleteIfExists(childReport);
+            }
+        }
+
+        JSONObject report = new JSONObject();
+        report.put("javaVersion", System.getProperty("java.version"));
+        report.put("machineProcessors", Runtime.getRuntime().availableProcessors());
+        report.put("chunkSize", Integer.getInteger("benchmark.chunkSize", 2_048));
+        report.put("runs", runs);
+        Files.write(reportPath, report.toString(2).getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < runs.length(); i++) {
+            JSONObject run = runs.getJSONObject(i);
+            if (run.isNull("crossoverMovies")) {
+                logger.warn("{} cores: parallel scans were not faster at the largest size measured", run.getInt("cores"));
+            } else {
+                logger.warn("{} cores: parallel scans faster from {} movies", run.getInt("cores"),
+                    run.getInt("crossoverMovies"));
+            }
+        }
+        logger.warn("Scan scaling report at {}", reportPath.toAbsolutePath());
+    }
+
+    private static String defaultCores() {
+        List<String> cores = new ArrayList<>();
+        int available = Runtime.getRuntime().availableProcessors();
+        for (int count = 1; count < available; count *= 2) {
+            cores.add(Integer.toString(count));
+        }
+        cores.add(Integer.toString(available));
+        return String.join(",", cores);
+    }
+
+    /**
+     * Runs the measurements for one core count in a JVM started with this one's flags.
+     */
+    private static JSONObject fork(int cores, int[] sizes, Path childReport) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (!argument.startsWith("-XX:ActiveProcessorCount")) {
+                command.add(argument);
+            }
+        }
+        command.add("-XX:ActiveProcessorCount=" + cores);
+        command.add("-Dbenchmark.sizes=" + joinInts(sizes));
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ScanScalingBenchmark.class.getName());
+        command.add("child");
+        command.add(childReport.toString());
+        command.add(Integer.toString(cores));
+
+        logger.warn("Measuring scans with {} cores", cores);
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            throw new IllegalStateException("Benchmark JVM for " + cores + " cores exited with " + exitCode);
+        }
+        return new JSONObject(new String(Files.readAllBytes(childReport), StandardCharsets.UTF_8));
+    }
+
+    private static void runChild(Path reportPath, int cores) throws Exception {
+        // Two INFO lines per search would cost more than the scans being measured
+        Configurator.setLevel("com.amazonaws.samples.qdevmovies.movies", Level.WARN);
+        int[] sizes = parseInts(System.getProperty("benchmark.sizes"));
+        long batchNanos = Long.getLong("benchmark.batchMillis", 200L) * 1_000_000L;
+        List<Movie> catalog = syntheticCatalog(sizes[sizes.length - 1], Long.getLong("benchmark.seed", 42L));
+
+        int chunkSize = Integer.getInteger("benchmark.chunkSize", 2_048);
+        JSONArray results = new JSONArray();
+        Integer crossover = null;
+        for (int size : sizes) {
+            MovieService service = new MovieService(catalog.subList(0, size));
+            service.setScanChunkSize(chunkSize);
+            double serialMicros;
+            double parallelMicros;
+            try {
+                service.setParallelThreshold(Integer.MAX_VALUE);
+                serialMicros = measure(service, batchNanos);
+                service.setParallelThreshold(1);
+                parallelMicros = measure(service, batchNanos);
+            } finally {
+                service.shutdown();
+            }
+
+            double speedup = serialMicros / parallelMicros;
+            if (speedup > 1.0) {
+                crossover = crossover == null ? size : crossover;
+            } else {
+                crossover = null;
+            }
+            JSONObject result = new JSONObject();
+            result.put("movies", size);
+            result.put("serialMicros", round(serialMicros));
+            result.put("parallelMicros", round(parallelMicros));
+            result.put("speedup", round(speedup));
+            results.put(result);
+            logger.warn("{} cores, {} movies: serial {} us, parallel {} us, speedup {}", cores, size,
+                round(serialMicros), round(parallelMicros), round(speedup));
+        }
+
+        JSONObject report = new JSONObject();
+        report.put("cores", cores);
+        // Smallest size from which parallel scans stayed faster at every larger size measured
+        report.put("crossoverMovies", crossover == null ? JSONObject.NULL : crossover);
+        report.put("results", results);
+        Files.write(reportPath, report.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return Median over the measured batches of the mean time per search, in microseconds
+     */
+    private static double measure(MovieService service, long batchNanos) {
+        double[] batches = new double[MEASURED_BATCHES];
+        for (int batch = -WARMUP_BATCHES; batch < MEASURED_BATCHES; batch++) {
+            long start = System.nanoTime();
+            long elapsed;
+            int searches = 0;
+            do {
+                String[] query = QUERIES[searches % QUERIES.length];
+                service.searchMovies(query[0], null, query[1]);
+                searches++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < batchNanos);
+            if (batch >= 0) {
+                batches[batch] = elapsed / 1_000.0 / searches;
+            }
+        }
+        Arrays.sort(batches);
+        return batches[MEASURED_BATCHES / 2];
+    }
+
+    private static List<Movie> syntheticCatalog(int size, long seed) {
+        Random random = new Random(seed);
+        List<Movie> movies = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            long id = i + 1;
+            String title = "The " + ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " "
+                + NOUNS[random.nextInt(NOUNS.length)] + " " + id;
+            String genre = GENRES[random.nextInt(GENRES.length)] + "/" + GENRES[random.nextInt(GENRES.length)];
+            movies.add(new Movie(id, title, "Director " + random.nextInt(2_000), 1950 + random.nextInt(75), genre,
+                "Description " + id, 80 + random.nextInt(100), 1.0 + random.nextInt(40) / 10.0));
+        }
+        return movies;
+    }
+
+    private static int[] parseInts(String values) {
+        return Arrays.stream(values.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+
+    private static String joinInts(int[] values) {
+        StringBuilder joined = new StringBuilder();
+        for (int value : values) {
+            joined.append(joined.length() == 0 ? "" : ",").append(value);
+        }
+        return joined.toString();
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -0,0 +1,117 @@
+package com.amazonaws.samples.qdevmovies.benchmark;
+
+import com.amazonaws.samples.qdevmovies.movies.Movie;
+import com.amazonaws.samples.qdevmovies.movies.Review;
+import com.amazonaws.samples.qdevmovies.movies.SymbolTable;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONObject;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Heap footprint of movie and review records with and without the symbol tables.
+ * Builds the same records twice, each field a fresh String as a JSON parser would
+ * create it: once with every record holding its own Strings (as parsed) and once with
+ * directors, genres, reviewer names and avatars replaced by the shared instance from a
+ * {@link SymbolTable}, as the catalog and the review service store them. The heap
+ * retained by each set, tables included, is measured after a full GC. Run it with
+ * {@code mvn -P benchmark -Dbenchmark=SymbolTableFootprint verify}; settings are
+ * {@code benchmark.*} system properties (see the README).
+ */
+public final class SymbolTableFootprint {
+    private static final Logger logger = LogManager.getLogger(SymbolTableFootprint.class);
+    private static final String[] GENRES = {
+        "Drama", "Crime", "Action", "Sci-Fi", "Adventure", "Fantasy", "Comedy", "Romance",
+        "Thriller", "Horror", "Mystery", "Animation", "Family", "Western", "Musical", "War"
+    };
+    private static final String[] AVATARS = {"👨", "👩", "🧑", "👴", "👵", "🧔", "👱", "🏴‍☠️"};
+    private static final int DIRECTORS = 2_000;
+    private static final int REVIEWERS = 5_000;
+
+    private SymbolTableFootprint() {
+    }
+
+    public static void main(String[] args) {
+        int movieCount = Integer.getInteger("benchmark.movies", 200_000);
+        int reviewCount = Integer.getInteger("benchmark.reviews", 1_000_000);
+        long seed = Long.getLong("benchmark.seed", 42L);
+
+        long baseline = usedAfterGc();
+        List<Object> plain = build(movieCount, reviewCount, seed, false);
+        long plainBytes = usedAfterGc() - baseline;
+        logger.warn("Built {} plain records", plain.size());
+        plain = null;
+
+        baseline = usedAfterGc();
+        List<Object> encoded = build(movieCount, reviewCount, seed, true);
+        long encodedBytes = usedAfterGc() - baseline;
+        logger.warn("Built {} encoded records", encoded.size());
+
+        JSONObject report = new JSONObject();
+        report.put("movies", movieCount);
+        report.put("reviews", reviewCount);
+        report.put("javaVersion", System.getProperty("java.version"));
+        report.put("plainBytes", plainBytes);
+        report.put("encodedBytes", encodedBytes);
+        report.put("savedBytes", plainBytes - encodedBytes);
+        report.put("savedPercent", plainBytes == 0 ? 0 : Math.round(1000.0 * (plainBytes - encodedBytes) / plainBytes) / 10.0);
+        logger.warn("Symbol table footprint: {}", report.toString(2));
+    }
+
+    private static List<Object> build(int movieCount, int reviewCount, long seed, boolean encoded) {
+        Random random = new Random(seed);
+        List<Object> records = new ArrayList<>(movieCount + reviewCount + 1);
+        SymbolTable directors = new SymbolTable("directors");
+        SymbolTable genres = new SymbolTable("genres");
+        SymbolTable userNames = new SymbolTable("reviewerNames");
+        SymbolTable avatars = new SymbolTable("avatars");
+        if (encoded) {
+            // Retained with the records, as the catalog and review service retain theirs
+            records.add(new SymbolTable[] {directors, genres, userNames, avatars});
+        }
+        for (int i = 0; i < movieCount; i++) {
+            long id = i + 1;
+            String name = copy("Movie " + id);
+            String director = copy("Director " + random.nextInt(DIRECTORS));
+            String genre = copy(GENRES[random.nextInt(GENRES.length)] + "/" + GENRES[random.nextInt(GENRES.length)]);
+            String description = copy("Description of movie " + id);
+            int year = 1950 + random.nextInt(75);
+            int duration = 80 + random.nextInt(100);
+            double rating = 1.0 + random.nextInt(40) / 10.0;
+            if (encoded) {
+                director = directors.canonical(director);
+                genre = genres.canonical(genre);
+            }
+            records.add(new Movie(id, name, director, year, genre, description, duration, rating));
+        }
+        for (int i = 0; i < reviewCount; i++) {
+            String userName = copy("Reviewer " + random.nextInt(REVIEWERS));
+            String avatar = copy(AVATARS[random.nextInt(AVATARS.length)]);
+            String comment = copy("Comment " + i);
+            double rating = 1.0 + random.nextInt(5);
+            if (encoded) {
+                userName = userNames.canonical(userName);
+                avatar = avatars.canonical(avatar);
+            }
+            records.add(new Review(userName, avatar, rating, comment));
+        }
+        return records;
+    }
+
+    private static String copy(String value) {
+        return new String(value.toCharArray());
+    }
+
+    private static long usedAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,95 @@
+package com.amazonaws.samples.qdevmovies.loadtest;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.json.JSONObject;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Records every garbage collection the JVM reports while recording is on. Durations
+ * come from the JVM's collection notifications; for concurrent collectors (e.g. the
+ * "G1 Concurrent GC" or ZGC cycle beans) they cover work done alongside the
+ * application, so those collectors are reported separately from stop-the-world pauses.
+ */
+final class GcPauseMonitor implements NotificationListener {
+    private final List<String> names = new ArrayList<>();
+    private final List<Long> durations = new ArrayList<>();
+    private volatile boolean recording;
+
+    GcPauseMonitor() {
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter) {
+                ((NotificationEmitter) collector).addNotificationListener(this, null, null);
+            }
+        }
+    }
+
+    void start() {
+        recording = true;
+    }
+
+    void stop() {
+        recording = false;
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        if (!recording || !GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info =
+            GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        synchronized (this) {
+            names.add(info.getGcName());
+            durations.add(info.getGcInfo().getDuration());
+        }
+    }
+
+    synchronized JSONObject toJson() {
+        Map<String, List<Long>> byCollector = new TreeMap<>();
+        List<Long> pauses = new ArrayList<>();
+        for (int i = 0; i < names.size(); i++) {
+            byCollector.computeIfAbsent(names.get(i), name -> new ArrayList<>()).add(durations.get(i));
+            if (!isConcurrent(names.get(i))) {
+                pauses.add(durations.get(i));
+            }
+        }
+
+        JSONObject report = summarize(pauses);
+        JSONObject collectors = new JSONObject();
+        for (Map.Entry<String, List<Long>> entry : byCollector.entrySet()) {
+            JSONObject collector = summarize(entry.getValue());
+            collector.put("concurrent", isConcurrent(entry.getKey()));
+            collectors.put(entry.getKey(), collector);
+        }
+        report.put("collectors", collectors);
+        return report;
+    }
+
+    private static boolean isConcurrent(String collectorName) {
+        return collectorName.contains("Concurrent") || collectorName.contains("Cycles");
+    }
+
+    private static JSONObject summarize(List<Long> millis) {
+        long total = 0;
+        long max = 0;
+        for (long duration : millis) {
+            total += duration;
+            max = Math.max(max, duration);
+        }
+        JSONObject summary = new JSONObject();
+        summary.put("count", millis.size());
+        summary.put("totalMillis", total);
+        summary.put("maxMillis", max);
+        return summary;
+    }
+}
@@ -0,0 +1,469 @@
+package com.amazonaws.samples.qdevmovies.loadtest;
+
+import com.amazonaws.samples.qdevmovies.loadtest.WorkloadProfile.Operation;
+import com.amazonaws.samples.qdevmovies.movies.MoviesApplication;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end load generator. Starts {@link MoviesApplication} on a random port in a
+ * separate JVM ({@link LoadTestServer}) with a synthetic catalog and review set, replays
+ * a workload profile with Zipfian movie and query popularity from closed-loop worker
+ * threads in this one, and writes throughput, latency percentiles and the application's
+ * GC pauses as a JSON report so runs can be compared between builds.
+ * <p>
+ * Run it with {@code mvn -P load-test verify}; settings are {@code load.*} system properties
+ * (see the README). Every worker draws from its own seeded random, so a given seed
+ * replays the same request sequence on every run.
+ */
+public final class LoadTestHarness {
+    private static final Logger logger = LogManager.getLogger(LoadTestHarness.class);
+    private static final double[] PERCENTILES = {0.50, 0.99, 0.999};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p99", "p999"};
+    private static final int IO_ERROR = -1;
+
+    private LoadTestHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = new Settings();
+        WorkloadProfile profile = WorkloadProfile.of(settings.profile, settings.mix);
+        logger.info("Generating {} movies and {} reviews (seed {})", settings.movies, settings.reviews, settings.seed);
+        SyntheticCatalog catalog = SyntheticCatalog.generate(settings.movies, settings.reviews, settings.seed, settings.zipf);
+        // The workers only need ids, terms and genres; the server generates its own records
+        catalog.releaseRecords();
+
+        try (Server server = Server.start(settings)) {
+            String baseUrl = "http://localhost:" + server.port;
+            Workload workload = new Workload(baseUrl, profile, catalog, settings);
+
+            logger.info("Warming up for {} s with {} workers", settings.warmupSeconds, settings.threads);
+            workload.run(settings.warmupSeconds);
+            JSONObject memory = server.request("memory");
+
+            logger.info("Measuring '{}' for {} s with {} workers", profile.getName(), settings.durationSeconds,
+                settings.threads);
+            server.request("gc-start");
+            long start = System.nanoTime();
+            List<WorkerStats> stats = workload.run(settings.durationSeconds);
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+            JSONObject gcPauses = server.request("gc-stop");
+
+            JSONObject report = report(settings, profile, catalog, stats, elapsedSeconds, server.environment, gcPauses);
+            report.put("memory", memory);
+            Path reportPath = Paths.get(settings.reportPath);
+            if (reportPath.getParent() != null) {
+                Files.createDirectories(reportPath.getParent());
+            }
+            Files.write(reportPath, report.toString(2).getBytes(StandardCharsets.UTF_8));
+            JSONObject overall = report.getJSONObject("overall");
+            logger.warn("Load test '{}' ({} storage): {} requests, {} req/s, p50 {} ms, p99 {} ms, p999 {} ms; report at {}",
+                profile.getName(), settings.storage, overall.getLong("requests"), overall.getDouble("throughputPerSecond"),
+                overall.getJSONObject("latencyMillis").getDouble("p50"),
+                overall.getJSONObject("latencyMillis").getDouble("p99"),
+                overall.getJSONObject("latencyMillis").getDouble("p999"), reportPath.toAbsolutePath());
+        }
+    }
+
+    private static JSONObject jvm() {
+        JSONObject jvm = new JSONObject();
+        jvm.put("javaVersion", System.getProperty("java.version"));
+        jvm.put("vmName", System.getProperty("java.vm.name"));
+        jvm.put("processors", Runtime.getRuntime().availableProcessors());
+        jvm.put("maxHeapBytes", Runtime.getRuntime().maxMemory());
+        jvm.put("jvmArgs", ManagementFactory.getRuntimeMXBean().getInputArguments());
+        return jvm;
+    }
+
+    private static JSONObject report(Settings settings, WorkloadProfile profile, SyntheticCatalog catalog,
+                                     List<WorkerStats> stats, double elapsedSeconds, JSONObject serverEnvironment,
+                                     JSONObject gcPauses) {
+        JSONObject report = new JSONObject();
+
+        JSONObject config = new JSONObject();
+        config.put("profile", profile.getName());
+        JSONObject mix = new JSONObject();
+        for (Map.Entry<Operation, Integer> weight : profile.getWeights().entrySet()) {
+            mix.put(weight.getKey().name().toLowerCase(Locale.ROOT), weight.getValue());
+        }
+        config.put("mix", mix);
+        config.put("seed", settings.seed);
+        config.put("zipfExponent", settings.zipf);
+        config.put("threads", settings.threads);
+        config.put("warmupSeconds", settings.warmupSeconds);
+        config.put("durationSeconds", settings.durationSeconds);
+        config.put("movies", catalog.getMovieCount());
+        config.put("storage", settings.storage);
+        config.put("reviews", catalog.getReviewCount());
+        config.put("appArgs", settings.appArgs);
+        report.put("config", config);
+
+        // The application's JVM; the workers' own JVM is listed separately
+        report.put("environment", serverEnvironment);
+        report.put("clientEnvironment", jvm());
+
+        List<LatencySamples> all = new ArrayList<>();
+        Map<Integer, Long> allStatuses = new TreeMap<>();
+        JSONObject endpoints = new JSONObject();
+        for (Operation operation : Operation.values()) {
+            List<LatencySamples> samples = new ArrayList<>();
+            Map<Integer, Long> statuses = new TreeMap<>();
+            for (WorkerStats worker : stats) {
+                samples.add(worker.latencies.get(operation));
+                worker.statuses.get(operation).forEach((status, count) -> statuses.merge(status, count, Long::sum));
+            }
+            all.addAll(samples);
+            statuses.forEach((status, count) -> allStatuses.merge(status, count, Long::sum));
+            if (profile.getWeights().get(operation) > 0) {
+                endpoints.put(operation.name().toLowerCase(Locale.ROOT), summarize(samples, statuses, elapsedSeconds));
+            }
+        }
+        report.put("overall", summarize(all, allStatuses, elapsedSeconds));
+        report.put("endpoints", endpoints);
+        // Collected in the application's JVM only
+        report.put("gcPauses", gcPauses);
+        return report;
+    }
+
+    private static JSONObject summarize(List<LatencySamples> samples, Map<Integer, Long> statuses, double elapsedSeconds) {
+        int total = 0;
+        for (LatencySamples sample : samples) {
+            total += sample.size;
+        }
+        long[] sorted = new long[total];
+        int offset = 0;
+        long sum = 0;
+        for (LatencySamples sample : samples) {
+            System.arraycopy(sample.values, 0, sorted, offset, sample.size);
+            offset += sample.size;
+        }
+        Arrays.sort(sorted);
+        for (long value : sorted) {
+            sum += value;
+        }
+
+        long errors = 0;
+        JSONObject statusCounts = new JSONObject();
+        for (Map.Entry<Integer, Long> entry : statuses.entrySet()) {
+            int status = entry.getKey();
+            statusCounts.put(status == IO_ERROR ? "ioError" : String.valueOf(status), entry.getValue());
+            if (status == IO_ERROR || status >= 400) {
+                errors += entry.getValue();
+            }
+        }
+
+        JSONObject latency = new JSONObject();
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            latency.put(PERCENTILE_NAMES[i], millis(percentile(sorted, PERCENTILES[i])));
+        }
+        latency.put("max", millis(total == 0 ? 0 : sorted[total - 1]));
+        latency.put("mean", millis(total == 0 ? 0 : sum / total));
+
+        JSONObject summary = new JSONObject();
+        summary.put("requests", total);
+        summary.put("errors", errors);
+        summary.put("throughputPerSecond", Math.round(total / elapsedSeconds * 10) / 10.0);
+        summary.put("latencyMillis", latency);
+        summary.put("statusCodes", statusCounts);
+        return summary;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(rank, sorted.length - 1))];
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+
+    /**
+     * The application under test, running {@link LoadTestServer} in a JVM of its own so
+     * that the workers' allocation and CPU time stay out of its GC and latency figures.
+     */
+    private static final class Server implements AutoCloseable {
+        private static final long STARTUP_TIMEOUT_SECONDS = 600;
+        private static final long REQUEST_TIMEOUT_SECONDS = 120;
+
+        private final Process process;
+        private final Writer commands;
+        private final BlockingQueue<String> replies = new LinkedBlockingQueue<>();
+        private int port;
+        private JSONObject environment;
+
+        private Server(Process process) {
+            this.process = process;
+            this.commands = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+        }
+
+        static Server start(Settings settings) throws IOException, InterruptedException {
+            List<String> command = new ArrayList<>();
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            if (!settings.jvmArgs.isEmpty()) {
+                command.addAll(Arrays.asList(settings.jvmArgs.split("\\s+")));
+            }
+            command.add("-Dload.movies=" + settings.movies);
+            command.add("-Dload.reviews=" + settings.reviews);
+            command.add("-Dload.seed=" + settings.seed);
+            command.add("-Dload.zipf=" + settings.zipf);
+            command.add("-Dload.storage=" + settings.storage);
+            command.add("-Dload.appArgs=" + settings.appArgs);
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(LoadTestServer.class.getName());
+
+            logger.info("Starting the application in its own JVM with {}", settings.jvmArgs);
+            Server server = new Server(new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start());
+            Thread reader = new Thread(server::readOutput, "load-server-output-0");
+            reader.setDaemon(true);
+            reader.start();
+            try {
+                JSONObject ready = server.await(STARTUP_TIMEOUT_SECONDS);
+                server.port = ready.getInt("port");
+                server.environment = ready.getJSONObject("environment");
+                return server;
+            } catch (IOException | RuntimeException e) {
+                server.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Sends one command to the server and waits for its reply.
+         */
+        JSONObject request(String command) throws IOException, InterruptedException {
+            commands.write(command + "\n");
+            commands.flush();
+            return await(REQUEST_TIMEOUT_SECONDS);
+        }
+
+        private JSONObject await(long timeoutSeconds) throws IOException, InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+            while (System.nanoTime() < deadline) {
+                String reply = replies.poll(1, TimeUnit.SECONDS);
+                if (reply != null) {
+                    JSONObject message = new JSONObject(reply);
+                    if (message.has("error")) {
+                        throw new IOException("Load test server: " + message.getString("error"));
+                    }
+                    return message;
+                }
+                if (!process.isAlive()) {
+                    throw new IOException("Load test server exited with " + process.exitValue());
+                }
+            }
+            throw new IOException("No reply from the load test server within " + timeoutSeconds + " s");
+        }
+
+        /**
+         * Queues the server's replies and passes the rest of its output, such as
+         * startup logging, through to ours.
+         */
+        private void readOutput() {
+            try (BufferedReader output = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = output.readLine()) != null) {
+                    if (line.startsWith(LoadTestServer.REPLY)) {
+                        replies.add(line.substring(LoadTestServer.REPLY.length()));
+                    } else {
+                        System.out.println(line);
+                    }
+                }
+            } catch (IOException e) {
+                // The server is gone; await() reports it
+            }
+        }
+
+        @Override
+        public void close() throws InterruptedException {
+            try {
+                commands.write("exit\n");
+                commands.close();
+            } catch (IOException e) {
+                // Already exited
+            }
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    /**
+     * Closed-loop workers replaying the profile against one server.
+     */
+    private static final class Workload {
+        private final String baseUrl;
+        private final WorkloadProfile profile;
+        private final SyntheticCatalog catalog;
+        private final Settings settings;
+        private final ZipfianSampler moviePopularity;
+        private final ZipfianSampler termPopularity;
+        private final ZipfianSampler genrePopularity;
+        private long round;
+
+        Workload(String baseUrl, WorkloadProfile profile, SyntheticCatalog catalog, Settings settings) {
+            this.baseUrl = baseUrl;
+            this.profile = profile;
+            this.catalog = catalog;
+            this.settings = settings;
+            this.moviePopularity = new ZipfianSampler(catalog.getMovieCount(), settings.zipf);
+            this.termPopularity = new ZipfianSampler(catalog.getSearchTerms().size(), settings.zipf);
+            this.genrePopularity = new ZipfianSampler(catalog.getGenres().size(), settings.zipf);
+        }
+
+        List<WorkerStats> run(long seconds) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            List<WorkerStats> stats = new ArrayList<>();
+            List<Thread> workers = new ArrayList<>();
+            round++;
+            for (int i = 0; i < settings.threads; i++) {
+                WorkerStats worker = new WorkerStats();
+                // Warm-up and measurement draw different but equally reproducible sequences
+                Random random = new Random(settings.seed * 1_000_003L + round * 1_009L + i);
+                stats.add(worker);
+                Thread thread = new Thread(() -> {
+                    while (System.nanoTime() < deadline) {
+                        Operation operation = profile.next(random);
+                        String url = urlFor(operation, random);
+                        long start = System.nanoTime();
+                        int status = get(url);
+                        worker.record(operation, status, System.nanoTime() - start);
+                    }
+                }, "load-worker-" + i);
+                workers.add(thread);
+                thread.start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            return stats;
+        }
+
+        private String urlFor(Operation operation, Random random) {
+            switch (operation) {
+                case LIST:
+                    return baseUrl + "/movies";
+                case SEARCH:
+                    // Most searches are by title word, the rest by genre
+                    if (random.nextInt(4) > 0) {
+                        return baseUrl + "/movies/search?name="
+                            + encode(catalog.getSearchTerms().get(termPopularity.next(random)));
+                    }
+                    return baseUrl + "/movies/search?genre=" + encode(catalog.getGenres().get(genrePopularity.next(random)));
+                case DETAILS:
+                default:
+                    return baseUrl + "/movies/" + catalog.movieIdAtRank(moviePopularity.next(random)) + "/details";
+            }
+        }
+
+        private static String encode(String value) {
+            try {
+                return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static int get(String url) {
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+                connection.setConnectTimeout(5_000);
+                connection.setReadTimeout(30_000);
+                int status = connection.getResponseCode();
+                // Reading the body to the end lets the connection be reused
+                InputStream body = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+                if (body != null) {
+                    byte[] buffer = new byte[8_192];
+                    while (body.read(buffer) >= 0) {
+                        // drain
+                    }
+                    body.close();
+                }
+                return status;
+            } catch (IOException e) {
+                return IO_ERROR;
+            }
+        }
+    }
+
+    /**
+     * One worker's latencies and status counts per operation; only its own thread writes it.
+     */
+    private static final class WorkerStats {
+        private final Map<Operation, LatencySamples> latencies = new EnumMap<>(Operation.class);
+        private final Map<Operation, Map<Integer, Long>> statuses = new EnumMap<>(Operation.class);
+
+        WorkerStats() {
+            for (Operation operation : Operation.values()) {
+                latencies.put(operation, new LatencySamples());
+                statuses.put(operation, new TreeMap<>());
+            }
+        }
+
+        void record(Operation operation, int status, long nanos) {
+            latencies.get(operation).add(nanos);
+            statuses.get(operation).merge(status, 1L, Long::sum);
+        }
+    }
+
+    private static final class LatencySamples {
+        private long[] values = new long[1_024];
+        private int size;
+
+        void add(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+    }
+
+    private static final class Settings {
+        private final String profile = System.getProperty("load.profile", "mixed");
+        private final String mix = System.getProperty("load.mix", "");
+        private final int movies = Integer.getInteger("load.movies", 20_000);
+        private final int reviews = Integer.getInteger("load.reviews", 100_000);
+        private final int threads = Integer.getInteger("load.threads", 16);
+        private final long warmupSeconds = Long.getLong("load.warmup", 10);
+        private final long durationSeconds = Long.getLong("load.duration", 30);
+        private final long seed = Long.getLong("load.seed", 42);
+        private final double zipf = Double.parseDouble(System.getProperty("load.zipf", "0.99"));
+        private final String storage = System.getProperty("load.storage", "heap");
+        private final String reportPath = System.getProperty("load.report",
+            "target/load-test/" + profile + "-" + storage + "-report.json");
+        private final String appArgs = System.getProperty("load.appArgs", "").trim();
+        private final String jvmArgs = System.getProperty("load.jvmArgs", "-Xms1g -Xmx1g -XX:+UseG1GC").trim();
+    }
+}
@@ -0,0 +1,125 @@
+package com.amazonaws.samples.qdevmovies.loadtest;
+
+import com.amazonaws.samples.qdevmovies.movies.CatalogChangeLog;
+import com.amazonaws.samples.qdevmovies.movies.MovieService;
+import com.amazonaws.samples.qdevmovies.movies.MoviesApplication;
+import com.amazonaws.samples.qdevmovies.movies.ReviewService;
+import org.json.JSONObject;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The application under load, in a JVM of its own started by {@link LoadTestHarness}, so
+ * its GC and memory figures are not mixed with the load generator's. Boots
+ * {@link MoviesApplication}, swaps in the same synthetic catalog the harness generates
+ * from the shared seed, and then answers the harness over stdin and stdout: each
+ * command is one line, and each reply one stdout line starting with {@link #REPLY}.
+ * <ul>
+ *   <li>{@code memory}: heap in use after a full GC, and direct memory held by records</li>
+ *   <li>{@code gc-start} / {@code gc-stop}: record collections, then report them</li>
+ *   <li>{@code exit}, or the harness closing stdin: shut down</li>
+ * </ul>
+ */
+public final class LoadTestServer {
+    static final String REPLY = "LOAD-TEST ";
+
+    private LoadTestServer() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int movies = Integer.getInteger("load.movies", 20_000);
+        int reviews = Integer.getInteger("load.reviews", 100_000);
+        long seed = Long.getLong("load.seed", 42);
+        double zipf = Double.parseDouble(System.getProperty("load.zipf", "0.99"));
+        String storage = System.getProperty("load.storage", "heap");
+        String extraArgs = System.getProperty("load.appArgs", "").trim();
+        SyntheticCatalog catalog = SyntheticCatalog.generate(movies, reviews, seed, zipf);
+
+        List<String> appArgs = new ArrayList<>(Arrays.asList(
+            "--server.port=0",
+            // Per-request INFO logging would dominate the measurement
+            "--logging.level.com.amazonaws.samples.qdevmovies=WARN",
+            // application.yml turns template caching off for development; production keeps it on
+            "--spring.thymeleaf.cache=true",
+            // Every worker shares one client address, so per-client rate limiting is lifted
+            "--movies.admission.rate-per-second=1000000",
+            "--movies.admission.burst=1000000",
+            "--movies.storage=" + storage));
+        if (!extraArgs.isEmpty()) {
+            appArgs.addAll(Arrays.asList(extraArgs.split("\\s+")));
+        }
+
+        ConfigurableApplicationContext app = new SpringApplicationBuilder(MoviesApplication.class)
+            .run(appArgs.toArray(new String[0]));
+        try {
+            CatalogChangeLog changeLog = app.getBean(CatalogChangeLog.class);
+            changeLog.resetTo(changeLog.getVersion() + 1, catalog.getMovies(), catalog.getReviews());
+            catalog.releaseRecords();
+            GcPauseMonitor gcMonitor = new GcPauseMonitor();
+            reply(new JSONObject()
+                .put("port", Integer.parseInt(app.getEnvironment().getProperty("local.server.port")))
+                .put("environment", environment()));
+
+            BufferedReader commands = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            String command;
+            while ((command = commands.readLine()) != null && !"exit".equals(command.trim())) {
+                switch (command.trim()) {
+                    case "memory":
+                        reply(memory(app));
+                        break;
+                    case "gc-start":
+                        gcMonitor.start();
+                        reply(new JSONObject());
+                        break;
+                    case "gc-stop":
+                        gcMonitor.stop();
+                        reply(gcMonitor.toJson());
+                        break;
+                    default:
+                        reply(new JSONObject().put("error", "unknown command: " + command));
+                }
+            }
+        } finally {
+            app.close();
+        }
+    }
+
+    private static void reply(JSONObject message) {
+        synchronized (System.out) {
+            System.out.println(REPLY + message);
+            System.out.flush();
+        }
+    }
+
+    private static JSONObject environment() {
+        JSONObject environment = new JSONObject();
+        environment.put("javaVersion", System.getProperty("java.version"));
+        environment.put("vmName", System.getProperty("java.vm.name"));
+        environment.put("processors", Runtime.getRuntime().availableProcessors());
+        environment.put("maxHeapBytes", Runtime.getRuntime().maxMemory());
+        environment.put("jvmArgs", ManagementFactory.getRuntimeMXBean().getInputArguments());
+        return environment;
+    }
+
+    /**
+     * Heap still in use right after a full collection, i.e. roughly the application's live
+     * set, next to the direct memory its movie and review records hold.
+     */
+    private static JSONObject memory(ConfigurableApplicationContext app) {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        JSONObject memory = new JSONObject();
+        memory.put("heapUsedAfterGcBytes", runtime.totalMemory() - runtime.freeMemory());
+        memory.put("movieOffHeapBytes", app.getBean(MovieService.class).getOffHeapBytes());
+        memory.put("reviewOffHeapBytes", app.getBean(ReviewService.class).getOffHeapBytes());
+        return memory;
+    }
+}
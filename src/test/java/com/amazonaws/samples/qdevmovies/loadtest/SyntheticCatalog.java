@@ -0,0 +1,176 @@
+package com.amazonaws.samples.qdevmovies.loadtest;
+
+import com.amazonaws.samples.qdevmovies.movies.Movie;
+import com.amazonaws.samples.qdevmovies.movies.Review;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Deterministic movie catalog and review set of any size for load testing. The same
+ * size and seed always produce the same movies, reviews and popularity order.
+ * Popular movies (by Zipfian rank) also collect most of the reviews, as in real data.
+ */
+final class SyntheticCatalog {
+    private static final String[] ADJECTIVES = {
+        "Crimson", "Silent", "Golden", "Hidden", "Broken", "Midnight", "Frozen", "Burning",
+        "Lost", "Savage", "Electric", "Hollow", "Iron", "Velvet", "Restless", "Forgotten",
+        "Distant", "Wicked", "Gentle", "Endless", "Stolen", "Secret", "Shattered", "Wild",
+        "Emerald", "Scarlet", "Phantom", "Rising", "Fallen", "Eternal", "Cursed", "Brave"
+    };
+    private static final String[] NOUNS = {
+        "Voyage", "Harbor", "Empire", "Island", "Storm", "Kingdom", "Tide", "Compass",
+        "Lighthouse", "Treasure", "Galaxy", "Frontier", "Legacy", "Mirror", "Horizon", "Garden",
+        "Station", "Forest", "River", "Crown", "Shadow", "Signal", "Journey", "Reef",
+        "Canyon", "Citadel", "Orchard", "Anchor", "Comet", "Mountain", "Desert", "Archive"
+    };
+    private static final String[] GENRES = {
+        "Drama", "Crime", "Action", "Sci-Fi", "Adventure", "Fantasy", "Comedy", "Romance",
+        "Thriller", "Horror", "Mystery", "Animation", "Family", "Western", "Musical", "War"
+    };
+    private static final String[] FIRST_NAMES = {
+        "Ava", "Ben", "Chloe", "Dan", "Elena", "Felix", "Grace", "Hugo", "Iris", "Jonas",
+        "Kira", "Liam", "Maya", "Nico", "Olive", "Pablo", "Quinn", "Rosa", "Sam", "Tess"
+    };
+    private static final String[] LAST_NAMES = {
+        "Archer", "Bishop", "Carver", "Dalton", "Ellis", "Fisher", "Grant", "Hayes", "Irving",
+        "Jensen", "Keller", "Lowe", "Marsh", "Nolan", "Osborne", "Porter", "Quill", "Reyes",
+        "Sawyer", "Thorne", "Underwood", "Vance", "Walsh", "Young", "Zimmer"
+    };
+    private static final String[] AVATARS = {"👨", "👩", "🧑", "👴", "👵", "🧔", "👱", "🏴‍☠️"};
+    private static final String[] COMMENTS = {
+        "A fine voyage from start to finish.", "Could not look away.", "Slow in the middle, strong ending.",
+        "Not my cup of grog.", "The soundtrack alone is worth it.", "Would watch again with the crew."
+    };
+    private static final int REVIEWERS = 5_000;
+
+    private List<Movie> movies;
+    private Map<Long, List<Review>> reviews;
+    private final int movieCount;
+    private final long[] idsByPopularity;
+    private final List<String> searchTerms;
+    private final List<String> genres;
+    private final int reviewCount;
+
+    private SyntheticCatalog(List<Movie> movies, Map<Long, List<Review>> reviews, long[] idsByPopularity,
+                             List<String> searchTerms, List<String> genres, int reviewCount) {
+        this.movies = movies;
+        this.reviews = reviews;
+        this.movieCount = movies.size();
+        this.idsByPopularity = idsByPopularity;
+        this.searchTerms = searchTerms;
+        this.genres = genres;
+        this.reviewCount = reviewCount;
+    }
+
+    static SyntheticCatalog generate(int movieCount, int reviewCount, long seed, double zipfExponent) {
+        Random random = new Random(seed);
+        int titleCombinations = ADJECTIVES.length * NOUNS.length;
+
+        List<Movie> movies = new ArrayList<>(movieCount);
+        for (int i = 0; i < movieCount; i++) {
+            long id = i + 1;
+            String title = "The " + ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " "
+                + NOUNS[random.nextInt(NOUNS.length)];
+            if (i >= titleCombinations) {
+                title += " " + (i / titleCombinations + 1);
+            }
+            String genre = GENRES[random.nextInt(GENRES.length)];
+            if (random.nextBoolean()) {
+                String second = GENRES[random.nextInt(GENRES.length)];
+                if (!second.equals(genre)) {
+                    genre += "/" + second;
+                }
+            }
+            // A few hundred directors each make many movies, like the real catalog's regulars
+            String director = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+                + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            movies.add(new Movie(id, title, director, 1920 + random.nextInt(105), genre,
+                "Synthetic movie " + id + " for load testing.", 80 + random.nextInt(100),
+                1 + random.nextInt(9) / 2.0));
+        }
+
+        List<Long> shuffledIds = new ArrayList<>(movieCount);
+        for (Movie movie : movies) {
+            shuffledIds.add(movie.getId());
+        }
+        Collections.shuffle(shuffledIds, random);
+        long[] idsByPopularity = new long[movieCount];
+        for (int rank = 0; rank < movieCount; rank++) {
+            idsByPopularity[rank] = shuffledIds.get(rank);
+        }
+
+        ZipfianSampler moviePopularity = new ZipfianSampler(movieCount, zipfExponent);
+        ZipfianSampler reviewerActivity = new ZipfianSampler(REVIEWERS, zipfExponent);
+        Map<Long, List<Review>> reviews = new HashMap<>();
+        for (int i = 0; i < reviewCount; i++) {
+            long movieId = idsByPopularity[moviePopularity.next(random)];
+            int reviewer = reviewerActivity.next(random);
+            reviews.computeIfAbsent(movieId, id -> new ArrayList<>()).add(new Review(
+                "Sailor" + reviewer, AVATARS[reviewer % AVATARS.length], 1 + random.nextInt(9) / 2.0,
+                COMMENTS[random.nextInt(COMMENTS.length)]));
+        }
+
+        List<String> searchTerms = new ArrayList<>();
+        Collections.addAll(searchTerms, ADJECTIVES);
+        Collections.addAll(searchTerms, NOUNS);
+        Collections.shuffle(searchTerms, random);
+        List<String> genres = new ArrayList<>();
+        Collections.addAll(genres, GENRES);
+        Collections.shuffle(genres, random);
+
+        return new SyntheticCatalog(movies, reviews, idsByPopularity, searchTerms, genres, reviewCount);
+    }
+
+    List<Movie> getMovies() {
+        return movies;
+    }
+
+    Map<Long, List<Review>> getReviews() {
+        return reviews;
+    }
+
+    int getMovieCount() {
+        return movieCount;
+    }
+
+    int getReviewCount() {
+        return reviewCount;
+    }
+
+    /**
+     * Drops the generated movies and reviews once the application holds its own copy,
+     * so they do not count towards the heap measured during the run. Popularity, search
+     * terms and counts stay available.
+     */
+    void releaseRecords() {
+        movies = null;
+        reviews = null;
+    }
+
+    /**
+     * @param rank Popularity rank, 0 being the most popular
+     * @return Id of the movie with that rank
+     */
+    long movieIdAtRank(int rank) {
+        return idsByPopularity[rank];
+    }
+
+    /**
+     * @return Title words, most popular search first
+     */
+    List<String> getSearchTerms() {
+        return searchTerms;
+    }
+
+    /**
+     * @return Genres, most popular search first
+     */
+    List<String> getGenres() {
+        return genres;
+    }
+}
@@ -0,0 +1,55 @@
+package com.amazonaws.samples.qdevmovies.loadtest;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the load-test workload generators
+ * Arrr! A fair wind be one ye can summon again on demand!
+ */
+public class SyntheticWorkloadTest {
+
+    @Test
+    @DisplayName("Zipfian sampler should favour low ranks heavily")
+    public void testZipfianSkew() {
+        ZipfianSampler sampler = new ZipfianSampler(1_000, 0.99);
+        Random random = new Random(7);
+        int[] counts = new int[sampler.size()];
+        for (int i = 0; i < 100_000; i++) {
+            counts[sampler.next(random)]++;
+        }
+
+        assertTrue(counts[0] > counts[9] * 5);
+        assertTrue(counts[9] > counts[999]);
+    }
+
+    @Test
+    @DisplayName("Synthetic catalog should be identical for the same seed")
+    public void testSyntheticCatalogIsReproducible() {
+        SyntheticCatalog first = SyntheticCatalog.generate(2_000, 5_000, 42, 0.99);
+        SyntheticCatalog second = SyntheticCatalog.generate(2_000, 5_000, 42, 0.99);
+
+        assertEquals(2_000, first.getMovies().size());
+        assertEquals(first.getMovies().get(1_234).getMovieName(), second.getMovies().get(1_234).getMovieName());
+        assertEquals(first.movieIdAtRank(0), second.movieIdAtRank(0));
+        assertEquals(first.getSearchTerms(), second.getSearchTerms());
+        assertEquals(5_000, first.getReviews().values().stream().mapToInt(java.util.List::size).sum());
+        // The most popular movie collects more reviews than a typical one
+        assertTrue(first.getReviews().get(first.movieIdAtRank(0)).size() > 5_000 / 2_000);
+    }
+
+    @Test
+    @DisplayName("Workload profile should honour a custom mix")
+    public void testCustomMix() {
+        WorkloadProfile profile = WorkloadProfile.of("mixed", "search=1,details=0,list=0");
+        Random random = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(WorkloadProfile.Operation.SEARCH, profile.next(random));
+        }
+        assertThrows(IllegalArgumentException.class, () -> WorkloadProfile.of("unknown", ""));
+    }
+}
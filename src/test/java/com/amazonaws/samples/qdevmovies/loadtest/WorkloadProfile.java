@@ -0,0 +1,104 @@
+package com.amazonaws.samples.qdevmovies.loadtest;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Named traffic mix: the share of requests going to each endpoint. Built-in profiles
+ * are {@code mixed}, {@code search-heavy} and {@code browse}; a custom mix such as
+ * {@code list=5,search=60,details=35} overrides the profile's weights.
+ */
+final class WorkloadProfile {
+
+    enum Operation {
+        /** {@code GET /movies}, the full catalog page */
+        LIST,
+        /** {@code GET /movies/search} by title word or genre */
+        SEARCH,
+        /** {@code GET /movies/{id}/details} */
+        DETAILS
+    }
+
+    private final String name;
+    private final Map<Operation, Integer> weights;
+    private final Operation[] table;
+
+    private WorkloadProfile(String name, Map<Operation, Integer> weights) {
+        int total = 0;
+        for (int weight : weights.values()) {
+            if (weight < 0) {
+                throw new IllegalArgumentException("Workload weights must not be negative: " + weights);
+            }
+            total += weight;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("Workload needs at least one positive weight: " + weights);
+        }
+        this.name = name;
+        this.weights = weights;
+        // One slot per unit of weight, so picking an operation is a single array read
+        this.table = new Operation[total];
+        int slot = 0;
+        for (Map.Entry<Operation, Integer> entry : weights.entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                table[slot++] = entry.getKey();
+            }
+        }
+    }
+
+    static WorkloadProfile of(String profileName, String customMix) {
+        Map<Operation, Integer> weights;
+        switch (profileName) {
+            case "mixed":
+                weights = weights(5, 55, 40);
+                break;
+            case "search-heavy":
+                weights = weights(0, 90, 10);
+                break;
+            case "browse":
+                weights = weights(20, 20, 60);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown workload profile: " + profileName
+                    + " (expected mixed, search-heavy or browse)");
+        }
+        if (customMix != null && !customMix.trim().isEmpty()) {
+            weights = parseMix(customMix);
+        }
+        return new WorkloadProfile(profileName, weights);
+    }
+
+    private static Map<Operation, Integer> weights(int list, int search, int details) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        weights.put(Operation.LIST, list);
+        weights.put(Operation.SEARCH, search);
+        weights.put(Operation.DETAILS, details);
+        return weights;
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = weights(0, 0, 0);
+        for (String part : mix.split(",")) {
+            String[] pair = part.split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Workload mix entries look like search=60, got: " + part);
+            }
+            weights.put(Operation.valueOf(pair[0].trim().toUpperCase(Locale.ROOT)), Integer.parseInt(pair[1].trim()));
+        }
+        return weights;
+    }
+
+    Operation next(Random random) {
+        return table[random.nextInt(table.length)];
+    }
+
+    String getName() {
+        return name;
+    }
+
+    Map<Operation, Integer> getWeights() {
+        return weights;
+    }
+}
@@ -0,0 +1,41 @@
+package com.amazonaws.samples.qdevmovies.loadtest;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Draws ranks 0..n-1 with Zipfian popularity: rank r is picked with probability
+ * proportional to 1 / (r + 1)^exponent, so a few ranks get most of the traffic.
+ * The sampler is immutable; callers pass their own seeded {@link Random} so every
+ * worker replays the same sequence on every run.
+ */
+final class ZipfianSampler {
+    private final double[] cumulative;
+
+    ZipfianSampler(int size, double exponent) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Zipfian sampler needs at least one item");
+        }
+        cumulative = new double[size];
+        double sum = 0;
+        for (int rank = 0; rank < size; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            cumulative[rank] /= sum;
+        }
+    }
+
+    int next(Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return Math.min(index, cumulative.length - 1);
+    }
+
+    int size() {
+        return cumulative.length;
+    }
+}
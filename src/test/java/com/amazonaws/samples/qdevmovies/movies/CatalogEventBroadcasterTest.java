@@ -0,0 +1,308 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for pushing catalog changes to filtered subscribers
+ * Arrr! Word from the harbour reaches only the crews who asked for it!
+ */
+public class CatalogEventBroadcasterTest {
+
+    private MovieService movieService;
+    private CatalogChangeLog changeLog;
+
+    @BeforeEach
+    public void setUp() {
+        movieService = new MovieService();
+        changeLog = new CatalogChangeLog(movieService, new ReviewService(), 100);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        movieService.shutdown();
+    }
+
+    @Test
+    @DisplayName("Subscribers should only receive changes for their genres and movies")
+    public void testFiltersByGenreAndMovie() throws InterruptedException {
+        CatalogEventBroadcaster broadcaster = start(64, 100);
+        try {
+            RecordingSink everything = new RecordingSink();
+            RecordingSink drama = new RecordingSink();
+            RecordingSink movie = new RecordingSink();
+            broadcaster.subscribe(Collections.emptyList(), Collections.emptyList(), null, everything);
+            broadcaster.subscribe(Collections.singletonList("DRAMA"), Collections.emptyList(), null, drama);
+            broadcaster.subscribe(Collections.emptyList(), Collections.singletonList(902L), null, movie);
+            assertEquals(3, broadcaster.getSubscriberCount());
+
+            changeLog.upsertMovie(movie(901L, "Crime/Drama"));
+            changeLog.upsertMovie(movie(902L, "Comedy"));
+            changeLog.addReview(901L, new Review("Critic", "x", 4.0, "Gripping"));
+            changeLog.removeMovie(901L);
+
+            assertEquals(Arrays.asList("movie-upsert", "movie-upsert", "review-add", "movie-remove"), everything.names(4));
+            // The removal still reaches genre subscribers, matched on the genre the movie had
+            assertEquals(Arrays.asList("movie-upsert", "review-add", "movie-remove"), drama.names(3));
+            assertEquals(Collections.singletonList("movie-upsert"), movie.names(1));
+
+            CatalogEventBroadcaster.Event upsert = everything.received.get(0);
+            assertEquals(changeLog.getVersion() - 3, upsert.getVersion());
+            JSONObject data = new JSONObject(upsert.getData());
+            assertEquals("Crime/Drama", data.getString("genre"));
+            assertEquals(901L, data.getLong("movieId"));
+            assertTrue(drama.events.isEmpty() && movie.events.isEmpty());
+        } finally {
+            broadcaster.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("A subscriber that falls behind its buffer should be disconnected")
+    public void testEvictsSlowSubscriber() throws InterruptedException {
+        CatalogEventBroadcaster broadcaster = start(2, 100);
+        CountDownLatch stuck = new CountDownLatch(1);
+        try {
+            RecordingSink slow = new RecordingSink() {
+                @Override
+                public void send(CatalogEventBroadcaster.Event event) throws Exception {
+                    stuck.await();
+                    super.send(event);
+                }
+            };
+            RecordingSink fast = new RecordingSink();
+            broadcaster.subscribe(Collections.emptyList(), Collections.emptyList(), null, slow);
+            broadcaster.subscribe(Collections.emptyList(), Collections.emptyList(), null, fast);
+
+            for (int i = 0; i < 5; i++) {
+                changeLog.addReview(1L, new Review("Sailor" + i, "x", 3.0, "Comment " + i));
+                // Let the fast subscriber keep up, as a healthy connection would
+                assertEquals(1, fast.names(1).size());
+            }
+
+            assertTrue(slow.closed.await(5, TimeUnit.SECONDS));
+            assertEquals(1, broadcaster.getEvictions());
+            assertEquals(1, broadcaster.getSubscriberCount());
+            assertEquals(1, fast.closed.getCount());
+        } finally {
+            stuck.countDown();
+            broadcaster.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Reconnecting subscribers should get missed events replayed, or a resync once they are gone")
+    public void testReplaysMissedEvents() throws InterruptedException {
+        CatalogEventBroadcaster broadcaster = start(64, 3);
+        try {
+            long before = changeLog.getVersion();
+            changeLog.upsertMovie(movie(903L, "Horror"));
+            changeLog.upsertMovie(movie(904L, "Western"));
+            changeLog.addReview(903L, new Review("Critic", "x", 2.0, "Scary"));
+
+            RecordingSink resumed = new RecordingSink();
+            broadcaster.subscribe(Collections.singletonList("horror"), Collections.emptyList(), before, resumed);
+            assertEquals(Arrays.asList("movie-upsert", "review-add"), resumed.names(2));
+
+            changeLog.upsertMovie(movie(905L, "Horror"));
+            RecordingSink tooLate = new RecordingSink();
+            broadcaster.subscribe(Collections.emptyList(), Collections.emptyList(), before, tooLate);
+            CatalogEventBroadcaster.Event resync = tooLate.events.poll(5, TimeUnit.SECONDS);
+            assertEquals("resync", resync.getName());
+            assertEquals(changeLog.getVersion(), resync.getVersion());
+
+            RecordingSink current = new RecordingSink();
+            broadcaster.subscribe(Collections.emptyList(), Collections.emptyList(), changeLog.getVersion(), current);
+            assertEquals(Collections.singletonList("movie-upsert"), resumed.names(1));
+            assertNull(current.events.poll(100, TimeUnit.MILLISECONDS));
+        } finally {
+            broadcaster.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Event stream endpoint should push new reviews as server-sent events")
+    public void testEventStreamEndpoint() throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(MoviesApplication.class)
+            .run("--server.port=0");
+        try {
+            String port = context.getEnvironment().getProperty("local.server.port");
+            HttpURLConnection connection = (HttpURLConnection) new URL(
+                "http://localhost:" + port + "/catalog/events?movieId=1").openConnection();
+            connection.setReadTimeout(10_000);
+            assertEquals(200, connection.getResponseCode());
+            assertTrue(connection.getContentType().startsWith("text/event-stream"));
+
+            context.getBean(CatalogChangeLog.class).addReview(2L, new Review("Other", "x", 1.0, "Not this one"));
+            context.getBean(CatalogChangeLog.class).addReview(1L, new Review("Watcher", "x", 5.0, "Pushed to me"));
+
+            List<String> lines = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                // Reads the first event, skipping comments such as the opening ":connected"
+                while ((line = reader.readLine()) != null && !(line.isEmpty() && !lines.isEmpty())) {
+                    if (!line.isEmpty() && !line.startsWith(":")) {
+                        lines.add(line);
+                    }
+                }
+            } finally {
+                connection.disconnect();
+            }
+            assertEquals("id:2", lines.get(0));
+            assertEquals("event:review-add", lines.get(1));
+            assertTrue(lines.get(2).startsWith("data:"));
+            assertEquals("Pushed to me", new JSONObject(lines.get(2).substring(5))
+                .getJSONObject("review").getString("comment"));
+        } finally {
+            context.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Shutting down should close subscribers and refuse new ones")
+    public void testShutdownClosesSubscribers() throws InterruptedException {
+        CatalogEventBroadcaster broadcaster = start(64, 100);
+        RecordingSink sink = new RecordingSink();
+        broadcaster.subscribe(Collections.emptyList(), Collections.emptyList(), null, sink);
+
+        broadcaster.shutdown();
+        broadcaster.shutdown();
+
+        assertTrue(sink.closed.await(5, TimeUnit.SECONDS));
+        assertEquals(0, broadcaster.getSubscriberCount());
+        assertNull(broadcaster.subscribe(Collections.emptyList(), Collections.emptyList(), null, new RecordingSink()));
+    }
+
+    @Test
+    @DisplayName("Shutting down should wait until closed connections have ended")
+    public void testShutdownWaitsForConnectionsToEnd() throws InterruptedException {
+        CatalogEventBroadcaster broadcaster = start(64, 100);
+        CountDownLatch ending = new CountDownLatch(1);
+        CountDownLatch ended = new CountDownLatch(1);
+        // Like an event stream, whose closing chunk is written by the web server after close() returns
+        broadcaster.subscribe(Collections.emptyList(), Collections.emptyList(), null, new RecordingSink() {
+            @Override
+            public void close() {
+                Thread writer = new Thread(() -> {
+                    try {
+                        ending.await();
+                        Thread.sleep(200);
+                        ended.countDown();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                writer.setDaemon(true);
+                writer.start();
+                ending.countDown();
+            }
+
+            @Override
+            public boolean awaitClosed(long timeout, TimeUnit unit) throws InterruptedException {
+                return ended.await(timeout, unit);
+            }
+        });
+
+        broadcaster.shutdown();
+
+        assertEquals(0, ended.getCount(), "Shutdown returned before the connection had ended");
+    }
+
+    @Test
+    @DisplayName("Closing the application should end open event streams cleanly")
+    public void testContextCloseEndsEventStreams() throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(MoviesApplication.class)
+            .run("--server.port=0");
+        List<HttpURLConnection> connections = new ArrayList<>();
+        try {
+            String port = context.getEnvironment().getProperty("local.server.port");
+            // Several streams, so the server has several closing chunks to write as it stops
+            for (int i = 0; i < 8; i++) {
+                HttpURLConnection connection =
+                    (HttpURLConnection) new URL("http://localhost:" + port + "/catalog/events").openConnection();
+                connection.setReadTimeout(10_000);
+                assertEquals(200, connection.getResponseCode());
+                connections.add(connection);
+            }
+        } finally {
+            context.close();
+        }
+
+        // A stream cut off by the server stopping ends in a premature EOF instead
+        for (HttpURLConnection connection : connections) {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                List<String> lines = new ArrayList<>();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines.add(line);
+                }
+                assertEquals(":connected", lines.get(0));
+            } finally {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private CatalogEventBroadcaster start(int bufferSize, int historySize) {
+        CatalogEventBroadcaster broadcaster = new CatalogEventBroadcaster(changeLog, bufferSize, historySize, 100, 0, 2);
+        broadcaster.start();
+        return broadcaster;
+    }
+
+    private static Movie movie(long id, String genre) {
+        return new Movie(id, "Movie " + id, "Director", 2024, genre, "Description", 100, 4.0);
+    }
+
+    private static class RecordingSink implements CatalogEventBroadcaster.EventSink {
+        final BlockingQueue<CatalogEventBroadcaster.Event> events = new LinkedBlockingQueue<>();
+        final List<CatalogEventBroadcaster.Event> received = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch closed = new CountDownLatch(1);
+
+        @Override
+        public void send(CatalogEventBroadcaster.Event event) throws Exception {
+            received.add(event);
+            events.add(event);
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+
+        /**
+         * Takes the next {@code count} events, waiting for them to be sent.
+         */
+        List<String> names(int count) throws InterruptedException {
+            List<String> names = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                CatalogEventBroadcaster.Event event = events.poll(5, TimeUnit.SECONDS);
+                assertNotNull(event, "Timed out waiting for an event");
+                names.add(event.getName());
+            }
+            return names;
+        }
+    }
+}
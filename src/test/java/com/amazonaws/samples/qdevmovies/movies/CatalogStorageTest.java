@@ -0,0 +1,256 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that off-heap storage serves the same movies and reviews as the heap
+ * Arrr! Treasure stowed below decks be the same treasure, matey!
+ */
+public class CatalogStorageTest {
+
+    @Test
+    @DisplayName("Off-heap catalog should answer lookups and searches like the heap catalog")
+    public void testOffHeapCatalogMatchesHeap() {
+        List<Movie> catalog = new ArrayList<>();
+        for (long id = 1; id <= 3_000; id++) {
+            catalog.add(new Movie(id, "Movie " + id + (id % 7 == 0 ? " Café" : ""), "Director " + (id % 40),
+                1950 + (int) (id % 70), id % 3 == 0 ? "Drama" : "Comedy/Sci-Fi", "Description " + id,
+                90 + (int) (id % 60), (id % 10) / 2.0));
+        }
+        MovieService heap = new MovieService(catalog, CatalogStorage.HEAP);
+        MovieService offHeap = new MovieService(catalog, CatalogStorage.OFF_HEAP);
+
+        try {
+            assertEquals(0, heap.getOffHeapBytes());
+            assertTrue(offHeap.getOffHeapBytes() > 0);
+            assertEquals(heap.getAllGenres(), offHeap.getAllGenres());
+            assertEquals(heap.getAllMovies().size(), offHeap.getAllMovies().size());
+
+            for (long id : new long[] {1, 777, 3_000}) {
+                Movie expected = heap.getMovieById(id).get();
+                Movie actual = offHeap.getMovieById(id).get();
+                assertEquals(expected.getMovieName(), actual.getMovieName());
+                assertEquals(expected.getDirector(), actual.getDirector());
+                assertEquals(expected.getYear(), actual.getYear());
+                assertEquals(expected.getGenre(), actual.getGenre());
+                assertEquals(expected.getDescription(), actual.getDescription());
+                assertEquals(expected.getDuration(), actual.getDuration());
+                assertEquals(expected.getImdbRating(), actual.getImdbRating());
+                assertEquals(expected.getIcon(), actual.getIcon());
+            }
+            assertEquals(Optional.empty(), offHeap.getMovieById(3_001L));
+
+            assertEquals(ids(heap.searchMovies("café", null, "drama")), ids(offHeap.searchMovies("café", null, "drama")));
+            assertEquals(ids(heap.searchMovies(null, 42L, null)), ids(offHeap.searchMovies(null, 42L, null)));
+        } finally {
+            heap.shutdown();
+            offHeap.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Off-heap catalog should follow changes and a full replacement")
+    public void testOffHeapCatalogChanges() {
+        MovieService offHeap = new MovieService(Collections.singletonList(
+            new Movie(1L, "Old Name", "Director", 2000, "Drama", "Old", 100, 4.0)), CatalogStorage.OFF_HEAP);
+
+        try {
+            offHeap.applyChanges(Collections.singletonList(
+                new Movie(2L, "Brand New", "Director", 2024, "Comedy", "New", 95, 4.5)), Collections.singletonList(1L));
+            assertFalse(offHeap.getMovieById(1L).isPresent());
+            assertEquals("Brand New", offHeap.getMovieById(2L).get().getMovieName());
+
+            offHeap.replaceCatalog(Arrays.asList(
+                new Movie(3L, "Third", "Director", 2010, "Horror", "", 90, 3.0),
+                new Movie(4L, "Fourth", "Director", 2011, "Horror", null, 91, 3.5)));
+            assertEquals(2, offHeap.getAllMovies().size());
+            assertEquals("", offHeap.getMovieById(3L).get().getDescription());
+            assertNull(offHeap.getMovieById(4L).get().getDescription());
+        } finally {
+            offHeap.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Repeated off-heap replacements should free each replaced store while readers keep reading")
+    public void testOffHeapChangesFreeReplacedStores() throws Exception {
+        List<Movie> catalog = new ArrayList<>();
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            description.append("A long voyage across stormy seas. ");
+        }
+        for (long id = 1; id <= 2_000; id++) {
+            catalog.add(new Movie(id, "Movie " + id, "Director", 2000, "Drama", description + " " + id, 100, 4.0));
+        }
+        MovieService offHeap = new MovieService(catalog, CatalogStorage.OFF_HEAP);
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            long storeBytes = offHeap.getOffHeapBytes();
+            long before = directMemoryUsed();
+            Future<Integer> reads = reader.submit(() -> {
+                int count = 0;
+                while (writing.get()) {
+                    // Every read must see a whole, unfreed catalog
+                    assertEquals("Movie 1", offHeap.getMovieById(1L).get().getMovieName());
+                    assertEquals(1, offHeap.searchMovies(null, 2_000L, null).size());
+                    assertEquals(2_000, offHeap.getAllMovies().size());
+                    count++;
+                }
+                return count;
+            });
+
+            for (int i = 0; i < 300; i++) {
+                List<Movie> replacement = new ArrayList<>(catalog);
+                replacement.set(1_999, new Movie(2_000L, "Changing " + i, "Director", 2024, "Comedy", "Change " + i,
+                    95, 4.5));
+                offHeap.replaceCatalog(replacement);
+            }
+            writing.set(false);
+
+            assertTrue(reads.get() > 0);
+            assertEquals("Changing 299", offHeap.getMovieById(2_000L).get().getMovieName());
+            // 300 replaced stores would hold hundreds of MB until a GC; only the current one is left
+            assertTrue(directMemoryUsed() - before < 3 * storeBytes,
+                "Direct memory grew by " + (directMemoryUsed() - before) + " bytes");
+        } finally {
+            writing.set(false);
+            reader.shutdownNow();
+            offHeap.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Off-heap reviews should sort and page like heap reviews")
+    public void testOffHeapReviewsMatchHeap() {
+        List<Review> reviews = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            reviews.add(new Review("Sailor " + (i % 50), "🏴‍☠️", 1 + (i % 9) / 2.0, "Comment " + i + " ⚓"));
+        }
+        Map<Long, List<Review>> byMovie = Collections.singletonMap(9L, reviews);
+        ReviewService heap = new ReviewService(CatalogStorage.HEAP);
+        ReviewService offHeap = new ReviewService(CatalogStorage.OFF_HEAP);
+        try {
+            heap.replaceAllReviews(byMovie);
+            offHeap.replaceAllReviews(byMovie);
+            Review added = new Review("Late Sailor", "👩", 5.0, "Best yet");
+            heap.addReview(9L, added);
+            offHeap.addReview(9L, added);
+
+            assertEquals(0, heap.getOffHeapBytes());
+            assertTrue(offHeap.getOffHeapBytes() > 0);
+            assertEquals(comments(heap.getReviewsForMovie(9L)), comments(offHeap.getReviewsForMovie(9L)));
+            assertEquals(comments(heap.getAllReviews().get(9L)), comments(offHeap.getAllReviews().get(9L)));
+            assertArrayEquals(heap.reviewerNamesRatedAtLeast(9L, 4.0), offHeap.reviewerNamesRatedAtLeast(9L, 4.0));
+
+            ReviewService.ReviewPage heapPage = heap.getReviewPage(9L, null, 25);
+            ReviewService.ReviewPage offHeapPage = offHeap.getReviewPage(9L, null, 25);
+            assertEquals(heapPage.getNextCursor(), offHeapPage.getNextCursor());
+            heapPage = heap.getReviewPage(9L, heapPage.getNextCursor(), 25);
+            offHeapPage = offHeap.getReviewPage(9L, offHeapPage.getNextCursor(), 25);
+            assertEquals(comments(heapPage.getReviews()), comments(offHeapPage.getReviews()));
+
+            Review first = offHeap.getReviewsForMovie(9L).get(0);
+            assertEquals("Late Sailor", first.getUserName());
+            assertEquals("👩", first.getAvatarEmoji());
+        } finally {
+            heap.close();
+            offHeap.close();
+        }
+        assertEquals(0, offHeap.getOffHeapBytes());
+    }
+
+    @Test
+    @DisplayName("Repeated off-heap review resyncs should free the replaced records while readers keep reading")
+    public void testOffHeapReviewResyncsFreeReplacedRecords() throws Exception {
+        List<Review> reviews = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            reviews.add(new Review("Sailor " + (i % 50), "🏴‍☠️", 4.0, "A long tale of the sea, number " + i));
+        }
+        Map<Long, List<Review>> byMovie = Collections.singletonMap(9L, reviews);
+        ReviewService offHeap = new ReviewService(CatalogStorage.OFF_HEAP);
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            offHeap.replaceAllReviews(byMovie);
+            long recordBytes = offHeap.getOffHeapBytes();
+            long before = directMemoryUsed();
+            Future<Integer> reads = reader.submit(() -> {
+                int count = 0;
+                while (writing.get()) {
+                    // Every read must see whole, unfreed records
+                    ReviewService.ReviewPage page = offHeap.getReviewPage(9L, null, 5);
+                    assertEquals(20_000, page.getTotalReviews());
+                    assertTrue(page.getReviews().get(0).getComment().startsWith("A long tale"));
+                    assertEquals(20_000, offHeap.reviewerNamesRatedAtLeast(9L, 4.0).length);
+                    count++;
+                }
+                return count;
+            });
+
+            for (int i = 0; i < 100; i++) {
+                offHeap.replaceAllReviews(byMovie);
+            }
+            writing.set(false);
+
+            assertTrue(reads.get() > 0);
+            // 100 replaced record sets would pile up until a GC; only the current one is left
+            assertTrue(directMemoryUsed() - before < 3 * recordBytes,
+                "Direct memory grew by " + (directMemoryUsed() - before) + " bytes");
+        } finally {
+            writing.set(false);
+            reader.shutdownNow();
+            offHeap.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Storage setting should accept heap and off-heap only")
+    public void testParseStorage() {
+        assertEquals(CatalogStorage.HEAP, CatalogStorage.parse("heap"));
+        assertEquals(CatalogStorage.HEAP, CatalogStorage.parse(""));
+        assertEquals(CatalogStorage.OFF_HEAP, CatalogStorage.parse(" Off-Heap "));
+        assertThrows(IllegalArgumentException.class, () -> CatalogStorage.parse("mmap"));
+    }
+
+    private static long directMemoryUsed() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                return pool.getMemoryUsed();
+            }
+        }
+        throw new IllegalStateException("No direct buffer pool");
+    }
+
+    private static List<Long> ids(List<Movie> movies) {
+        List<Long> ids = new ArrayList<>();
+        for (Movie movie : movies) {
+            ids.add(movie.getId());
+        }
+        return ids;
+    }
+
+    private static List<String> comments(List<Review> reviews) {
+        List<String> comments = new ArrayList<>();
+        for (Review review : reviews) {
+            comments.add(review.getComment());
+        }
+        return comments;
+    }
+}
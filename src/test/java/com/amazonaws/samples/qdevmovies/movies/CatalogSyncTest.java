@@ -0,0 +1,271 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Leader/follower replication tests with both nodes running on localhost.
+ * Arrr! The flagship signals, and the fleet follows!
+ */
+public class CatalogSyncTest {
+    private static final String WRITE_TOKEN = "test-write-token";
+
+    private static ConfigurableApplicationContext leader;
+    private static ConfigurableApplicationContext follower;
+    private static String leaderUrl;
+    private static String followerUrl;
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    @BeforeAll
+    public static void startNodes() {
+        leader = new SpringApplicationBuilder(MoviesApplication.class)
+            .run("--server.port=0", "--movies.sync.leader=true", "--movies.sync.write-token=" + WRITE_TOKEN);
+        leaderUrl = "http://localhost:" + leader.getEnvironment().getProperty("local.server.port");
+        follower = new SpringApplicationBuilder(MoviesApplication.class)
+            .run("--server.port=0", "--movies.sync.leader-url=" + leaderUrl, "--movies.sync.poll-wait-ms=2000",
+                "--movies.sync.write-token=" + WRITE_TOKEN);
+        followerUrl = "http://localhost:" + follower.getEnvironment().getProperty("local.server.port");
+    }
+
+    @AfterAll
+    public static void stopNodes() {
+        follower.close();
+        leader.close();
+    }
+
+    @Test
+    @DisplayName("Follower should apply movies and reviews published by the leader")
+    public void testFollowerAppliesLeaderChanges() throws InterruptedException {
+        post(leaderUrl + "/catalog/movies", "{\"id\": 101, \"movieName\": \"The Replicated Voyage\", "
+            + "\"director\": \"Sync Director\", \"year\": 2024, \"genre\": \"Adventure\", "
+            + "\"description\": \"A movie that sails between nodes.\", \"duration\": 101, \"imdbRating\": 4.0}");
+        post(leaderUrl + "/catalog/movies/101/reviews", "{\"userName\": \"FleetWatcher\", "
+            + "\"avatarEmoji\": \"🧭\", \"rating\": 4.5, \"comment\": \"Arrived right on time.\"}");
+
+        MovieService followerMovies = follower.getBean(MovieService.class);
+        ReviewService followerReviews = follower.getBean(ReviewService.class);
+        awaitTrue(() -> followerReviews.getReviewsForMovie(101).size() == 1);
+
+        assertTrue(followerMovies.getMovieById(101L).isPresent());
+        assertEquals(1, followerMovies.searchMovies("replicated", null, null).size());
+        assertEquals("FleetWatcher", followerReviews.getReviewsForMovie(101).get(0).getUserName());
+        assertEquals(leader.getBean(CatalogChangeLog.class).getVersion(),
+            follower.getBean(CatalogChangeLog.class).getVersion());
+
+        restTemplate.exchange(leaderUrl + "/catalog/movies/101", HttpMethod.DELETE,
+            new HttpEntity<>(authorized(new HttpHeaders())), String.class);
+        awaitTrue(() -> !followerMovies.getMovieById(101L).isPresent());
+    }
+
+    @Test
+    @DisplayName("Follower should reject writes")
+    public void testFollowerRejectsWrites() {
+        HttpClientErrorException error = assertThrows(HttpClientErrorException.class,
+            () -> post(followerUrl + "/catalog/movies/1/reviews", "{\"userName\": \"Stowaway\", "
+                + "\"avatarEmoji\": \"x\", \"rating\": 1.0, \"comment\": \"Wrong ship.\"}"));
+        assertEquals(409, error.getRawStatusCode());
+    }
+
+    @Test
+    @DisplayName("Leader should reject writes without the write token")
+    public void testLeaderRequiresWriteToken() {
+        HttpClientErrorException error = assertThrows(HttpClientErrorException.class,
+            () -> restTemplate.exchange(leaderUrl + "/catalog/movies/1", HttpMethod.DELETE, null, String.class));
+        assertEquals(401, error.getRawStatusCode());
+
+        HttpHeaders wrongToken = new HttpHeaders();
+        wrongToken.setBearerAuth("guessed");
+        error = assertThrows(HttpClientErrorException.class, () -> restTemplate.exchange(
+            leaderUrl + "/catalog/movies/1", HttpMethod.DELETE, new HttpEntity<>(wrongToken), String.class));
+        assertEquals(401, error.getRawStatusCode());
+        assertTrue(leader.getBean(MovieService.class).getMovieById(1L).isPresent());
+    }
+
+    @Test
+    @DisplayName("Change stream should require the write token")
+    public void testChangeStreamRequiresWriteToken() {
+        HttpClientErrorException error = assertThrows(HttpClientErrorException.class,
+            () -> restTemplate.getForObject(leaderUrl + "/catalog/changes?since=-1", String.class));
+        assertEquals(401, error.getRawStatusCode());
+
+        HttpHeaders wrongToken = new HttpHeaders();
+        wrongToken.setBearerAuth("guessed");
+        error = assertThrows(HttpClientErrorException.class, () -> restTemplate.exchange(
+            leaderUrl + "/catalog/changes?since=-1", HttpMethod.GET, new HttpEntity<>(wrongToken), String.class));
+        assertEquals(401, error.getRawStatusCode());
+
+        ResponseEntity<String> snapshot = restTemplate.exchange(leaderUrl + "/catalog/changes?since=-1",
+            HttpMethod.GET, new HttpEntity<>(authorized(new HttpHeaders())), String.class);
+        assertTrue(new JSONObject(snapshot.getBody()).getBoolean("resync"));
+    }
+
+    @Test
+    @DisplayName("Long poll should answer with the next write")
+    public void testLongPollAnswersWithNextWrite() throws Exception {
+        long since = leader.getBean(CatalogChangeLog.class).getVersion();
+        ExecutorService poller = Executors.newSingleThreadExecutor();
+        try {
+            Future<ResponseEntity<String>> poll = poller.submit(() -> restTemplate.exchange(
+                leaderUrl + "/catalog/changes?since=" + since + "&waitMs=30000", HttpMethod.GET,
+                new HttpEntity<>(authorized(new HttpHeaders())), String.class));
+            // Give the poll time to start waiting; an early write is answered straight away too
+            Thread.sleep(200);
+            post(leaderUrl + "/catalog/movies/2/reviews", "{\"userName\": \"Lookout\", "
+                + "\"avatarEmoji\": \"🔭\", \"rating\": 4.0, \"comment\": \"Sail ho!\"}");
+
+            JSONObject response = new JSONObject(poll.get(10, TimeUnit.SECONDS).getBody());
+            assertEquals(since + 1, response.getLong("version"));
+            assertEquals("Lookout", response.getJSONArray("changes").getJSONObject(0)
+                .getJSONObject("review").getString("userName"));
+        } finally {
+            poller.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Waiting polls should be woken after the change log's lock is released")
+    public void testWaitersRunWithoutTheLock() {
+        MovieService movieService = new MovieService();
+        CatalogChangeLog changeLog = new CatalogChangeLog(movieService, new ReviewService(), 10);
+        try {
+            AtomicBoolean woken = new AtomicBoolean();
+            AtomicBoolean heldLock = new AtomicBoolean();
+            Runnable waiter = () -> {
+                woken.set(true);
+                heldLock.set(Thread.holdsLock(changeLog));
+            };
+            assertTrue(changeLog.awaitChangesAfter(0, waiter));
+            assertFalse(changeLog.awaitChangesAfter(1, () -> { }));
+
+            changeLog.addReview(1L, new Review("Lookout", "x", 4.0, "Land ho"));
+            assertTrue(woken.get());
+            assertFalse(heldLock.get());
+            assertFalse(changeLog.awaitChangesAfter(0, waiter));
+        } finally {
+            movieService.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Nodes should be read-only unless started as the leader")
+    public void testReadOnlyByDefault() {
+        MovieService movieService = new MovieService();
+        try {
+            CatalogSyncController controller = new CatalogSyncController();
+            ReflectionTestUtils.setField(controller, "changeLog",
+                new CatalogChangeLog(movieService, new ReviewService(), 10));
+            ReflectionTestUtils.setField(controller, "writeToken", "");
+            controller.checkRole();
+
+            ResponseEntity<String> response = controller.removeMovie("Bearer anything", 1L);
+            assertEquals(403, response.getStatusCodeValue());
+            assertTrue(movieService.getMovieById(1L).isPresent());
+
+            ReflectionTestUtils.setField(controller, "leader", true);
+            assertThrows(IllegalStateException.class, controller::checkRole);
+        } finally {
+            movieService.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Change log should ask callers to resync once their changes are trimmed")
+    public void testChangeLogRequestsResyncWhenTrimmed() {
+        MovieService movieService = new MovieService();
+        CatalogChangeLog changeLog = new CatalogChangeLog(movieService, new ReviewService(), 2);
+        try {
+            for (int i = 0; i < 3; i++) {
+                changeLog.addReview(1L, new Review("User" + i, "x", 3.0, "Comment " + i));
+            }
+
+            assertNull(changeLog.changesSince(0, 100));
+            List<CatalogChange> recent = changeLog.changesSince(1, 100);
+            assertEquals(2, recent.size());
+            assertEquals(3, recent.get(1).getVersion());
+            assertTrue(changeLog.changesSince(3, 100).isEmpty());
+        } finally {
+            movieService.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Version reads and snapshots should not wait for the change log's lock")
+    public void testVersionReadsDoNotTakeTheLock() throws Exception {
+        MovieService movieService = new MovieService();
+        CatalogChangeLog changeLog = new CatalogChangeLog(movieService, new ReviewService(), 10);
+        changeLog.addReview(1L, new Review("Lookout", "x", 4.0, "Land ho"));
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            synchronized (changeLog) {
+                locked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        writer.start();
+        try {
+            assertTrue(locked.await(5, TimeUnit.SECONDS));
+            ExecutorService reader = Executors.newSingleThreadExecutor();
+            try {
+                assertEquals(1L, reader.submit(changeLog::getVersion).get(5, TimeUnit.SECONDS));
+            } finally {
+                reader.shutdownNow();
+            }
+        } finally {
+            release.countDown();
+            writer.join();
+        }
+
+        JSONObject snapshot = changeLog.snapshotToJson();
+        assertEquals(1L, snapshot.getLong("version"));
+        assertEquals(movieService.getAllMovies().size(), snapshot.getJSONArray("movies").length());
+        movieService.shutdown();
+    }
+
+    private void post(String url, String json) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        restTemplate.postForObject(url, new HttpEntity<>(json, authorized(headers)), String.class);
+    }
+
+    private static HttpHeaders authorized(HttpHeaders headers) {
+        headers.setBearerAuth(WRITE_TOKEN);
+        return headers;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for replication");
+            Thread.sleep(20);
+        }
+    }
+}
@@ -4,7 +4,12 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -199,4 +204,169 @@ public class MovieServiceTest {
         assertNotNull(noResults);
         assertTrue(noResults.isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should stop collecting results once the limit is reached")
+    public void testSearchMovies_WithLimit() {
+        List<Movie> results = movieService.searchMovies(null, null, "drama", 2);
+
+        assertNotNull(results);
+        assertEquals(2, results.size());
+    }
+
+    @Test
+    @DisplayName("Parallel scan should return the same movies as a sequential scan")
+    public void testSearchMovies_ParallelScanMatchesSequential() {
+        List<Movie> catalog = syntheticCatalog(5_000);
+        MovieService sequential = new MovieService(catalog);
+        MovieService parallel = new MovieService(catalog);
+        parallel.setParallelThreshold(100);
+        parallel.setScanChunkSize(64);
+
+        try {
+            List<Movie> expected = sequential.searchMovies("movie 1", null, "drama");
+            List<Movie> actual = parallel.searchMovies("movie 1", null, "drama");
+
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getId(), actual.get(i).getId());
+            }
+
+            // A limited parallel scan still returns the first matches in catalog order
+            List<Movie> firstMatches = sequential.searchMovies(null, null, "drama", 10);
+            List<Movie> limited = parallel.searchMovies(null, null, "drama", 10);
+            assertEquals(10, limited.size());
+            for (int i = 0; i < firstMatches.size(); i++) {
+                assertEquals(firstMatches.get(i).getId(), limited.get(i).getId());
+            }
+        } finally {
+            sequential.shutdown();
+            parallel.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should match names and genres ignoring case and accents")
+    public void testSearchMovies_AccentInsensitive() {
+        MovieService service = new MovieService(java.util.Arrays.asList(
+            new Movie(1L, "Amélie's Café", "Jean Réalisateur", 2001, "Comédie/Romance", "A whimsical tale", 122, 4.5),
+            new Movie(2L, "Cafeteria Nights", "Someone Else", 2010, "Drama", "Late shifts", 100, 3.5)
+        ));
+
+        try {
+            assertEquals(2, service.searchMovies("CAFE", null, null).size());
+            assertEquals(1, service.searchMovies("café", null, "comedie").size());
+            assertEquals(1L, service.searchMovies("amelie", null, null).get(0).getId());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Applied changes should keep catalog order and match a catalog built from scratch")
+    public void testApplyChanges_MatchesRebuiltCatalog() {
+        List<Movie> catalog = syntheticCatalog(3_000);
+        MovieService service = new MovieService(catalog);
+        Map<Long, Movie> expected = new LinkedHashMap<>();
+        for (Movie movie : catalog) {
+            expected.put(movie.getId(), movie);
+        }
+
+        try {
+            // Replace, remove, add and re-add, across enough batches to compact the delta at least once
+            for (int batch = 0; batch < 600; batch++) {
+                long replacedId = 1 + (batch * 7) % 3_000;
+                long removedId = 1 + (batch * 13 + 5) % 3_000;
+                Movie replacement = new Movie(replacedId, "Voyage Redux " + batch, "Director", 2024, "Drama",
+                    "Replaced", 100, 4.0);
+                Movie addition = new Movie(10_000 + batch, "Voyage Added " + batch, "Director", 2024, "Comedy",
+                    "Added", 100, 4.0);
+                service.applyChanges(Arrays.asList(replacement, addition), Collections.singletonList(removedId));
+                expected.remove(removedId);
+                expected.put(replacedId, replacement);
+                expected.put(addition.getId(), addition);
+            }
+
+            assertEquals(ids(new ArrayList<>(expected.values())), ids(service.getAllMovies()));
+            MovieService rebuilt = new MovieService(new ArrayList<>(expected.values()));
+            try {
+                assertEquals(ids(rebuilt.searchMovies("voyage", null, null)), ids(service.searchMovies("voyage", null, null)));
+                assertEquals(ids(rebuilt.searchMovies(null, null, "comedy")), ids(service.searchMovies(null, null, "comedy")));
+                assertEquals(rebuilt.getAllGenres(), service.getAllGenres());
+            } finally {
+                rebuilt.shutdown();
+            }
+            for (long id = 1; id <= 3_000; id++) {
+                assertEquals(expected.containsKey(id), service.getMovieById(id).isPresent());
+            }
+            assertEquals("Voyage Added 599", service.getMovieById(10_599L).get().getMovieName());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Refining a search should rescan only the previous results and match a full search")
+    public void testSearchRefining_NarrowsPreviousResults() {
+        MovieService service = new MovieService(syntheticCatalog(5_000));
+        service.setParallelThreshold(100);
+        service.setScanChunkSize(64);
+
+        try {
+            MovieService.RefinableSearch first = service.searchRefining("movie 1", null, null, null);
+            MovieService.RefinableSearch second = service.searchRefining("movie 12", null, null, first);
+            MovieService.RefinableSearch third = service.searchRefining("movie 12", null, "drama", second);
+
+            assertFalse(first.isRefined());
+            assertTrue(second.isRefined());
+            assertTrue(third.isRefined());
+            assertEquals(ids(service.searchMovies("movie 12", null, "drama")), ids(third.getMovies()));
+            assertEquals(third.getMovies().size(), third.size());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("A broader query or a changed catalog should scan the whole catalog again")
+    public void testSearchRefining_FallsBackToFullScan() {
+        MovieService service = new MovieService(syntheticCatalog(500));
+
+        try {
+            MovieService.RefinableSearch narrow = service.searchRefining("movie 12", null, null, null);
+            MovieService.RefinableSearch broader = service.searchRefining("movie 1", null, null, narrow);
+            assertFalse(broader.isRefined());
+            assertEquals(ids(service.searchMovies("movie 1", null, null)), ids(broader.getMovies()));
+
+            MovieService.RefinableSearch byId = service.searchRefining("movie 12", 12L, null, narrow);
+            assertTrue(byId.isRefined());
+            assertFalse(service.searchRefining("movie 12", null, null, byId).isRefined());
+
+            service.applyChanges(Collections.singletonList(
+                new Movie(9_999L, "Movie 12 Returns", "Director", 2024, "Drama", "Sequel", 100, 4.0)),
+                Collections.emptyList());
+            MovieService.RefinableSearch afterChange = service.searchRefining("movie 12", null, null, narrow);
+            assertFalse(afterChange.isRefined());
+            assertTrue(ids(afterChange.getMovies()).contains(9_999L));
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    private static List<Long> ids(List<Movie> movies) {
+        List<Long> ids = new ArrayList<>(movies.size());
+        for (Movie movie : movies) {
+            ids.add(movie.getId());
+        }
+        return ids;
+    }
+
+    private static List<Movie> syntheticCatalog(int size) {
+        List<Movie> catalog = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            catalog.add(new Movie(i, "Movie " + i, "Director " + (i % 50), 1950 + (i % 70),
+                i % 3 == 0 ? "Comedy" : "Crime/Drama", "Synthetic movie " + i, 90 + (i % 60), 3.0 + (i % 3)));
+        }
+        return catalog;
+    }
+}
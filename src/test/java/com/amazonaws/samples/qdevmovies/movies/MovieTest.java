@@ -1,11 +1,30 @@
 package com.amazonaws.samples.qdevmovies.movies;
 
+import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.*;
+
 public class MovieTest {
 
 	@Test
 	public void contextLoads() {
 	}
 
+	@Test
+	@DisplayName("Icon should come from an exact title rule first")
+	public void testGetIcon_TitleRule() {
+		Movie movie = new Movie(1L, "The Prison Escape", "John Director", 1994, "Drama", "Description", 142, 5.0);
+
+		assertEquals("🔒", movie.getIcon());
+	}
+
+	@Test
+	@DisplayName("Icon should fall back to keyword, then genre, then the default icon")
+	public void testGetIcon_KeywordGenreAndFallback() {
+		assertEquals("🚀", new Movie(20L, "Lost in Space", "D", 2000, "Drama", "d", 100, 3.0).getIcon());
+		assertEquals("😂", new Movie(21L, "Office Days", "D", 2000, "Comedy/Drama", "d", 100, 3.0).getIcon());
+		assertEquals("🎬", new Movie(22L, "Quiet Afternoon", "D", 2000, "Documentary", "d", 100, 3.0).getIcon());
+	}
+
 }
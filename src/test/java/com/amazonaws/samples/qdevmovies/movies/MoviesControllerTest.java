@@ -6,6 +6,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.springframework.ui.Model;
 import org.springframework.ui.ExtendedModelMap;
 import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -46,14 +47,14 @@ public class MoviesControllerTest {
             
             @Override
             public Optional<Movie> getMovieById(Long id) {
-                return testMovies.stream().filter(m -> m.getId().equals(id)).findFirst();
+                return testMovies.stream().filter(m -> id != null && m.getId() == id).findFirst();
             }
             
             @Override
             public List<Movie> searchMovies(String name, Long id, String genre) {
                 return testMovies.stream()
                     .filter(movie -> {
-                        if (id != null && !movie.getId().equals(id)) return false;
+                        if (id != null && movie.getId() != id) return false;
                         if (name != null && !name.trim().isEmpty() && 
                             !movie.getMovieName().toLowerCase().contains(name.toLowerCase().trim())) return false;
                         if (genre != null && !genre.trim().isEmpty() && 
@@ -85,6 +86,17 @@ public class MoviesControllerTest {
             java.lang.reflect.Field reviewServiceField = MoviesController.class.getDeclaredField("reviewService");
             reviewServiceField.setAccessible(true);
             reviewServiceField.set(moviesController, mockReviewService);
+            
+            RecommendationService recommendationService = new RecommendationService(mockMovieService, mockReviewService,
+                new CatalogChangeLog(mockMovieService, mockReviewService, 10), 5);
+            recommendationService.refresh().get();
+            java.lang.reflect.Field recommendationServiceField = MoviesController.class.getDeclaredField("recommendationService");
+            recommendationServiceField.setAccessible(true);
+            recommendationServiceField.set(moviesController, recommendationService);
+
+            java.lang.reflect.Field searchSessionCacheField = MoviesController.class.getDeclaredField("searchSessionCache");
+            searchSessionCacheField.setAccessible(true);
+            searchSessionCacheField.set(moviesController, new SearchSessionCache(100, 10_000, 30_000));
         } catch (Exception e) {
             throw new RuntimeException("Failed to inject mock services", e);
         }
@@ -189,6 +201,76 @@ public class MoviesControllerTest {
         
         assertNotNull(result);
         assertEquals("movie-details", result);
+        assertNotNull(model.getAttribute("similarMovies"));
+        assertNotNull(model.getAttribute("reviews"));
+    }
+
+    @Test
+    @DisplayName("REST API: Should page through a movie's reviews, best first")
+    public void testReviewsAPI_Paging() {
+        ResponseEntity<Map<String, Object>> first = moviesController.getReviews(1L, 2, null);
+        
+        assertEquals(200, first.getStatusCodeValue());
+        Map<String, Object> body = first.getBody();
+        assertTrue((Boolean) body.get("success"));
+        
+        @SuppressWarnings("unchecked")
+        List<Review> reviews = (List<Review>) body.get("reviews");
+        assertEquals(2, reviews.size());
+        assertTrue(reviews.get(0).getRating() >= reviews.get(1).getRating());
+        
+        String cursor = (String) body.get("nextCursor");
+        if (cursor != null) {
+            ResponseEntity<Map<String, Object>> second = moviesController.getReviews(1L, 2, cursor);
+            @SuppressWarnings("unchecked")
+            List<Review> nextReviews = (List<Review>) second.getBody().get("reviews");
+            assertTrue(nextReviews.get(0).getRating() <= reviews.get(1).getRating());
+        }
+    }
+
+    @Test
+    @DisplayName("REST API: Should reject bad review paging requests")
+    public void testReviewsAPI_Errors() {
+        assertEquals(404, moviesController.getReviews(999L, null, null).getStatusCodeValue());
+        assertEquals(400, moviesController.getReviews(1L, 0, null).getStatusCodeValue());
+        assertEquals(400, moviesController.getReviews(1L, 500, null).getStatusCodeValue());
+        assertEquals(400, moviesController.getReviews(1L, 5, "not-a-cursor").getStatusCodeValue());
+        assertEquals(400, moviesController.getReviews(1L, 5, "NaN_0").getStatusCodeValue());
+    }
+
+    @Test
+    @DisplayName("REST API: A configured review page size above the limit should be capped")
+    public void testReviewsAPI_PageSizeCapped() {
+        ReflectionTestUtils.setField(moviesController, "reviewPageSize", 500);
+
+        moviesController.getMovieDetails(1L, model);
+        assertEquals(100, model.getAttribute("reviewPageSize"));
+        assertEquals(200, moviesController.getReviews(1L, null, null).getStatusCodeValue());
+    }
+
+    @Test
+    @DisplayName("REST API: Should return similar movies without the movie itself")
+    public void testSimilarMoviesAPI_Success() {
+        ResponseEntity<Map<String, Object>> response = moviesController.getSimilarMovies(1L);
+        
+        assertEquals(200, response.getStatusCodeValue());
+        Map<String, Object> body = response.getBody();
+        assertNotNull(body);
+        assertTrue((Boolean) body.get("success"));
+        
+        @SuppressWarnings("unchecked")
+        List<Movie> movies = (List<Movie>) body.get("movies");
+        assertEquals(movies.size(), body.get("totalResults"));
+        assertTrue(movies.stream().noneMatch(movie -> movie.getId() == 1L));
+    }
+
+    @Test
+    @DisplayName("REST API: Should return 404 for similar movies of a non-existent movie")
+    public void testSimilarMoviesAPI_NotFound() {
+        ResponseEntity<Map<String, Object>> response = moviesController.getSimilarMovies(999L);
+        
+        assertEquals(404, response.getStatusCodeValue());
+        assertFalse((Boolean) response.getBody().get("success"));
     }
 
     @Test
@@ -205,7 +287,7 @@ public class MoviesControllerTest {
     @Test
     @DisplayName("REST API: Should return successful search results")
     public void testSearchMoviesAPI_Success() {
-        ResponseEntity<Map<String, Object>> response = moviesController.searchMovies("test", null, null);
+        ResponseEntity<Map<String, Object>> response = moviesController.searchMovies("test", null, null, null);
         
         assertNotNull(response);
         assertEquals(200, response.getStatusCodeValue());
@@ -223,7 +305,7 @@ public class MoviesControllerTest {
     @Test
     @DisplayName("REST API: Should return empty results with pirate message")
     public void testSearchMoviesAPI_NoResults() {
-        ResponseEntity<Map<String, Object>> response = moviesController.searchMovies("nonexistent", null, null);
+        ResponseEntity<Map<String, Object>> response = moviesController.searchMovies("nonexistent", null, null, null);
         
         assertNotNull(response);
         assertEquals(200, response.getStatusCodeValue());
@@ -241,7 +323,7 @@ public class MoviesControllerTest {
     @Test
     @DisplayName("REST API: Should return bad request for no search criteria")
     public void testSearchMoviesAPI_NoSearchCriteria() {
-        ResponseEntity<Map<String, Object>> response = moviesController.searchMovies(null, null, null);
+        ResponseEntity<Map<String, Object>> response = moviesController.searchMovies(null, null, null, null);
         
         assertNotNull(response);
         assertEquals(400, response.getStatusCodeValue());
@@ -258,7 +340,7 @@ public class MoviesControllerTest {
     @Test
     @DisplayName("REST API: Should return bad request for invalid ID")
     public void testSearchMoviesAPI_InvalidId() {
-        ResponseEntity<Map<String, Object>> response = moviesController.searchMovies(null, -1L, null);
+        ResponseEntity<Map<String, Object>> response = moviesController.searchMovies(null, -1L, null, null);
         
         assertNotNull(response);
         assertEquals(400, response.getStatusCodeValue());
@@ -275,7 +357,7 @@ public class MoviesControllerTest {
     @Test
     @DisplayName("REST API: Should include search criteria in response")
     public void testSearchMoviesAPI_IncludesSearchCriteria() {
-        ResponseEntity<Map<String, Object>> response = moviesController.searchMovies("test", 1L, "drama");
+        ResponseEntity<Map<String, Object>> response = moviesController.searchMovies("test", 1L, "drama", null);
         
         assertNotNull(response);
         assertEquals(200, response.getStatusCodeValue());
@@ -294,7 +376,7 @@ public class MoviesControllerTest {
     @Test
     @DisplayName("REST API: Should handle empty string parameters correctly")
     public void testSearchMoviesAPI_EmptyStringParameters() {
-        ResponseEntity<Map<String, Object>> response = moviesController.searchMovies("", null, "");
+        ResponseEntity<Map<String, Object>> response = moviesController.searchMovies("", null, "", null);
         
         assertNotNull(response);
         assertEquals(400, response.getStatusCodeValue());
@@ -304,6 +386,45 @@ public class MoviesControllerTest {
         assertFalse((Boolean) body.get("success"));
     }
 
+    @Test
+    @DisplayName("REST API: Memory report should count only references held by the catalog")
+    @SuppressWarnings("unchecked")
+    public void testMemoryReport_CountsLiveReferences() {
+        int catalogSize = new MovieService().getAllMovies().size();
+        // Parsed and dropped, as the coordinator and followers do with remote movies
+        for (int i = 0; i < 100; i++) {
+            new Movie(1_000L + i, "Dropped", "Test Director", 2023, "Drama", "d", 100, 4.0);
+        }
+
+        ResponseEntity<Map<String, Object>> response = moviesController.getMemoryReport();
+
+        Map<String, Object> symbolTables = (Map<String, Object>) response.getBody().get("symbolTables");
+        Map<String, Object> genres = (Map<String, Object>) symbolTables.get("genres");
+        assertEquals((long) catalogSize, genres.get("references"));
+        Map<String, Object> directors = (Map<String, Object>) symbolTables.get("directors");
+        assertEquals((long) catalogSize, directors.get("references"));
+        assertTrue(symbolTables.containsKey("reviewerNames"));
+        assertTrue(symbolTables.containsKey("avatars"));
+    }
+
+    @Test
+    @DisplayName("REST API: Keystrokes in a search session should refine the previous results")
+    public void testSearchMoviesAPI_SessionRefinement() {
+        ResponseEntity<Map<String, Object>> first = moviesController.searchMovies("th", null, null, "tab-1");
+        ResponseEntity<Map<String, Object>> second = moviesController.searchMovies("the", null, null, "tab-1");
+        ResponseEntity<Map<String, Object>> otherSession = moviesController.searchMovies("the", null, null, "tab-2");
+
+        assertEquals(200, second.getStatusCodeValue());
+        assertEquals(false, first.getBody().get("refined"));
+        assertEquals(true, second.getBody().get("refined"));
+        assertEquals("tab-1", second.getBody().get("session"));
+        assertEquals(false, otherSession.getBody().get("refined"));
+        assertEquals(otherSession.getBody().get("totalResults"), second.getBody().get("totalResults"));
+
+        ResponseEntity<Map<String, Object>> blankSession = moviesController.searchMovies("the", null, null, " ");
+        assertEquals(400, blankSession.getStatusCodeValue());
+    }
+
     @Test
     @DisplayName("Should integrate with movie service correctly")
     public void testMovieServiceIntegration() {
@@ -0,0 +1,121 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for similar-movie recommendations
+ * Arrr! Ships of a feather sail together!
+ */
+public class RecommendationServiceTest {
+
+    private RecommendationService recommendationService;
+
+    @AfterEach
+    public void tearDown() {
+        if (recommendationService != null) {
+            recommendationService.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should rank movies sharing genres and a director above looser matches")
+    public void testRanksByGenreAndDirector() throws Exception {
+        recommendationService = start(Arrays.asList(
+            new Movie(1001L, "Harbour Heist", "Captain Reed", 1994, "Crime/Drama", "d", 120, 4.5),
+            new Movie(1002L, "Dockside Thriller", "Captain Reed", 1995, "Crime/Thriller", "d", 110, 4.0),
+            new Movie(1003L, "Quiet Lighthouse", "Another Director", 1990, "Drama", "d", 100, 3.5),
+            new Movie(1004L, "Parrot Party", "Funny Director", 2020, "Comedy", "d", 90, 3.0)
+        ), new ReviewService(), 5);
+
+        assertEquals(Arrays.asList(1002L, 1003L), ids(recommendationService.getSimilarMovies(1001L)));
+        assertTrue(recommendationService.getSimilarMovies(1004L).isEmpty());
+        assertTrue(recommendationService.getSimilarMovies(999_999L).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should return at most K similar movies")
+    public void testTopKBound() throws Exception {
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            movies.add(new Movie(2000L + i, "Drama " + i, "Director " + i, 2000 + i, "Drama", "d", 100, 4.0));
+        }
+        recommendationService = start(movies, new ReviewService(), 3);
+
+        List<Movie> similar = recommendationService.getSimilarMovies(2010L);
+
+        assertEquals(3, similar.size());
+        assertFalse(ids(similar).contains(2010L));
+        // Same genre everywhere, so the closest release years win
+        assertTrue(ids(similar).containsAll(Arrays.asList(2009L, 2011L)));
+    }
+
+    @Test
+    @DisplayName("Should score only the nearest-year candidates of a facet shared by the whole catalog")
+    public void testCandidateCapKeepsNearestYears() throws Exception {
+        List<Movie> movies = new ArrayList<>();
+        // Catalog order is not year order, so the cap has to pick by year
+        for (int i = 0; i < 2_000; i++) {
+            int year = 1000 + (i * 7919) % 2_000;
+            movies.add(new Movie(4000L + year, "Drama " + year, "Director " + i, year, "Drama", "d", 100, 4.0));
+        }
+        MovieService movieService = new MovieService(movies);
+        ReviewService reviewService = new ReviewService();
+        recommendationService = new RecommendationService(movieService, reviewService,
+            new CatalogChangeLog(movieService, reviewService, 100), 3, 10);
+        recommendationService.refresh().get();
+
+        List<Long> similar = ids(recommendationService.getSimilarMovies(4000L + 1500));
+        assertEquals(3, similar.size());
+        assertTrue(similar.containsAll(Arrays.asList(4000L + 1499, 4000L + 1501)));
+        // At the edge of the year range the window shifts instead of shrinking
+        List<Long> oldest = ids(recommendationService.getSimilarMovies(4000L + 1000));
+        assertEquals(Arrays.asList(4000L + 1001, 4000L + 1002, 4000L + 1003), oldest);
+    }
+
+    @Test
+    @DisplayName("Should rebuild in the background when reviews link two movies by co-rating")
+    public void testRebuildsAfterCoRating() throws Exception {
+        MovieService movieService = new MovieService(Arrays.asList(
+            new Movie(3001L, "Dusty Trail", "Western Director", 1960, "Western", "d", 100, 4.0),
+            new Movie(3002L, "Singing Sails", "Musical Director", 2010, "Musical", "d", 100, 4.0)
+        ));
+        ReviewService reviewService = new ReviewService();
+        CatalogChangeLog changeLog = new CatalogChangeLog(movieService, reviewService, 100);
+        recommendationService = new RecommendationService(movieService, reviewService, changeLog, 5);
+        recommendationService.refresh().get();
+        assertTrue(recommendationService.getSimilarMovies(3001L).isEmpty());
+
+        changeLog.addReview(3001L, new Review("CoRatingTester", "🤠", 5.0, "Yeehaw"));
+        changeLog.addReview(3002L, new Review("CoRatingTester", "🤠", 4.5, "Lovely tunes"));
+        changeLog.addReview(3002L, new Review("LowRatingTester", "🙁", 1.0, "Not for me"));
+
+        // The stale lists are still served while the rebuild runs
+        recommendationService.getSimilarMovies(3001L);
+        recommendationService.refresh().get();
+
+        assertEquals(changeLog.getVersion(), (long) recommendationService.getIndexedVersion().get());
+        assertEquals(Arrays.asList(3002L), ids(recommendationService.getSimilarMovies(3001L)));
+    }
+
+    private static RecommendationService start(List<Movie> movies, ReviewService reviewService, int topK)
+            throws Exception {
+        MovieService movieService = new MovieService(movies);
+        RecommendationService service = new RecommendationService(movieService, reviewService,
+            new CatalogChangeLog(movieService, reviewService, 100), topK);
+        service.refresh().get();
+        return service;
+    }
+
+    private static List<Long> ids(List<Movie> movies) {
+        return movies.stream().map(Movie::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,170 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Tests for per-request span tracing
+ * Arrr! Every leg of the voyage be logged in the captain's book!
+ */
+public class RequestTracingTest {
+
+    private static ConfigurableApplicationContext app;
+    private static String baseUrl;
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    @BeforeAll
+    public static void startApp() {
+        app = new SpringApplicationBuilder(MoviesApplication.class)
+            .run("--server.port=0", "--movies.tracing.sample-rate=1", "--movies.tracing.exporter=memory");
+        baseUrl = "http://localhost:" + app.getEnvironment().getProperty("local.server.port");
+    }
+
+    @AfterAll
+    public static void stopApp() {
+        app.close();
+    }
+
+    @Test
+    @DisplayName("Spans should nest in opening order and be summed per stage in Server-Timing")
+    public void testSpansAndServerTiming() {
+        RequestTrace trace = new RequestTrace("GET", "/movies/1/details", null, true);
+        trace.bind();
+        try (RequestTrace.Span controller = RequestTrace.span("controller")) {
+            RequestTrace.span("movie-lookup").close();
+            RequestTrace.span("movie-lookup").close();
+        } finally {
+            trace.unbind();
+        }
+        trace.finish(200);
+
+        assertEquals(4, trace.spanCount());
+        assertEquals(trace.spanIdHex(1), trace.parentSpanIdHex(2));
+        assertEquals(trace.spanIdHex(0), trace.parentSpanIdHex(1));
+        assertEquals("", trace.parentSpanIdHex(0));
+        String serverTiming = trace.serverTiming();
+        assertTrue(serverTiming.startsWith("controller;dur="));
+        assertEquals(1, serverTiming.split("movie-lookup;dur=").length - 1);
+        assertTrue(serverTiming.contains("total;dur="));
+        // Outside a traced request spans are no-ops
+        RequestTrace.span("ignored").close();
+    }
+
+    @Test
+    @DisplayName("Incoming W3C traceparent should be continued")
+    public void testTraceparentContinued() {
+        RequestTrace trace = new RequestTrace("GET", "/movies",
+            "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01", false);
+        trace.finish(200);
+
+        assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", trace.traceIdHex());
+        assertEquals("00f067aa0ba902b7", trace.parentSpanIdHex(0));
+        assertTrue(trace.isSampled());
+
+        JSONObject span = trace.toOtlpJson("movie-service").getJSONArray("resourceSpans").getJSONObject(0)
+            .getJSONArray("scopeSpans").getJSONObject(0).getJSONArray("spans").getJSONObject(0);
+        assertEquals("GET /movies", span.getString("name"));
+        assertEquals(2, span.getInt("kind"));
+        assertEquals("00f067aa0ba902b7", span.getString("parentSpanId"));
+    }
+
+    @Test
+    @DisplayName("Long polls and streams should never be exported as slow requests")
+    public void testLongRunningRequestsNotSlow() {
+        InMemoryTraceExporter exporter = new InMemoryTraceExporter(10);
+        TraceRecorder recorder = new TraceRecorder(0, 0, 5, exporter);
+
+        RequestTrace longPoll = new RequestTrace("GET", "/catalog/changes", null, false);
+        longPoll.bind();
+        try {
+            RequestTrace.markLongRunning();
+        } finally {
+            longPoll.unbind();
+        }
+        longPoll.finish(200);
+        recorder.finish(longPoll);
+        assertTrue(recorder.recentTraces(10).isEmpty());
+
+        RequestTrace search = new RequestTrace("GET", "/movies/search", null, false);
+        search.finish(200);
+        recorder.finish(search);
+        assertEquals(1, recorder.recentTraces(10).size());
+    }
+
+    @Test
+    @DisplayName("Details page should carry Server-Timing and export controller, service and render spans")
+    public void testDetailsRequestTraced() {
+        ResponseEntity<String> response = restTemplate.exchange(baseUrl + "/movies/1/details", HttpMethod.GET,
+            new HttpEntity<>(new HttpHeaders()), String.class);
+
+        String serverTiming = response.getHeaders().getFirst("Server-Timing");
+        assertNotNull(serverTiming);
+        assertTrue(serverTiming.contains("controller;dur="));
+        assertTrue(serverTiming.contains("movie-lookup;dur="));
+        assertTrue(serverTiming.contains("review-lookup;dur="));
+
+        JSONObject traces = new JSONObject(restTemplate.getForObject(baseUrl + "/tracing/traces?limit=50", String.class));
+        Set<String> spanNames = new HashSet<>();
+        JSONArray resourceSpans = traces.getJSONArray("resourceSpans");
+        for (int i = 0; i < resourceSpans.length(); i++) {
+            JSONArray spans = resourceSpans.getJSONObject(i).getJSONArray("scopeSpans").getJSONObject(0)
+                .getJSONArray("spans");
+            if (spans.getJSONObject(0).getString("name").equals("GET /movies/1/details")) {
+                for (int j = 0; j < spans.length(); j++) {
+                    spanNames.add(spans.getJSONObject(j).getString("name"));
+                }
+            }
+        }
+        assertTrue(spanNames.contains("controller"));
+        assertTrue(spanNames.contains("movie-lookup"));
+        assertTrue(spanNames.contains("review-lookup"));
+        assertTrue(spanNames.contains("similar-lookup"));
+        assertTrue(spanNames.contains("render"));
+    }
+
+    @Test
+    @DisplayName("JSON endpoints should carry Server-Timing although their body is written by the handler")
+    public void testJsonResponsesCarryServerTiming() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) app)
+            .addFilters(app.getBean("requestTracingFilter", FilterRegistrationBean.class).getFilter())
+            .build();
+
+        MvcResult similar = mockMvc.perform(get("/movies/1/similar")).andReturn();
+        assertEquals(200, similar.getResponse().getStatus());
+        assertTrue(similar.getResponse().isCommitted());
+        String serverTiming = similar.getResponse().getHeader("Server-Timing");
+        assertNotNull(serverTiming);
+        assertTrue(serverTiming.contains("controller;dur="));
+        assertTrue(serverTiming.contains("similar-lookup;dur="));
+
+        MvcResult search = mockMvc.perform(get("/movies/search").param("name", "the")).andReturn();
+        assertEquals(200, search.getResponse().getStatus());
+        assertTrue(search.getResponse().getHeader("Server-Timing").contains("movie-search;dur="));
+
+        // And over a real connection, where the committed response is what the client sees
+        ResponseEntity<String> served = restTemplate.getForEntity(baseUrl + "/movies/1/similar", String.class);
+        assertNotNull(served.getHeaders().getFirst("Server-Timing"));
+    }
+}
@@ -0,0 +1,147 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for sorted, paged review retrieval
+ * Arrr! The finest tales from the crew be told first!
+ */
+public class ReviewServiceTest {
+
+    private static final long MOVIE_ID = 5_001L;
+    private ReviewService reviewService;
+
+    @BeforeEach
+    public void setUp() {
+        reviewService = new ReviewService();
+        reviewService.replaceAllReviews(Collections.singletonMap(MOVIE_ID, Arrays.asList(
+            review("first-3.0", 3.0),
+            review("second-5.0", 5.0),
+            review("third-4.0", 4.0),
+            review("fourth-5.0", 5.0),
+            review("fifth-3.0", 3.0)
+        )));
+    }
+
+    @Test
+    @DisplayName("Reviews should be ordered by rating, then most recent first")
+    public void testSortedByRatingThenRecency() {
+        assertEquals(Arrays.asList("fourth-5.0", "second-5.0", "third-4.0", "fifth-3.0", "first-3.0"),
+            names(reviewService.getReviewsForMovie(MOVIE_ID)));
+    }
+
+    @Test
+    @DisplayName("Keyset pages should cover every review exactly once")
+    public void testKeysetPagination() {
+        ReviewService.ReviewPage first = reviewService.getReviewPage(MOVIE_ID, null, 2);
+        ReviewService.ReviewPage second = reviewService.getReviewPage(MOVIE_ID, first.getNextCursor(), 2);
+        ReviewService.ReviewPage third = reviewService.getReviewPage(MOVIE_ID, second.getNextCursor(), 2);
+
+        assertEquals(Arrays.asList("fourth-5.0", "second-5.0"), names(first.getReviews()));
+        assertEquals(Arrays.asList("third-4.0", "fifth-3.0"), names(second.getReviews()));
+        assertEquals(Arrays.asList("first-3.0"), names(third.getReviews()));
+        assertNull(third.getNextCursor());
+        assertEquals(5, first.getTotalReviews());
+    }
+
+    @Test
+    @DisplayName("A review added between page reads should not shift later pages")
+    public void testPagesStableUnderInsertion() {
+        ReviewService.ReviewPage first = reviewService.getReviewPage(MOVIE_ID, null, 2);
+        reviewService.addReview(MOVIE_ID, review("new-5.0", 5.0));
+        reviewService.addReview(MOVIE_ID, review("new-3.5", 3.5));
+
+        ReviewService.ReviewPage second = reviewService.getReviewPage(MOVIE_ID, first.getNextCursor(), 2);
+
+        assertEquals(Arrays.asList("third-4.0", "new-3.5"), names(second.getReviews()));
+        assertEquals("new-5.0", reviewService.getReviewsForMovie(MOVIE_ID).get(0).getUserName());
+    }
+
+    @Test
+    @DisplayName("Snapshots should keep reviews in arrival order so recency survives replication")
+    public void testArrivalOrderPreserved() {
+        reviewService.addReview(MOVIE_ID, review("sixth-1.0", 1.0));
+
+        assertEquals(Arrays.asList("first-3.0", "second-5.0", "third-4.0", "fourth-5.0", "fifth-3.0", "sixth-1.0"),
+            names(reviewService.getAllReviews().get(MOVIE_ID)));
+    }
+
+    @Test
+    @DisplayName("Large review sets should page quickly and reject malformed cursors")
+    public void testLargeSetAndBadCursor() {
+        List<Review> many = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            many.add(review("reviewer-" + i, 1 + (i % 9) / 2.0));
+        }
+        reviewService.replaceAllReviews(Collections.singletonMap(MOVIE_ID, many));
+
+        int seen = 0;
+        String cursor = null;
+        do {
+            ReviewService.ReviewPage page = reviewService.getReviewPage(MOVIE_ID, cursor, 100);
+            seen += page.getReviews().size();
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(20_000, seen);
+        assertThrows(IllegalArgumentException.class, () -> reviewService.getReviewPage(MOVIE_ID, "garbage", 10));
+        assertThrows(IllegalArgumentException.class, () -> reviewService.getReviewPage(MOVIE_ID, "NaN_0", 10));
+        assertThrows(IllegalArgumentException.class, () -> reviewService.getReviewPage(MOVIE_ID, "Infinity_0", 10));
+        assertTrue(reviewService.getReviewPage(999_999L, null, 10).getReviews().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Readers should never see a mix of the old and new reviews during a resync")
+    public void testReplaceAllIsAtomic() throws InterruptedException {
+        Map<Long, List<Review>> port = new HashMap<>();
+        port.put(1L, Collections.singletonList(review("port-1", 4.0)));
+        port.put(2L, Collections.singletonList(review("port-2", 4.0)));
+        Map<Long, List<Review>> starboard = new HashMap<>();
+        starboard.put(3L, Collections.singletonList(review("starboard-3", 4.0)));
+        starboard.put(4L, Collections.singletonList(review("starboard-4", 4.0)));
+        reviewService.replaceAllReviews(port);
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Set<Long>> mixed = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                Set<Long> seen = reviewService.getAllReviews().keySet();
+                if (!seen.equals(port.keySet()) && !seen.equals(starboard.keySet())) {
+                    mixed.compareAndSet(null, new HashSet<>(seen));
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 2_000; i++) {
+            reviewService.replaceAllReviews(i % 2 == 0 ? starboard : port);
+        }
+        done.set(true);
+        reader.join();
+
+        assertNull(mixed.get(), "Saw movies from both review sets: " + mixed.get());
+    }
+
+    private static Review review(String userName, double rating) {
+        return new Review(userName, "👤", rating, "Comment from " + userName);
+    }
+
+    private static List<String> names(List<Review> reviews) {
+        return reviews.stream().map(Review::getUserName).collect(Collectors.toList());
+    }
+}
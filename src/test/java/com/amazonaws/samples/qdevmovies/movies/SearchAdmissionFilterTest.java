@@ -0,0 +1,108 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for search admission control
+ * Arrr! Only so many sailors fit through the gangplank at once!
+ */
+public class SearchAdmissionFilterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    @DisplayName("Rate limiter should allow a burst, then refill at the configured rate")
+    public void testRateLimiter_BurstThenRefill() {
+        ClientRateLimiter limiter = new ClientRateLimiter(2, 3, 64);
+
+        assertEquals(0, limiter.tryAcquire("client", 0));
+        assertEquals(0, limiter.tryAcquire("client", 0));
+        assertEquals(0, limiter.tryAcquire("client", 0));
+        long wait = limiter.tryAcquire("client", 0);
+        assertEquals(SECOND / 2, wait);
+
+        assertEquals(0, limiter.tryAcquire("client", SECOND / 2));
+        assertTrue(limiter.tryAcquire("client", SECOND / 2) > 0);
+    }
+
+    @Test
+    @DisplayName("Rate limiter should track clients independently")
+    public void testRateLimiter_IndependentClients() {
+        ClientRateLimiter limiter = new ClientRateLimiter(1, 1, 4096);
+
+        assertEquals(0, limiter.tryAcquire("alice", 0));
+        assertTrue(limiter.tryAcquire("alice", 0) > 0);
+        assertEquals(0, limiter.tryAcquire("bob", 0));
+    }
+
+    @Test
+    @DisplayName("Filter should answer 429 with Retry-After once a client's bucket is empty")
+    public void testFilter_RateLimited() throws Exception {
+        SearchAdmissionFilter filter = new SearchAdmissionFilter(new ClientRateLimiter(1, 1, 4096), 4, 50, "X-Api-Key");
+
+        MockHttpServletResponse first = doFilter(filter, "key-1", new MockFilterChain());
+        MockHttpServletResponse second = doFilter(filter, "key-1", new MockFilterChain());
+        MockHttpServletResponse otherClient = doFilter(filter, "key-2", new MockFilterChain());
+
+        assertEquals(200, first.getStatus());
+        assertEquals(429, second.getStatus());
+        assertEquals("1", second.getHeader("Retry-After"));
+        assertTrue(second.getContentAsString().contains("\"success\":false"));
+        assertEquals(200, otherClient.getStatus());
+    }
+
+    @Test
+    @DisplayName("Filter should shed load with 503 when no execution slot frees up in time")
+    public void testFilter_ShedsWhenSaturated() throws Exception {
+        SearchAdmissionFilter filter = new SearchAdmissionFilter(new ClientRateLimiter(1000, 1000, 64), 1, 20, null);
+        CountDownLatch inFlight = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FilterChain slowChain = (request, response) -> {
+            inFlight.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        Thread slowRequest = new Thread(() -> {
+            try {
+                doFilter(filter, null, slowChain);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        slowRequest.start();
+        assertTrue(inFlight.await(5, TimeUnit.SECONDS));
+
+        MockHttpServletResponse shed = doFilter(filter, null, new MockFilterChain());
+        release.countDown();
+        slowRequest.join();
+
+        assertEquals(503, shed.getStatus());
+        assertNotNull(shed.getHeader("Retry-After"));
+        assertEquals(200, doFilter(filter, null, new MockFilterChain()).getStatus());
+    }
+
+    private static MockHttpServletResponse doFilter(SearchAdmissionFilter filter, String apiKey, FilterChain chain)
+            throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/movies/search");
+        if (apiKey != null) {
+            request.addHeader("X-Api-Key", apiKey);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+}
@@ -0,0 +1,91 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the bounded search-as-you-type session cache
+ * Arrr! Only the freshest charts be kept in the captain's drawer!
+ */
+public class SearchSessionCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private MovieService movieService;
+
+    @BeforeEach
+    public void setUp() {
+        List<Movie> catalog = new ArrayList<>();
+        for (long id = 1; id <= 100; id++) {
+            catalog.add(new Movie(id, "Movie " + id, "Director", 2000, "Drama", "Synthetic", 100, 4.0));
+        }
+        movieService = new MovieService(catalog);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        movieService.shutdown();
+    }
+
+    @Test
+    @DisplayName("Sessions idle longer than the TTL should expire")
+    public void testIdleSessionsExpire() {
+        SearchSessionCache cache = new SearchSessionCache(10, 1_000, 1_000, now::get);
+        cache.put("a", search("movie"));
+
+        now.set(999);
+        assertNotNull(cache.get("a"));
+        now.set(1_998);
+        assertNotNull(cache.get("a"), "a read should restart the idle timer");
+        now.set(2_998);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.cachedRows());
+    }
+
+    @Test
+    @DisplayName("Least recently used sessions should be evicted to stay within the row budget")
+    public void testRowBudgetEvictsLeastRecentlyUsed() {
+        SearchSessionCache cache = new SearchSessionCache(10, 130, 60_000, now::get);
+        cache.put("a", search("movie"));
+        cache.put("b", search("movie 1"));
+        cache.put("c", search("movie 2"));
+        cache.get("a");
+        cache.put("d", search("movie 3"));
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertTrue(cache.cachedRows() <= 130);
+
+        cache.put("a", search("movie 4"));
+        assertTrue(cache.cachedRows() <= 130);
+    }
+
+    @Test
+    @DisplayName("Searches larger than the whole budget and sessions beyond the limit should not be kept")
+    public void testLimits() {
+        SearchSessionCache cache = new SearchSessionCache(2, 50, 60_000, now::get);
+        cache.put("big", search("movie"));
+        assertNull(cache.get("big"));
+
+        cache.put("a", search("movie 1"));
+        cache.put("b", search("movie 2"));
+        cache.put("c", search("movie 3"));
+        assertEquals(2, cache.size());
+        assertNull(cache.get("a"));
+
+        assertThrows(IllegalArgumentException.class, () -> SearchSessionCache.checkSession(""));
+        assertThrows(IllegalArgumentException.class,
+            () -> SearchSessionCache.checkSession(new String(new char[SearchSessionCache.MAX_SESSION_LENGTH + 1])));
+    }
+
+    private MovieService.RefinableSearch search(String name) {
+        return movieService.searchRefining(name, null, null, null);
+    }
+}
@@ -0,0 +1,202 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Scatter-gather tests against two catalog shards running on localhost.
+ * Arrr! Two ships sailin' together, each carryin' half the treasure!
+ */
+public class ShardedSearchCoordinatorTest {
+
+    private static final List<ConfigurableApplicationContext> shards = new ArrayList<>();
+    private static final List<String> shardUrls = new ArrayList<>();
+    // Long enough that the healthy shard always answers in time; only the stalled one misses it
+    private static final long STALL_DEADLINE_MILLIS = 5_000;
+
+    @BeforeAll
+    public static void startShards() {
+        for (int index = 0; index < 2; index++) {
+            ConfigurableApplicationContext shard = new SpringApplicationBuilder(MoviesApplication.class)
+                .run("--server.port=0", "--movies.shard.count=2", "--movies.shard.index=" + index);
+            shards.add(shard);
+            shardUrls.add("http://localhost:" + shard.getEnvironment().getProperty("local.server.port"));
+        }
+    }
+
+    @AfterAll
+    public static void stopShards() {
+        for (ConfigurableApplicationContext shard : shards) {
+            shard.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Should merge matches from every shard in id order")
+    public void testSearch_MergesAllShards() {
+        ShardedSearchCoordinator coordinator = new ShardedSearchCoordinator(
+            shardUrls.toArray(new String[0]), 5_000, 1_000);
+        try {
+            ShardedSearchCoordinator.ShardedSearchResult result = coordinator.search(null, null, "drama");
+
+            assertFalse(result.isPartial());
+            List<Movie> expected = new MovieService().searchMovies(null, null, "drama");
+            assertEquals(expected.size(), result.getMovies().size());
+            for (int i = 1; i < result.getMovies().size(); i++) {
+                assertTrue(result.getMovies().get(i - 1).getId() < result.getMovies().get(i).getId());
+            }
+        } finally {
+            coordinator.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep only the top-K merged results")
+    public void testSearch_TopK() {
+        ShardedSearchCoordinator coordinator = new ShardedSearchCoordinator(
+            shardUrls.toArray(new String[0]), 5_000, 3);
+        try {
+            ShardedSearchCoordinator.ShardedSearchResult result = coordinator.search(null, null, "drama");
+
+            assertEquals(3, result.getMovies().size());
+            assertEquals(1L, result.getMovies().get(0).getId());
+        } finally {
+            coordinator.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Top-K should match a single node even when each shard has more matches than K")
+    public void testSearch_TopKMatchesSingleNode() {
+        // Added in descending id order, so catalog order is the reverse of id order
+        List<Movie> added = new ArrayList<>();
+        List<Long> addedIds = new ArrayList<>();
+        for (long id = 1_040; id > 1_000; id--) {
+            added.add(new Movie(id, "Shanty " + id, "Director", 2024, "Sea Shanty", "Description", 100, 4.0));
+            addedIds.add(id);
+        }
+        MovieService singleNode = new MovieService();
+        ShardedSearchCoordinator coordinator = new ShardedSearchCoordinator(
+            shardUrls.toArray(new String[0]), 5_000, 5);
+        try {
+            singleNode.applyChanges(added, Collections.emptyList());
+            for (ConfigurableApplicationContext shard : shards) {
+                shard.getBean(MovieService.class).applyChanges(added, Collections.emptyList());
+            }
+
+            ShardedSearchCoordinator.ShardedSearchResult result = coordinator.search(null, null, "shanty");
+
+            assertFalse(result.isPartial());
+            List<Movie> expected = new ArrayList<>(singleNode.searchMovies(null, null, "shanty"));
+            expected.sort((a, b) -> Long.compare(a.getId(), b.getId()));
+            List<Long> expectedIds = new ArrayList<>();
+            for (Movie movie : expected.subList(0, 5)) {
+                expectedIds.add(movie.getId());
+            }
+            List<Long> actualIds = new ArrayList<>();
+            for (Movie movie : result.getMovies()) {
+                actualIds.add(movie.getId());
+            }
+            assertEquals(expectedIds, actualIds);
+        } finally {
+            coordinator.shutdown();
+            singleNode.shutdown();
+            for (ConfigurableApplicationContext shard : shards) {
+                shard.getBean(MovieService.class).applyChanges(Collections.emptyList(), addedIds);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Concurrent searches should not queue healthy shard calls behind a stalled shard")
+    public void testSearch_ConcurrentSearchesWithStalledShard() throws Exception {
+        try (ServerSocket stalledShard = new ServerSocket(0)) {
+            Thread acceptor = stalledAcceptor(stalledShard);
+            acceptor.start();
+
+            String stalledUrl = "http://localhost:" + stalledShard.getLocalPort();
+            // Room for 16 searches: the stalled calls cut off in one round may still be
+            // unwinding when the next round starts, and still hold their threads until then
+            ShardedSearchCoordinator coordinator = new ShardedSearchCoordinator(
+                new String[] {shardUrls.get(0), stalledUrl}, STALL_DEADLINE_MILLIS, 1_000, 16);
+            ExecutorService clients = Executors.newFixedThreadPool(8);
+            try {
+                for (int round = 0; round < 2; round++) {
+                    List<Future<ShardedSearchCoordinator.ShardedSearchResult>> searches = new ArrayList<>();
+                    for (int i = 0; i < 8; i++) {
+                        searches.add(clients.submit(() -> coordinator.search("the", null, null)));
+                    }
+                    for (Future<ShardedSearchCoordinator.ShardedSearchResult> search : searches) {
+                        ShardedSearchCoordinator.ShardedSearchResult result = search.get();
+                        // Only the stalled shard is reported, and its calls were cut off at the deadline
+                        assertEquals(Collections.singletonList(stalledUrl), result.getFailedShards());
+                        assertFalse(result.getMovies().isEmpty());
+                    }
+                }
+            } finally {
+                clients.shutdownNow();
+                coordinator.shutdown();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should return partial results when a shard misses the deadline")
+    public void testSearch_PartialOnShardTimeout() throws IOException {
+        try (ServerSocket stalledShard = new ServerSocket(0)) {
+            Thread acceptor = stalledAcceptor(stalledShard);
+            acceptor.start();
+
+            String stalledUrl = "http://localhost:" + stalledShard.getLocalPort();
+            ShardedSearchCoordinator coordinator = new ShardedSearchCoordinator(
+                new String[] {shardUrls.get(0), stalledUrl}, STALL_DEADLINE_MILLIS, 1_000);
+            try {
+                ShardedSearchCoordinator.ShardedSearchResult result = coordinator.search("the", null, null);
+
+                assertTrue(result.isPartial());
+                assertEquals(1, result.getFailedShards().size());
+                assertEquals(stalledUrl, result.getFailedShards().get(0));
+                assertFalse(result.getMovies().isEmpty());
+                for (Movie movie : result.getMovies()) {
+                    assertEquals(0, movie.getId() % 2);
+                }
+            } finally {
+                coordinator.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Accepts connections but never answers, like a stalled shard.
+     */
+    private static Thread stalledAcceptor(ServerSocket stalledShard) {
+        Thread acceptor = new Thread(() -> {
+            List<Socket> held = new ArrayList<>();
+            try {
+                while (!stalledShard.isClosed()) {
+                    held.add(stalledShard.accept());
+                }
+            } catch (IOException ignored) {
+                // socket closed at the end of the test
+            }
+        });
+        acceptor.setDaemon(true);
+        return acceptor;
+    }
+}
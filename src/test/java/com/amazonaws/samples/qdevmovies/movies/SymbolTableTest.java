@@ -0,0 +1,155 @@
+package com.amazonaws.samples.qdevmovies.movies;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the string dictionaries behind the catalog and the reviews
+ * Arrr! One copy of every word in the ship's log be plenty!
+ */
+public class SymbolTableTest {
+
+    @Test
+    @DisplayName("Equal values should share one code and decode back to the value")
+    public void testEncodeDecode() {
+        SymbolTable table = new SymbolTable("test");
+
+        int drama = table.encode("Drama");
+        int comedy = table.encode("Comedy");
+
+        assertEquals(drama, table.encode(new String("Drama")));
+        assertNotEquals(drama, comedy);
+        assertEquals("Drama", table.decode(drama));
+        assertEquals("Comedy", table.decode(comedy));
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    @DisplayName("Table should grow past its initial capacity")
+    public void testGrowth() {
+        SymbolTable table = new SymbolTable("test");
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(i, table.encode("value-" + i));
+        }
+        assertEquals("value-999", table.decode(999));
+    }
+
+    @Test
+    @DisplayName("Memory report should count only live references and savings")
+    public void testMemoryReport() {
+        SymbolTable table = new SymbolTable("test");
+        SymbolTable.Usage usage = table.usage();
+        for (int i = 0; i < 1_000; i++) {
+            usage.add(table.encode(i % 2 == 0 ? "Crime/Drama" : "Action/Sci-Fi"));
+        }
+        // Encoded but not held by any live record, like a movie replaced since
+        table.encode("Crime/Drama");
+        table.encode("Western");
+
+        Map<String, Object> report = table.memoryReport(usage);
+
+        assertEquals(3, report.get("distinctValues"));
+        assertEquals(2, report.get("liveValues"));
+        assertEquals(1_000L, report.get("references"));
+        assertTrue((Long) report.get("savedBytes") > 0);
+        assertEquals(0L, table.memoryReport(table.usage()).get("references"));
+    }
+
+    @Test
+    @DisplayName("Null values should encode to a code that decodes back to null")
+    public void testEncodeNull() {
+        SymbolTable table = new SymbolTable("test");
+
+        int code = table.encode(null);
+
+        assertNull(table.decode(code));
+        assertNull(table.canonical(null));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    @DisplayName("Catalog movies should share one instance of each repeated director and genre")
+    public void testCatalogSharesRepeatedText() {
+        MovieService service = new MovieService(Arrays.asList(
+            new Movie(1L, "First", new String("Shared Director"), 2000, new String("Drama"), "d", 100, 4.0),
+            new Movie(2L, "Second", new String("Shared Director"), 2001, new String("Drama"), "d", 100, 4.0),
+            new Movie(3L, "No Genre", null, 2002, null, "d", 100, 4.0)));
+        try {
+            List<Movie> movies = service.getAllMovies();
+
+            assertSame(movies.get(0).getDirector(), movies.get(1).getDirector());
+            assertSame(movies.get(0).getGenre(), movies.get(1).getGenre());
+            assertNull(movies.get(2).getGenre());
+            assertEquals(Collections.singletonList("Drama"), service.getAllGenres());
+
+            service.applyChanges(Collections.singletonList(
+                new Movie(4L, "Fourth", new String("Shared Director"), 2003, new String("Drama"), "d", 100, 4.0)),
+                Collections.emptyList());
+            assertSame(movies.get(0).getGenre(), service.getMovieById(4L).get().getGenre());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Replacing the catalog should rebuild its symbol tables")
+    @SuppressWarnings("unchecked")
+    public void testReplaceCatalogRebuildsTables() {
+        MovieService service = new MovieService(Arrays.asList(
+            new Movie(1L, "First", "Old Director", 2000, "Western", "d", 100, 4.0),
+            new Movie(2L, "Second", "Old Director", 2001, "Musical", "d", 100, 4.0)));
+        MovieService other = new MovieService(Collections.singletonList(
+            new Movie(1L, "Elsewhere", "Other Director", 2000, "Horror", "d", 100, 4.0)));
+        try {
+            service.replaceCatalog(Collections.singletonList(
+                new Movie(3L, "Third", "New Director", 2010, "Drama", "d", 100, 4.0)));
+
+            Map<String, Object> genres = (Map<String, Object>) service.getSymbolReport().get("genres");
+            assertEquals(1, genres.get("distinctValues"));
+            assertEquals(1L, genres.get("references"));
+            Map<String, Object> directors = (Map<String, Object>) service.getSymbolReport().get("directors");
+            assertEquals(1, directors.get("distinctValues"));
+            // Each catalog owns its tables
+            assertEquals(1, ((Map<String, Object>) other.getSymbolReport().get("genres")).get("distinctValues"));
+        } finally {
+            service.shutdown();
+            other.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Reviews should share reviewer names and drop them when replaced")
+    @SuppressWarnings("unchecked")
+    public void testReviewsShareAndReplaceTables() {
+        ReviewService reviewService = new ReviewService();
+        Map<Long, List<Review>> reviews = new HashMap<>();
+        reviews.put(1L, Arrays.asList(
+            new Review(new String("SameReviewer"), new String("👩"), 4.0, "Good"),
+            new Review(new String("SameReviewer"), new String("👩"), 3.0, "Fine")));
+        reviewService.replaceAllReviews(reviews);
+
+        List<Review> stored = reviewService.getReviewsForMovie(1L);
+        assertSame(stored.get(0).getUserName(), stored.get(1).getUserName());
+        assertSame(stored.get(0).getAvatarEmoji(), stored.get(1).getAvatarEmoji());
+
+        reviewService.addReview(1L, new Review(new String("SameReviewer"), "👩", 5.0, "Best"));
+        assertSame(stored.get(0).getUserName(), reviewService.getReviewsForMovie(1L).get(2).getUserName());
+        Map<String, Object> userNames = (Map<String, Object>) reviewService.getSymbolReport().get("reviewerNames");
+        assertEquals(1, userNames.get("distinctValues"));
+        assertEquals(3L, userNames.get("references"));
+
+        reviewService.replaceAllReviews(Collections.singletonMap(2L,
+            Collections.singletonList(new Review("Newcomer", "🧑", 4.0, "Hello"))));
+        userNames = (Map<String, Object>) reviewService.getSymbolReport().get("reviewerNames");
+        assertEquals(1, userNames.get("distinctValues"));
+        assertEquals(1, userNames.get("liveValues"));
+    }
+}
@@ -0,0 +1,271 @@
+package com.amazonaws.samples.qdevmovies.startup;
+
+import com.amazonaws.samples.qdevmovies.movies.MoviesApplication;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Cold-start benchmark. Starts the application in fresh JVMs until it reports ready,
+ * for each way of launching it:
+ * <ul>
+ *   <li>{@code jar}: the plain executable JAR</li>
+ *   <li>{@code classpath}: the application's classes JAR and the dependency JARs
+ *       unpacked from the executable JAR's {@code BOOT-INF/lib}</li>
+ *   <li>{@code classpath-cds}: the same with an AppCDS archive, written first by a
+ *       training run with {@code -XX:ArchiveClassesAtExit}; JDK 13 or later only, and
+ *       skipped on older JVMs</li>
+ * </ul>
+ * Spring Boot's nested JARs cannot be class-data shared, and CDS only accepts JARs on
+ * the classpath, which is why the archive is built for the flat classpath layout using
+ * the {@code .jar.original} that repackaging leaves behind. Run it with {@code mvn -P cds verify}; settings are
+ * {@code startup.*} system properties (see the README).
+ */
+public final class StartupBenchmark {
+    private static final Logger logger = LogManager.getLogger(StartupBenchmark.class);
+    private static final Pattern READY = Pattern.compile("Ready in (\\d+) ms after JVM start");
+    private static final long TIMEOUT_SECONDS = 120;
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int runs = Integer.getInteger("startup.runs", 5);
+        Path jar = Paths.get(System.getProperty("startup.jar", "target/sample-qdev-movies-0.1.0.jar"));
+        Path archive = Paths.get(System.getProperty("startup.cdsArchive", "target/app-cds.jsa"));
+        Path reportPath = Paths.get(System.getProperty("startup.report", "target/startup/startup-report.json"));
+        List<String> jvmArgs = split(System.getProperty("startup.jvmArgs", ""));
+        if (reportPath.getParent() != null) {
+            Files.createDirectories(reportPath.getParent());
+        }
+        String classpath = flatClasspath(jar, Paths.get(System.getProperty("startup.appJar", jar + ".original")),
+            reportPath.resolveSibling("lib"));
+        // Lets operators reuse the archive: java -XX:SharedArchiveFile=... -cp "$(cat classpath.txt)" ...
+        Files.write(reportPath.resolveSibling("classpath.txt"), classpath.getBytes(StandardCharsets.UTF_8));
+
+        // Dynamic archives (-XX:ArchiveClassesAtExit) arrived in JDK 13; the application itself targets Java 8
+        boolean cds = javaFeatureVersion() >= 13;
+        if (cds) {
+            // The archive is only valid for the classpath it was dumped with, so it is always rebuilt
+            Files.deleteIfExists(archive);
+            logger.warn("Training run: writing CDS archive to {}", archive.toAbsolutePath());
+            launch(classpathCommand(jvmArgs, classpath, "-XX:ArchiveClassesAtExit=" + archive));
+            if (!Files.exists(archive)) {
+                throw new IllegalStateException("Training run did not write " + archive);
+            }
+        } else {
+            logger.warn("Java {} cannot write a dynamic CDS archive (JDK 13 or later needed); skipping classpath-cds",
+                System.getProperty("java.version"));
+        }
+
+        JSONObject variants = new JSONObject();
+        variants.put("jar", measure("jar", runs, jarCommand(jvmArgs, jar)));
+        variants.put("classpath", measure("classpath", runs, classpathCommand(jvmArgs, classpath)));
+        if (cds) {
+            variants.put("classpath-cds", measure("classpath-cds", runs,
+                classpathCommand(jvmArgs, classpath, "-XX:SharedArchiveFile=" + archive, "-Xshare:auto")));
+        }
+
+        JSONObject report = new JSONObject();
+        report.put("runs", runs);
+        report.put("javaVersion", System.getProperty("java.version"));
+        report.put("processors", Runtime.getRuntime().availableProcessors());
+        report.put("jvmArgs", jvmArgs);
+        report.put("cdsArchiveBytes", cds ? Files.size(archive) : JSONObject.NULL);
+        report.put("variants", variants);
+        Files.write(reportPath, report.toString(2).getBytes(StandardCharsets.UTF_8));
+        logger.warn("Startup report at {}", reportPath.toAbsolutePath());
+    }
+
+    /**
+     * Unpacks the dependency JARs from the executable JAR's {@code BOOT-INF/lib}, so the
+     * classpath variants load exactly the runtime dependencies {@code java -jar} does and
+     * none of the test-scope JARs this JVM was started with.
+     *
+     * @return The application JAR followed by the unpacked dependency JARs, in the
+     *         executable JAR's classpath order
+     */
+    private static String flatClasspath(Path jar, Path appJar, Path libDirectory) throws IOException {
+        for (Path required : Arrays.asList(jar, appJar)) {
+            if (!Files.exists(required)) {
+                throw new IllegalStateException(required + " not found; run the package phase first");
+            }
+        }
+        if (Files.isDirectory(libDirectory)) {
+            try (Stream<Path> stale = Files.list(libDirectory)) {
+                for (Path file : stale.collect(Collectors.toList())) {
+                    Files.delete(file);
+                }
+            }
+        }
+        Files.createDirectories(libDirectory);
+
+        List<String> entries = new ArrayList<>();
+        entries.add(appJar.toString());
+        try (JarFile fatJar = new JarFile(jar.toFile())) {
+            for (String name : libraryEntries(fatJar)) {
+                Path target = libDirectory.resolve(name.substring(name.lastIndexOf('/') + 1));
+                try (InputStream in = fatJar.getInputStream(fatJar.getJarEntry(name))) {
+                    Files.copy(in, target);
+                }
+                entries.add(target.toString());
+            }
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    /**
+     * @return The {@code BOOT-INF/lib} entries, ordered as in {@code BOOT-INF/classpath.idx}
+     *         when the JAR has one
+     */
+    private static List<String> libraryEntries(JarFile fatJar) throws IOException {
+        List<String> names = new ArrayList<>();
+        JarEntry index = fatJar.getJarEntry("BOOT-INF/classpath.idx");
+        if (index != null) {
+            try (BufferedReader lines = new BufferedReader(
+                    new InputStreamReader(fatJar.getInputStream(index), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = lines.readLine()) != null) {
+                    // Lines look like: - "BOOT-INF/lib/spring-boot-2.7.18.jar"
+                    int open = line.indexOf('"');
+                    if (open >= 0) {
+                        names.add(line.substring(open + 1, line.lastIndexOf('"')));
+                    }
+                }
+            }
+            return names;
+        }
+        Enumeration<JarEntry> entries = fatJar.entries();
+        while (entries.hasMoreElements()) {
+            String name = entries.nextElement().getName();
+            if (name.startsWith("BOOT-INF/lib/") && name.endsWith(".jar")) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @return The Java feature release of the JVM the variants run on: 8 for "1.8", 17 for "17"
+     */
+    private static int javaFeatureVersion() {
+        String version = System.getProperty("java.specification.version");
+        return Integer.parseInt(version.startsWith("1.") ? version.substring(2) : version);
+    }
+
+    private static List<String> jarCommand(List<String> jvmArgs, Path jar) {
+        List<String> command = new ArrayList<>();
+        command.add(javaExecutable());
+        command.addAll(jvmArgs);
+        command.add("-jar");
+        command.add(jar.toString());
+        command.addAll(appArgs());
+        return command;
+    }
+
+    private static List<String> classpathCommand(List<String> jvmArgs, String classpath, String... extraJvmArgs) {
+        List<String> command = new ArrayList<>();
+        command.add(javaExecutable());
+        command.addAll(jvmArgs);
+        command.addAll(Arrays.asList(extraJvmArgs));
+        command.add("-cp");
+        command.add(classpath);
+        command.add(MoviesApplication.class.getName());
+        command.addAll(appArgs());
+        return command;
+    }
+
+    private static List<String> appArgs() {
+        return Arrays.asList("--server.port=0", "--movies.startup.exit-when-ready=true");
+    }
+
+    private static String javaExecutable() {
+        return Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    }
+
+    private static JSONObject measure(String name, int runs, List<String> command) throws IOException,
+            InterruptedException {
+        List<Long> ready = new ArrayList<>();
+        List<Long> wall = new ArrayList<>();
+        for (int run = 0; run < runs; run++) {
+            long start = System.nanoTime();
+            ready.add(launch(command));
+            wall.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        JSONObject result = new JSONObject();
+        result.put("readyMillis", summarize(ready));
+        result.put("processMillis", summarize(wall));
+        logger.warn("{}: ready in {} ms (median of {})", name, result.getJSONObject("readyMillis").get("median"), runs);
+        return result;
+    }
+
+    /**
+     * Runs the application to readiness and exit.
+     *
+     * @return Milliseconds from JVM start to ready, as the application reported them
+     */
+    private static long launch(List<String> command) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        long readyMillis = -1;
+        List<String> tail = new ArrayList<>();
+        try (BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                Matcher matcher = READY.matcher(line);
+                if (matcher.find()) {
+                    readyMillis = Long.parseLong(matcher.group(1));
+                }
+                tail.add(line);
+                if (tail.size() > 20) {
+                    tail.remove(0);
+                }
+            }
+        }
+        if (!process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            throw new IllegalStateException("Application did not exit within " + TIMEOUT_SECONDS + " s");
+        }
+        if (readyMillis < 0) {
+            throw new IllegalStateException("Application never reported ready; last output:"
+                + System.lineSeparator() + String.join(System.lineSeparator(), tail));
+        }
+        return readyMillis;
+    }
+
+    private static JSONObject summarize(List<Long> millis) {
+        List<Long> sorted = new ArrayList<>(millis);
+        Collections.sort(sorted);
+        JSONObject summary = new JSONObject();
+        summary.put("min", sorted.get(0));
+        summary.put("median", sorted.get(sorted.size() / 2));
+        summary.put("max", sorted.get(sorted.size() - 1));
+        return summary;
+    }
+
+    private static List<String> split(String value) {
+        return value.trim().isEmpty() ? Collections.emptyList() : Arrays.asList(value.trim().split("\\s+"));
+    }
+}